@@ -25,6 +25,7 @@ import play.libs.Crypto;
 import play.mvc.Http.Header;
 import play.mvc.Http.Request;
 import play.mvc.Http.Response;
+import play.utils.Timeline;
 
 /**
  * Plugin used for core tasks
@@ -146,6 +147,12 @@ public class CorePlugin extends PlayPlugin {
             out.println(plugin.index + ":" + plugin.getClass().getName() + " [" + (Play.pluginCollection.isEnabled(plugin) ? "enabled" : "disabled") + "]");
         }
         out.println();
+        out.println("Startup:");
+        out.println("~~~~~~~~");
+        for (Timeline timeline : Timeline.completed()) {
+            out.println(timeline.getRoot());
+        }
+        out.println();
         out.println("Configuration:");
         out.println("~~~~~~~~~~~~~~");
         for (Object key : Play.configuration.keySet()) {
@@ -213,6 +220,14 @@ public class CorePlugin extends PlayPlugin {
             status.add("application", application);
         }
 
+        {
+            JsonArray startup = new JsonArray();
+            for (Timeline timeline : Timeline.completed()) {
+                startup.add(timeline.getRoot().toJson());
+            }
+            status.add("startup", startup);
+        }
+
         {
             JsonObject pool = new JsonObject();
             pool.addProperty("size", Invoker.executor.getPoolSize());
@@ -284,9 +299,11 @@ public class CorePlugin extends PlayPlugin {
         return root;
     }
 
-    @Override
-    public void enhance(ApplicationClass applicationClass) throws Exception {
-        Class<?>[] enhancers = new Class[]{
+    /**
+     * @return the enhancers applied to the application classes, in order
+     */
+    public Class<?>[] defaultEnhancers() {
+        return new Class[]{
             PropertiesEnhancer.class,
             ContinuationEnhancer.class,
             SigEnhancer.class,         
@@ -294,12 +311,18 @@ public class CorePlugin extends PlayPlugin {
             MailerEnhancer.class,
             LVEnhancer.class
         };
-        for (Class<?> enhancer : enhancers) {
+    }
+
+    @Override
+    public void enhance(ApplicationClass applicationClass) throws Exception {
+        for (Class<?> enhancer : defaultEnhancers()) {
             try {
-                long start = System.currentTimeMillis();
+                long start = System.nanoTime();
                 ((Enhancer) enhancer.newInstance()).enhanceThisClass(applicationClass);
+                long time = System.nanoTime() - start;
+                Enhancer.addEnhancerTiming(enhancer, time);
                 if (Logger.isTraceEnabled()) {
-                    Logger.trace("%sms to apply %s to %s", System.currentTimeMillis() - start, enhancer.getSimpleName(), applicationClass.name);
+                    Logger.trace("%sms to apply %s to %s", time / 1000000, enhancer.getSimpleName(), applicationClass.name);
                 }
             } catch (Exception e) {
                 throw new UnexpectedException("While applying " + enhancer + " on " + applicationClass.name, e);
@@ -13,6 +13,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import play.cache.Cache;
+import play.cache.ResponseCache;
 import play.classloading.ApplicationClasses;
 import play.classloading.ApplicationClassloader;
 import play.deps.DependenciesManager;
@@ -21,9 +22,12 @@ import play.exceptions.UnexpectedException;
 import play.libs.IO;
 import play.mvc.Http;
 import play.mvc.Router;
+import play.mvc.SessionStore;
 import play.plugins.PluginCollection;
 import play.templates.TemplateLoader;
 import play.utils.OrderSafeProperties;
+import play.utils.Timeline;
+import play.vfs.FileWatcher;
 import play.vfs.VirtualFile;
 
 /**
@@ -62,6 +66,10 @@ public class Play {
      * Is the application started
      */
     public static boolean started = false;
+    /**
+     * The watcher of the application files, in DEV mode
+     */
+    static volatile FileWatcher watcher;
     /**
      * True when the one and only shutdown hook is enabled
      */
@@ -187,6 +195,15 @@ public class Play {
      * @param id   The framework id to use
      */
     public static void init(File root, String id) {
+        Timeline.Phase timeline = Timeline.start("init");
+        try {
+            doInit(root, id);
+        } finally {
+            timeline.end();
+        }
+    }
+
+    private static void doInit(File root, String id) {
         // Simple things
         Play.id = id;
         Play.started = false;
@@ -280,7 +297,9 @@ public class Play {
         modulesRoutes = new HashMap<String, VirtualFile>(16);
 
         // Load modules
+        Timeline.Phase phase = Timeline.begin("modules");
         loadModules(appRoot);
+        phase.end();
 
         // Load the templates from the framework after the one from the modules
         templatesPath.add(VirtualFile.open(new File(frameworkPath, "framework/templates")));
@@ -300,7 +319,9 @@ public class Play {
         }
 
         // Plugins
+        phase = Timeline.begin("plugins");
         pluginCollection.loadPlugins();
+        phase.end();
 
         // Done !
         if (mode == Mode.PROD) {
@@ -347,11 +368,13 @@ public class Play {
      * Read application.conf and resolve overriden key using the play id mechanism.
      */
     public static void readConfiguration() {
+        Timeline.Phase phase = Timeline.begin("configuration");
         confs = new HashSet<VirtualFile>();
         configuration = readOneConfigurationFile("application.conf");
         extractHttpPort();
         // Plugins
         pluginCollection.onConfigurationRead();
+        phase.end();
      }
 
     private static void extractHttpPort() {
@@ -452,6 +475,7 @@ public class Play {
      * Recall to restart !
      */
     public static synchronized void start() {
+        Timeline.Phase timeline = Timeline.start("start");
         try {
 
             if (started) {
@@ -478,13 +502,22 @@ public class Play {
                 // Put it in the current context for any code that relies on having it there
                 Thread.currentThread().setContextClassLoader(classloader);
                 // Reload plugins
+                Timeline.Phase phase = Timeline.begin("plugins");
                 pluginCollection.reloadApplicationPlugins();
+                phase.end();
 
             }
 
             // Reload configuration
             readConfiguration();
 
+            // Watch the application files from now on
+            FileWatcher files = null;
+            long watcherInterval = Long.parseLong(configuration.getProperty("play.watcher.interval", "1000"));
+            if (mode == Mode.DEV && watcherInterval > 0) {
+                files = new FileWatcher(watchedFiles());
+            }
+
             // Configure logs
             String logLevel = configuration.getProperty("application.log", "INFO");
             //only override log-level if Logger was not configured manually
@@ -523,13 +556,21 @@ public class Play {
 
 
             // Try to load all classes
-            Play.classloader.getAllClasses();
+            Timeline.Phase phase = Timeline.begin("classes");
+            Play.classloader.initClasses();
+            phase.end();
 
             // Routes
+            phase = Timeline.begin("routes");
             Router.detectChanges(ctxPath);
+            phase.end();
 
             // Cache
+            phase = Timeline.begin("cache");
             Cache.init();
+            ResponseCache.init();
+            SessionStore.init();
+            phase.end();
 
             // Plugins
             try {
@@ -556,6 +597,10 @@ public class Play {
             // Plugins
             pluginCollection.afterApplicationStart();
 
+            if (files != null) {
+                watcher = files.start(watcherInterval);
+            }
+
         } catch (PlayException e) {
             started = false;
             try { Cache.stop(); } catch(Exception ignored) {}
@@ -564,6 +609,8 @@ public class Play {
             started = false;
             try { Cache.stop(); } catch(Exception ignored) {}
             throw new UnexpectedException(e);
+        } finally {
+            timeline.end();
         }
     }
 
@@ -571,11 +618,17 @@ public class Play {
      * Stop the application
      */
     public static synchronized void stop() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
         if (started) {
             Logger.trace("Stopping the play application");
             pluginCollection.onApplicationStop();
             started = false;
+            SessionStore.stop();
             Cache.stop();
+            ResponseCache.clear();
             Router.lastLoading = 0L;
         }
     }
@@ -588,7 +641,7 @@ public class Play {
     static boolean preCompile() {
         if (usePrecompiled) {
             if (Play.getFile("precompiled").exists()) {
-                classloader.getAllClasses();
+                classloader.initClasses();
                 Logger.info("Application is precompiled");
                 return true;
             }
@@ -600,7 +653,9 @@ public class Play {
             Logger.info("Precompiling ...");
             Thread.currentThread().setContextClassLoader(Play.classloader);
             long start = System.currentTimeMillis();
+            Timeline.Phase phase = Timeline.begin("classes");
             classloader.getAllClasses();
+            phase.end();
 
             if (Logger.isTraceEnabled()) {
                 Logger.trace("%sms to precompile the Java stuff", System.currentTimeMillis() - start);
@@ -608,7 +663,9 @@ public class Play {
 
             if (!lazyLoadTemplates) {
                 start = System.currentTimeMillis();
+                phase = Timeline.begin("templates");
                 TemplateLoader.getAllTemplate();
+                phase.end();
 
                 if (Logger.isTraceEnabled()) {
                     Logger.trace("%sms to precompile the templates", System.currentTimeMillis() - start);
@@ -623,22 +680,33 @@ public class Play {
     }
 
     /**
-     * Detect sources modifications
+     * Detect sources modifications. In DEV mode, the java sources, routes and configuration
+     * files are watched in the background: while none has changed, only the plugins check
+     * for changes.
      */
     public static synchronized void detectChanges() {
         if (mode == Mode.PROD) {
             return;
         }
+        FileWatcher files = watcher;
+        Set<File> changes = null;
         try {
             pluginCollection.beforeDetectingChanges();
-            if(!pluginCollection.detectClassesChange()) {
+            boolean changed = files == null || files.hasChanged();
+            if (changed && files != null) {
+                changes = files.takeChanges();
+            }
+            // Always asked, the plugins may detect changes in other files than the watched ones
+            if(!pluginCollection.detectClassesChange() && changed) {
                 classloader.detectChanges();
             }
-            Router.detectChanges(ctxPath);
-            for(VirtualFile conf : confs) {
-                if (conf.lastModified() > startedAt) {
-                    start();
-                    return;
+            if (changed) {
+                Router.detectChanges(ctxPath);
+                for(VirtualFile conf : confs) {
+                    if (conf.lastModified() > startedAt) {
+                        start();
+                        return;
+                    }
                 }
             }
             pluginCollection.detectChange();
@@ -646,6 +714,10 @@ public class Play {
                 throw new RuntimeException("Not started");
             }
         } catch (PlayException e) {
+            if (changes != null) {
+                // Detected again by the next request, until the error is fixed
+                files.changed(changes);
+            }
             throw e;
         } catch (Exception e) {
             // We have to do a clean refresh
@@ -653,6 +725,23 @@ public class Play {
         }
     }
 
+    /**
+     * The files watched for changes in DEV mode
+     */
+    static List<File> watchedFiles() {
+        List<VirtualFile> files = new ArrayList<VirtualFile>(javaPath);
+        files.add(routes);
+        files.addAll(modulesRoutes.values());
+        files.addAll(confs);
+        List<File> watched = new ArrayList<File>();
+        for (VirtualFile file : files) {
+            if (file != null && file.getRealFile() != null) {
+                watched.add(file.getRealFile());
+            }
+        }
+        return watched;
+    }
+
     @SuppressWarnings("unchecked")
     public static <T> T plugin(Class<T> clazz) {
         return (T) pluginCollection.getPluginInstance((Class<? extends PlayPlugin>) clazz);
@@ -0,0 +1,36 @@
+package play.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Cache the full HTTP response of an action (status, headers and body) in the
+ * {@link ResponseCache}, so that further hits are served directly by the HTTP
+ * server without invoking the action at all.
+ *
+ * <p>Only anonymous GET/HEAD requests are cached. The response cache must be
+ * enabled with <code>http.responseCache=enabled</code>.
+ *
+ * <p>Example: <code>@CacheResponse(value = "10mn", varyBy = "Accept-Language", tags = "products")</code>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheResponse {
+
+    /**
+     * Time to live of the cached response. Ex: 10s, 3mn, 8h
+     */
+    String value() default "1h";
+
+    /**
+     * Request headers whose values are part of the cache key, in addition to the request URL.
+     */
+    String[] varyBy() default {};
+
+    /**
+     * Tags attached to the cached response, see {@link ResponseCache#invalidate(String...)}.
+     */
+    String[] tags() default {};
+}
@@ -0,0 +1,383 @@
+package play.cache;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import play.Logger;
+import play.Play;
+import play.libs.Time;
+import play.mvc.Http;
+import play.mvc.Scope;
+import play.utils.Utils;
+
+/**
+ * An in-memory cache of complete HTTP responses, served by the HTTP server
+ * before any invocation is scheduled.
+ *
+ * <p>Responses of actions annotated with {@link CacheResponse} are stored with
+ * their status, headers and body bytes. The cache is bounded in bytes
+ * (<code>http.responseCache.maxSize</code>) and evicts the least recently used
+ * responses first. Entries can be invalidated by tag from application code.
+ *
+ * <p>Only anonymous requests are considered: a request carrying a non empty
+ * session, flash or errors cookie, or an Authorization header, always goes through
+ * the action, and a response setting a cookie is never cached.
+ */
+public class ResponseCache {
+
+    static final String TAGS_ARG = "__responseCacheTags";
+
+    /**
+     * Is the response cache enabled (<code>http.responseCache=enabled</code>)
+     */
+    public static boolean enabled = false;
+
+    /**
+     * Maximum size of all cached bodies, in bytes
+     */
+    public static long maxSize = 32 * 1024 * 1024;
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    // The varyBy headers of each cached URL, as long as one of its responses is cached
+    private static final Map<String, Variation> variations = new HashMap<String, Variation>();
+    private static final Map<String, Set<String>> keysByTag = new HashMap<String, Set<String>>();
+    private static long size = 0;
+
+    private static class Variation {
+
+        String[] varyBy;
+        // The number of cached responses of this URL
+        int entries;
+
+        Variation(String[] varyBy) {
+            this.varyBy = varyBy;
+        }
+    }
+
+    /**
+     * A cached response
+     */
+    public static class Entry {
+
+        public final String key;
+        final String base;
+        public final int status;
+        public final String contentType;
+        public final String encoding;
+        /**
+         * Response headers, without cookies
+         */
+        public final Map<String, List<String>> headers;
+        public final byte[] body;
+        public final String etag;
+        public final long lastModified;
+        public final long expiresAt;
+        final String[] tags;
+
+        Entry(String key, String base, int status, String contentType, String encoding, Map<String, List<String>> headers, byte[] body, String etag, long lastModified, long expiresAt, String[] tags) {
+            this.key = key;
+            this.base = base;
+            this.status = status;
+            this.contentType = contentType;
+            this.encoding = encoding;
+            this.headers = headers;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+            this.tags = tags;
+        }
+
+        public boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        /**
+         * @return The age of this response in seconds (for the Age header)
+         */
+        public long age(long now) {
+            return Math.max(0, (now - lastModified) / 1000);
+        }
+
+        long size() {
+            return body.length + key.length() * 2;
+        }
+    }
+
+    /**
+     * Initialize the response cache from the configuration.
+     */
+    public static void init() {
+        clear();
+        enabled = Play.configuration.getProperty("http.responseCache", "disabled").equals("enabled");
+        if (enabled) {
+            maxSize = parseSize(Play.configuration.getProperty("http.responseCache.maxSize", "32MB"));
+            Logger.info("Response cache enabled (max size: %s bytes)", maxSize);
+        }
+    }
+
+    /**
+     * Find a cached response for this request.
+     * @param request The incoming request, not yet routed
+     * @return The cached response or null
+     */
+    public static Entry lookup(Http.Request request) {
+        if (!enabled || !Play.started || !isCacheable(request)) {
+            return null;
+        }
+        String base = baseKey(request);
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            Variation variation = variations.get(base);
+            if (variation == null) {
+                return null;
+            }
+            String key = key(base, variation.varyBy, request);
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(now)) {
+                remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Store the response of an action annotated with {@link CacheResponse}, if it can be cached.
+     * @param request The current request
+     * @param response The response, after the action result has been applied
+     */
+    @SuppressWarnings("unchecked")
+    public static void store(Http.Request request, Http.Response response) {
+        if (!enabled || !isCacheable(request)) {
+            return;
+        }
+        Method actionMethod = request.invokedMethod;
+        if (actionMethod == null || !actionMethod.isAnnotationPresent(CacheResponse.class)) {
+            return;
+        }
+        if (response.status == null || response.status != 200 || response.chunked || response.direct != null || response.out == null) {
+            return;
+        }
+        for (Http.Cookie cookie : response.cookies.values()) {
+            if (cookie.value != null && cookie.value.length() > 0) {
+                // Personalized response
+                return;
+            }
+        }
+
+        CacheResponse cacheResponse = actionMethod.getAnnotation(CacheResponse.class);
+        long now = System.currentTimeMillis();
+        // Last-Modified and If-Modified-Since only have a precision of one second
+        long lastModified = now / 1000 * 1000;
+        byte[] body = response.out.toByteArray();
+
+        Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+        String etag = null;
+        boolean cacheHeaders = false;
+        for (Map.Entry<String, Http.Header> header : response.headers.entrySet()) {
+            String name = header.getKey();
+            if (name.equalsIgnoreCase("etag")) {
+                etag = header.getValue().value();
+            } else if (name.equalsIgnoreCase("cache-control") || name.equalsIgnoreCase("expires")) {
+                cacheHeaders = true;
+            }
+            headers.put(name, Collections.unmodifiableList(new ArrayList<String>(header.getValue().values)));
+        }
+        if (!cacheHeaders) {
+            // Clients have to revalidate, which is cheap thanks to the ETag
+            headers.put("Cache-Control", Collections.singletonList("no-cache"));
+        }
+        if (etag == null) {
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            etag = "\"" + Integer.toHexString(body.length) + "-" + Long.toHexString(crc.getValue()) + "\"";
+            headers.put("ETag", Collections.singletonList(etag));
+        }
+
+        Set<String> tags = new HashSet<String>(Arrays.asList(cacheResponse.tags()));
+        Object dynamicTags = request.args.get(TAGS_ARG);
+        if (dynamicTags != null) {
+            tags.addAll((Set<String>) dynamicTags);
+        }
+
+        String base = baseKey(request);
+        String[] varyBy = cacheResponse.varyBy();
+        String key = key(base, varyBy, request);
+        long expiresAt = now + Time.parseDuration(cacheResponse.value()) * 1000L;
+        Entry entry = new Entry(key, base, response.status, response.contentType, response.encoding, Collections.unmodifiableMap(headers), body, etag, lastModified, expiresAt, tags.toArray(new String[tags.size()]));
+        if (entry.size() > maxSize) {
+            return;
+        }
+
+        synchronized (lock) {
+            remove(key);
+            Variation variation = variations.get(base);
+            if (variation == null) {
+                variation = new Variation(varyBy);
+                variations.put(base, variation);
+            }
+            // The action may have changed in DEV mode
+            variation.varyBy = varyBy;
+            variation.entries++;
+            entries.put(key, entry);
+            size += entry.size();
+            for (String tag : entry.tags) {
+                Set<String> keys = keysByTag.get(tag);
+                if (keys == null) {
+                    keys = new HashSet<String>();
+                    keysByTag.put(tag, keys);
+                }
+                keys.add(key);
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Attach tags to the response of the current request, in addition to the
+     * ones declared by {@link CacheResponse#tags()}.
+     * @param tags The tags
+     */
+    @SuppressWarnings("unchecked")
+    public static void tag(String... tags) {
+        Http.Request request = Http.Request.current();
+        if (request == null) {
+            return;
+        }
+        Set<String> current = (Set<String>) request.args.get(TAGS_ARG);
+        if (current == null) {
+            current = new HashSet<String>();
+            request.args.put(TAGS_ARG, current);
+        }
+        current.addAll(Arrays.asList(tags));
+    }
+
+    /**
+     * Remove all the cached responses tagged with any of these tags.
+     * @param tags The tags
+     */
+    public static void invalidate(String... tags) {
+        synchronized (lock) {
+            for (String tag : tags) {
+                Set<String> keys = keysByTag.remove(tag);
+                if (keys != null) {
+                    for (String key : new ArrayList<String>(keys)) {
+                        remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all the cached responses.
+     */
+    public static void clear() {
+        synchronized (lock) {
+            entries.clear();
+            variations.clear();
+            keysByTag.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * @return The number of URLs with cached responses
+     */
+    static int urls() {
+        synchronized (lock) {
+            return variations.size();
+        }
+    }
+
+    /**
+     * @return The size of all cached bodies, in bytes
+     */
+    public static long size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    static boolean isCacheable(Http.Request request) {
+        if (!"GET".equals(request.method) && !"HEAD".equals(request.method)) {
+            return false;
+        }
+        if (request.headers.containsKey("authorization")) {
+            // Authenticated by HTTP
+            return false;
+        }
+        return isEmptyCookie(request, Scope.COOKIE_PREFIX + "_SESSION")
+                && isEmptyCookie(request, Scope.COOKIE_PREFIX + "_FLASH")
+                && isEmptyCookie(request, Scope.COOKIE_PREFIX + "_ERRORS");
+    }
+
+    static String baseKey(Http.Request request) {
+        return request.domain + " " + request.url;
+    }
+
+    static String key(String base, String[] varyBy, Http.Request request) {
+        if (varyBy.length == 0) {
+            return base;
+        }
+        StringBuilder key = new StringBuilder(base);
+        for (String name : varyBy) {
+            Http.Header header = request.headers.get(name.toLowerCase());
+            key.append('\u0000');
+            if (header != null) {
+                key.append(header.value());
+            }
+        }
+        return key.toString();
+    }
+
+    static long parseSize(String size) {
+        return Utils.parseSize(size);
+    }
+
+    private static boolean isEmptyCookie(Http.Request request, String name) {
+        Http.Cookie cookie = request.cookies.get(name);
+        return cookie == null || cookie.value == null || cookie.value.length() == 0;
+    }
+
+    // Must be called with the lock held
+    private static void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return;
+        }
+        size -= entry.size();
+        Variation variation = variations.get(entry.base);
+        if (variation != null && --variation.entries == 0) {
+            variations.remove(entry.base);
+        }
+        for (String tag : entry.tags) {
+            Set<String> keys = keysByTag.get(tag);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTag.remove(tag);
+                }
+            }
+        }
+    }
+
+    // Must be called with the lock held
+    private static void evict() {
+        while (size > maxSize && !entries.isEmpty()) {
+            // Access ordered: the first key is the least recently used one
+            remove(entries.keySet().iterator().next());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package play.classloading;
 
 import javassist.ClassPool;
 import javassist.CtClass;
+import javassist.LoaderClassPath;
 import play.Logger;
 import play.Play;
 import play.PlayPlugin;
@@ -14,9 +15,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Application classes container.
@@ -30,13 +32,18 @@ public class ApplicationClasses {
     /**
      * Cache of all compiled classes
      */
-    Map<String, ApplicationClass> classes = new HashMap<String, ApplicationClass>();
+    ConcurrentMap<String, ApplicationClass> classes = new ConcurrentHashMap<String, ApplicationClass>();
+    /**
+     * Index of the precompiled classes, if any: the classes are then loaded when needed
+     */
+    ClassesIndex index;
 
     /**
      * Clear the classes cache
      */
     public void clear() {
-        classes = new HashMap<String, ApplicationClass>();
+        classes = new ConcurrentHashMap<String, ApplicationClass>();
+        index = null;
     }
 
     /**
@@ -47,10 +54,16 @@ public class ApplicationClasses {
     public ApplicationClass getApplicationClass(String name) {
         VirtualFile javaFile = getJava(name);
         if(javaFile != null){
-            if (!classes.containsKey(name)) {
-                classes.put(name, new ApplicationClass(name));
+            ApplicationClass applicationClass = classes.get(name);
+            if (applicationClass == null) {
+                applicationClass = new ApplicationClass(name);
+                ApplicationClass existing = classes.putIfAbsent(name, applicationClass);
+                if (existing != null) {
+                    // Added meanwhile by another thread
+                    applicationClass = existing;
+                }
             }
-            return classes.get(name);
+            return applicationClass;
         }
         return null;
     }
@@ -62,6 +75,9 @@ public class ApplicationClasses {
      */
     public List<ApplicationClass> getAssignableClasses(Class<?> clazz) {
         List<ApplicationClass> results = new ArrayList<ApplicationClass>();
+        if (clazz != null && index != null) {
+            return load(index.getAssignableClasses(clazz));
+        }
         if (clazz != null) {
             for (ApplicationClass applicationClass : new ArrayList<ApplicationClass>(classes.values())) {
                 if (!applicationClass.isClass()) {
@@ -89,6 +105,9 @@ public class ApplicationClasses {
      * @return A list of application classes.
      */
     public List<ApplicationClass> getAnnotatedClasses(Class<? extends Annotation> clazz) {
+        if (index != null) {
+            return load(index.getAnnotatedClasses(clazz));
+        }
         List<ApplicationClass> results = new ArrayList<ApplicationClass>();
         for (ApplicationClass applicationClass : classes.values()) {
             if (!applicationClass.isClass()) {
@@ -106,6 +125,23 @@ public class ApplicationClasses {
         return results;
     }
 
+    List<ApplicationClass> load(List<String> names) {
+        List<ApplicationClass> results = new ArrayList<ApplicationClass>();
+        for (String name : names) {
+            ApplicationClass applicationClass = classes.get(name);
+            if (applicationClass == null) {
+                continue;
+            }
+            try {
+                applicationClass.javaClass = Play.classloader.loadClass(applicationClass.name);
+            } catch (ClassNotFoundException ex) {
+                throw new UnexpectedException(ex);
+            }
+            results.add(applicationClass);
+        }
+        return results;
+    }
+
     /**
      * All loaded classes.
      * @return All loaded classes
@@ -185,6 +221,15 @@ public class ApplicationClasses {
          * Signatures checksum
          */
         public int sigChecksum;
+        /**
+         * Has the enhanced byteCode been prepared before loading the class
+         */
+        boolean enhanced;
+        /**
+         * Simple names of the types referenced by the source, to compile this class again
+         * when the structure of one of them changes
+         */
+        Set<String> references;
 
         public ApplicationClass() {
         }
@@ -204,20 +249,50 @@ public class ApplicationClasses {
             }
             this.javaByteCode = null;
             this.enhancedByteCode = null;
+            this.enhanced = false;
             this.compiled = false;
             this.timestamp = 0L;
         }
 
-        static final ClassPool enhanceChecker_classPool = Enhancer.newClassPool();
+        static final ClassPool enhanceChecker_classPool = newEnhanceCheckerClassPool();
         static final CtClass ctPlayPluginClass = enhanceChecker_classPool.makeClass(PlayPlugin.class.getName());
 
+        /**
+         * The superclasses are read as compiled, as they may be enhanced at the same time
+         */
+        static ClassPool newEnhanceCheckerClassPool() {
+            ClassPool classPool = new ClassPool();
+            classPool.appendSystemPath();
+            classPool.appendClassPath(new LoaderClassPath(Enhancer.class.getClassLoader()));
+            classPool.appendClassPath(new Enhancer.ApplicationClassesClasspath(true));
+            return classPool;
+        }
+
         /**
          * Enhance this class
          * @return the enhanced byteCode
          */
         public byte[] enhance() {
+            enhanceOrRestore();
+            return this.enhancedByteCode;
+        }
+
+        /**
+         * Enhance this class, unless the same compiled byteCode has already been enhanced by
+         * the same plugins
+         * @return true if the enhanced byteCode has been taken from the cache
+         */
+        boolean enhanceOrRestore() {
             this.enhancedByteCode = this.javaByteCode;
+            boolean cached = false;
             if (isClass()) {
+                byte[] byteCode = BytecodeCache.getEnhancedBytecode(name, javaByteCode);
+                if (byteCode != null) {
+                    this.enhancedByteCode = byteCode;
+                    cached = true;
+                }
+            }
+            if (isClass() && !cached) {
 
                 // before we can start enhancing this class we must make sure it is not a PlayPlugin.
                 // PlayPlugins can be included as regular java files in a Play-application.
@@ -227,9 +302,11 @@ public class ApplicationClasses {
                 // as the other (soon to be) enhanched play-app-classes.
                 boolean shouldEnhance = true;
                 try {
-                    CtClass ctClass = enhanceChecker_classPool.makeClass(new ByteArrayInputStream(this.enhancedByteCode));
-                    if (ctClass.subclassOf(ctPlayPluginClass)) {
-                        shouldEnhance = false;
+                    synchronized (enhanceChecker_classPool) {
+                        CtClass ctClass = enhanceChecker_classPool.makeClass(new ByteArrayInputStream(this.enhancedByteCode));
+                        if (ctClass.subclassOf(ctPlayPluginClass)) {
+                            shouldEnhance = false;
+                        }
                     }
                 } catch( Exception e) {
                     // nop
@@ -238,6 +315,7 @@ public class ApplicationClasses {
                 if (shouldEnhance) {
                     Play.pluginCollection.enhance(this);
                 }
+                BytecodeCache.cacheEnhancedBytecode(this.enhancedByteCode, name, javaByteCode);
             }
             if (System.getProperty("precompile") != null) {
                 try {
@@ -255,8 +333,7 @@ public class ApplicationClasses {
                     e.printStackTrace();
                 }
             }
-            return this.enhancedByteCode;
-
+            return cached;
         }
 
         /**
@@ -7,7 +7,10 @@ import play.cache.Cache;
 import play.classloading.ApplicationClasses.ApplicationClass;
 import play.classloading.hash.ClassStateHashCreator;
 import play.exceptions.UnexpectedException;
+import play.classloading.enhancers.Enhancer;
 import play.libs.IO;
+import play.utils.PThreadFactory;
+import play.utils.Timeline;
 import play.vfs.VirtualFile;
 
 import java.io.ByteArrayOutputStream;
@@ -16,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.instrument.ClassDefinition;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.AllPermission;
@@ -24,15 +28,35 @@ import java.security.Permissions;
 import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
 /**
  * The application classLoader. 
  * Load the classes from the application Java sources files.
+ * <p>
+ * The classloader is parallel capable: the classes are loaded under a lock by class name,
+ * and the classes already defined are found without locking.
  */
 public class ApplicationClassloader extends ClassLoader {
 
+    static {
+        // ClassLoader.registerAsParallelCapable() is only available since Java 7
+        try {
+            Method register = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            register.setAccessible(true);
+            register.invoke(null);
+        } catch (Exception e) {
+            // The JVM locks the whole classloader, the classes are still loaded by name
+        }
+    }
 
     private final ClassStateHashCreator classStateHashCreator = new ClassStateHashCreator();
 
@@ -64,31 +88,56 @@ public class ApplicationClassloader extends ClassLoader {
         }
     }
 
+    /**
+     * The locks of the classes being loaded, by class name
+     */
+    private final ConcurrentMap<String, Object> loadingLocks = new ConcurrentHashMap<String, Object>();
+
+    Object loadingLock(String name) {
+        Object lock = loadingLocks.get(name);
+        if (lock == null) {
+            lock = new Object();
+            Object existing = loadingLocks.putIfAbsent(name, lock);
+            if (existing != null) {
+                lock = existing;
+            }
+        }
+        return lock;
+    }
+
     /**
      * You know ...
      */
     @Override
-    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
         Class<?> c = findLoadedClass(name);
         if (c != null) {
             return c;
         }
 
-        // First check if it's an application Class
-        Class<?> applicationClass = loadApplicationClass(name);
-        if (applicationClass != null) {
-            if (resolve) {
-                resolveClass(applicationClass);
+        synchronized (loadingLock(name)) {
+            // First check if it's an application Class
+            Class<?> applicationClass = loadApplicationClass(name);
+            if (applicationClass != null) {
+                if (resolve) {
+                    resolveClass(applicationClass);
+                }
+                return applicationClass;
             }
-            return applicationClass;
-        }
 
-        // Delegate to the classic classloader
-        return super.loadClass(name, resolve);
+            // Delegate to the classic classloader
+            return super.loadClass(name, resolve);
+        }
     }
 
     // ~~~~~~~~~~~~~~~~~~~~~~~
     public Class<?> loadApplicationClass(String name) {
+        synchronized (loadingLock(name)) {
+            return defineApplicationClass(name);
+        }
+    }
+
+    Class<?> defineApplicationClass(String name) {
 
         if (ApplicationClass.isClass(name)) {
             Class maybeAlreadyLoaded = findLoadedClass(name);
@@ -132,7 +181,8 @@ public class ApplicationClassloader extends ClassLoader {
             if (applicationClass.isDefinable()) {
                 return applicationClass.javaClass;
             }
-            byte[] bc = BytecodeCache.getBytecode(name, applicationClass.javaSource);
+            // Already enhanced with all the classes at startup
+            byte[] bc = applicationClass.enhanced ? applicationClass.enhancedByteCode : BytecodeCache.getBytecode(name, applicationClass.javaSource);
 
             if (Logger.isTraceEnabled()) {
                 Logger.trace("Compiling code for %s", name);
@@ -305,8 +355,10 @@ public class ApplicationClassloader extends ClassLoader {
     public void detectChanges() {
         // Now check for file modification
         List<ApplicationClass> modifieds = new ArrayList<ApplicationClass>();
+        Map<String, byte[]> previousByteCodes = new HashMap<String, byte[]>();
         for (ApplicationClass applicationClass : Play.classes.all()) {
             if (applicationClass.timestamp < applicationClass.javaFile.lastModified()) {
+                previousByteCodes.put(applicationClass.name, applicationClass.javaByteCode);
                 applicationClass.refresh();
                 modifieds.add(applicationClass);
             }
@@ -316,10 +368,17 @@ public class ApplicationClassloader extends ClassLoader {
         if (modifieds.size() > 0) {
             modifiedWithDependencies.addAll(Play.pluginCollection.onClassesChange(modifieds));
         }
+        for (ApplicationClass applicationClass : modifiedWithDependencies) {
+            if (!previousByteCodes.containsKey(applicationClass.name)) {
+                previousByteCodes.put(applicationClass.name, applicationClass.javaByteCode);
+            }
+        }
         List<ClassDefinition> newDefinitions = new ArrayList<ClassDefinition>();
         boolean dirtySig = false;
-        for (ApplicationClass applicationClass : modifiedWithDependencies) {
-            if (applicationClass.compile() == null) {
+        // With the classes referencing a modified class structure
+        List<ApplicationClass> compiled = modifiedWithDependencies.isEmpty() ? new ArrayList<ApplicationClass>() : Play.classes.compiler.compile(modifiedWithDependencies, previousByteCodes);
+        for (ApplicationClass applicationClass : compiled) {
+            if (applicationClass.javaByteCode == null) {
                 Play.classes.classes.remove(applicationClass.name);
                 currentState = new ApplicationClassloaderState();//show others that we have changed..
             } else {
@@ -329,7 +388,9 @@ public class ApplicationClassloader extends ClassLoader {
                     dirtySig = true;
                 }
                 BytecodeCache.cacheBytecode(applicationClass.enhancedByteCode, applicationClass.name, applicationClass.javaSource);
-                newDefinitions.add(new ClassDefinition(applicationClass.javaClass, applicationClass.enhancedByteCode));
+                if (applicationClass.javaClass != null || modifiedWithDependencies.contains(applicationClass)) {
+                    newDefinitions.add(new ClassDefinition(applicationClass.javaClass, applicationClass.enhancedByteCode));
+                }
                 currentState = new ApplicationClassloaderState();//show others that we have changed..
             }
         }
@@ -393,19 +454,18 @@ public class ApplicationClassloader extends ClassLoader {
 
             if (Play.usePrecompiled) {
 
-                List<ApplicationClass> applicationClasses = new ArrayList<ApplicationClass>();
-                scanPrecompiled(applicationClasses, "", Play.getVirtualFile("precompiled/java"));
-                Play.classes.clear();
-                for (ApplicationClass applicationClass : applicationClasses) {
-                    Play.classes.add(applicationClass);
+                listPrecompiled();
+                Timeline.Phase phase = Timeline.begin("load");
+                for (ApplicationClass applicationClass : Play.classes.all()) {
                     Class clazz = loadApplicationClass(applicationClass.name);
                     applicationClass.javaClass = clazz;
-                    applicationClass.compiled = true;
                     allClasses.add(clazz);
                 }
+                phase.end();
 
             } else {
 
+                Timeline.Phase phase = Timeline.begin("compile");
                 if (!Play.pluginCollection.compileSources()) {
 
                     List<ApplicationClass> all = new ArrayList<ApplicationClass>();
@@ -424,33 +484,232 @@ public class ApplicationClassloader extends ClassLoader {
                     Play.classes.compiler.compile(classNames.toArray(new String[classNames.size()]));
 
                 }
+                phase.end();
 
+                phase = Timeline.begin("enhance");
+                enhanceAll(Play.classes.all());
+                phase.end();
+
+                phase = Timeline.begin("load");
                 for (ApplicationClass applicationClass : Play.classes.all()) {
                     Class clazz = loadApplicationClass(applicationClass.name);
                     if (clazz != null) {
                         allClasses.add(clazz);
                     }
                 }
+                phase.end();
 
-                Collections.sort(allClasses, new Comparator<Class>() {
-
-                    public int compare(Class o1, Class o2) {
-                        return o1.getName().compareTo(o2.getName());
-                    }
-                });
+                if (System.getProperty("precompile") != null) {
+                    phase = Timeline.begin("index");
+                    writeIndex();
+                    phase.end();
+                }
             }
+
+            Collections.sort(allClasses, new Comparator<Class>() {
+
+                public int compare(Class o1, Class o2) {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
         }
         return allClasses;
     }
+
+    /**
+     * Prepare the application classes: compile, enhance and load them, or list the precompiled
+     * classes. With the index of the precompiled classes, the classes are only loaded when needed,
+     * by the class lookups such as {@link #getAssignableClasses(Class)}.
+     */
+    public void initClasses() {
+        if (Play.usePrecompiled) {
+            listPrecompiled();
+            if (Play.classes.index != null) {
+                return;
+            }
+        }
+        getAllClasses();
+    }
+
+    /**
+     * List the precompiled classes, from <code>precompiled/classes.index</code> when it exists.
+     * With the index, only the package-info classes are loaded.
+     */
+    synchronized void listPrecompiled() {
+        if (precompiledListed) {
+            return;
+        }
+        Timeline.Phase phase = Timeline.begin("list");
+        ClassesIndex index = ClassesIndex.read(Play.getFile(INDEX));
+        List<ApplicationClass> applicationClasses = new ArrayList<ApplicationClass>();
+        if (index != null) {
+            for (String name : index.names()) {
+                applicationClasses.add(new ApplicationClass(name));
+            }
+        } else {
+            scanPrecompiled(applicationClasses, "", Play.getVirtualFile("precompiled/java"));
+        }
+        Play.classes.clear();
+        Play.classes.index = index;
+        for (ApplicationClass applicationClass : applicationClasses) {
+            applicationClass.compiled = true;
+            Play.classes.add(applicationClass);
+        }
+        if (index != null) {
+            // The packages are not looked up by class, JPA reads their metadata from all the package-info
+            for (ApplicationClass applicationClass : applicationClasses) {
+                if (!applicationClass.isClass()) {
+                    loadApplicationClass(applicationClass.name);
+                }
+            }
+        }
+        precompiledListed = true;
+        phase.end();
+    }
+    boolean precompiledListed;
+
+    static final String INDEX = "precompiled/classes.index";
+
+    /**
+     * Write the index of the precompiled classes, once they are all loaded
+     */
+    void writeIndex() {
+        Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+        for (ApplicationClass applicationClass : Play.classes.all()) {
+            // The classes written in precompiled/java
+            if (applicationClass.enhancedByteCode != null) {
+                classes.put(applicationClass.name, applicationClass.isClass() ? loadApplicationClass(applicationClass.name) : null);
+            }
+        }
+        ClassesIndex.of(classes).write(Play.getFile(INDEX));
+    }
+
     List<Class> allClasses = null;
 
+    /**
+     * Enhance the compiled classes before loading them, or get their enhanced byteCode from
+     * the cache. The classes are enhanced independently, using <code>play.enhancer.threads</code>
+     * threads (one by default, as the plugins may not expect to enhance several classes at
+     * once), and each enhancer sees the other classes as they have been compiled.
+     */
+    void enhanceAll(List<ApplicationClass> applicationClasses) {
+        long start = System.currentTimeMillis();
+        List<EnhanceTask> tasks = new ArrayList<EnhanceTask>();
+        ClassLoader classLoader = new CompiledClassLoader(getParent());
+        for (ApplicationClass applicationClass : applicationClasses) {
+            if (!applicationClass.enhanced && applicationClass.javaByteCode != null) {
+                tasks.add(new EnhanceTask(applicationClass, classLoader));
+            }
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        // The failure reported is the first one in the classes order
+        Collections.sort(tasks, new Comparator<EnhanceTask>() {
+            public int compare(EnhanceTask t1, EnhanceTask t2) {
+                return t1.applicationClass.name.compareTo(t2.applicationClass.name);
+            }
+        });
+        int threads = Integer.parseInt(Play.configuration.getProperty("play.enhancer.threads", "1"));
+        threads = Math.max(1, Math.min(threads, tasks.size()));
+        if (threads == 1) {
+            try {
+                for (EnhanceTask task : tasks) {
+                    task.call();
+                }
+            } finally {
+                Enhancer.endBatch();
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new PThreadFactory("enhancer"));
+            try {
+                for (Future<Void> result : executor.invokeAll(tasks)) {
+                    result.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new UnexpectedException(e.getCause());
+            } catch (InterruptedException e) {
+                throw new UnexpectedException(e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        int enhanced = 0;
+        for (EnhanceTask task : tasks) {
+            enhanced += task.cached ? 0 : 1;
+        }
+        Logger.info("%s classes enhanced (%s from cache) in %sms using %s threads", enhanced, tasks.size() - enhanced, System.currentTimeMillis() - start, threads);
+        if (enhanced > 0) {
+            Logger.info("Enhancement time by plugin: %s", Enhancer.timingsReport());
+        }
+    }
+
+    static class EnhanceTask implements Callable<Void> {
+
+        final ApplicationClass applicationClass;
+        final ClassLoader contextClassLoader;
+        boolean cached;
+
+        EnhanceTask(ApplicationClass applicationClass, ClassLoader contextClassLoader) {
+            this.applicationClass = applicationClass;
+            this.contextClassLoader = contextClassLoader;
+        }
+
+        public Void call() {
+            ClassLoader previous = Thread.currentThread().getContextClassLoader();
+            // Javassist loads the annotations from the context class loader
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+            Enhancer.startBatch();
+            try {
+                byte[] bc = BytecodeCache.getBytecode(applicationClass.name, applicationClass.javaSource);
+                if (bc != null) {
+                    applicationClass.enhancedByteCode = bc;
+                    cached = true;
+                } else {
+                    cached = applicationClass.enhanceOrRestore();
+                    BytecodeCache.cacheBytecode(applicationClass.enhancedByteCode, applicationClass.name, applicationClass.javaSource);
+                }
+                applicationClass.enhanced = true;
+                return null;
+            } finally {
+                Thread.currentThread().setContextClassLoader(previous);
+            }
+        }
+    }
+
+    /**
+     * Loads the application classes needed while enhancing (the annotations) as they have been
+     * compiled, without going through the enhancement, from any thread
+     */
+    static class CompiledClassLoader extends ClassLoader {
+
+        CompiledClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            ApplicationClass applicationClass = Play.classes.getApplicationClass(name);
+            if (applicationClass == null || applicationClass.javaByteCode == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, applicationClass.javaByteCode, 0, applicationClass.javaByteCode.length);
+        }
+    }
+
     /**
      * Retrieve all application classes assignable to this class.
      * @param clazz The superclass, or the interface.
      * @return A list of class
      */
     public List<Class> getAssignableClasses(Class clazz) {
-        getAllClasses();
+        initClasses();
         List<Class> results = new ArrayList<Class>();
         for (ApplicationClass c : Play.classes.getAssignableClasses(clazz)) {
             results.add(c.javaClass);
@@ -464,10 +723,10 @@ public class ApplicationClassloader extends ClassLoader {
      * @return a class
      */
     public Class getClassIgnoreCase(String name) {
-        getAllClasses();
+        initClasses();
         for (ApplicationClass c : Play.classes.all()) {
             if (c.name.equalsIgnoreCase(name) || c.name.replace("$", ".").equalsIgnoreCase(name)) {
-                if (Play.usePrecompiled) {
+                if (Play.usePrecompiled && c.javaClass != null) {
                     return c.javaClass;
                 }
                 return loadApplicationClass(c.name);
@@ -482,7 +741,7 @@ public class ApplicationClassloader extends ClassLoader {
      * @return A list of class
      */
     public List<Class> getAnnotatedClasses(Class<? extends Annotation> clazz) {
-        getAllClasses();
+        initClasses();
         List<Class> results = new ArrayList<Class>();
         for (ApplicationClass c : Play.classes.getAnnotatedClasses(clazz)) {
             results.add(c.javaClass);
@@ -1,9 +1,17 @@
 package play.classloading;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
@@ -33,7 +41,7 @@ import play.exceptions.UnexpectedException;
  */
 public class ApplicationCompiler {
 
-    Map<String, Boolean> packagesCache = new HashMap<String, Boolean>();
+    Map<String, Boolean> packagesCache = new ConcurrentHashMap<String, Boolean>();
     ApplicationClasses applicationClasses;
     Map<String, String> settings;
 
@@ -125,11 +133,88 @@ public class ApplicationCompiler {
         }
     }
 
+    /**
+     * Compile these classes in one batch, then the classes referencing the ones whose structure
+     * has changed, until the structure of the compiled classes doesn't change anymore
+     * @param applicationClasses The modified classes
+     * @param previousByteCodes The byteCode of the modified classes before their modification, by name
+     * @return The compiled classes, with no byteCode for the ones that don't exist anymore
+     */
+    public synchronized List<ApplicationClass> compile(Collection<ApplicationClass> applicationClasses, Map<String, byte[]> previousByteCodes) {
+        long start = System.currentTimeMillis();
+        Map<String, ApplicationClass> compiled = new LinkedHashMap<String, ApplicationClass>();
+        Collection<ApplicationClass> toCompile = applicationClasses;
+        while (!toCompile.isEmpty()) {
+            Set<String> names = new HashSet<String>();
+            for (ApplicationClass applicationClass : toCompile) {
+                compiled.put(applicationClass.name, applicationClass);
+                // The inner classes are compiled with their main class
+                names.add(applicationClass.name.contains("$") ? applicationClass.name.substring(0, applicationClass.name.indexOf('$')) : applicationClass.name);
+            }
+            compile(names.toArray(new String[names.size()]));
+
+            Set<String> changed = new HashSet<String>();
+            for (ApplicationClass applicationClass : toCompile) {
+                byte[] previous = previousByteCodes.get(applicationClass.name);
+                if (applicationClass.javaByteCode == null || previous == null || hasStructuralChanges(applicationClass.name, previous, applicationClass.javaByteCode)) {
+                    changed.add(simpleName(applicationClass.name));
+                }
+            }
+            toCompile = new ArrayList<ApplicationClass>();
+            if (changed.isEmpty()) {
+                break;
+            }
+            for (ApplicationClass applicationClass : this.applicationClasses.all()) {
+                if (!compiled.containsKey(applicationClass.name) && applicationClass.references != null && !Collections.disjoint(applicationClass.references, changed)) {
+                    previousByteCodes.put(applicationClass.name, applicationClass.javaByteCode);
+                    toCompile.add(applicationClass);
+                }
+            }
+        }
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("%s classes compiled (%s depending on the modified ones) in %sms", compiled.size(), compiled.size() - applicationClasses.size(), System.currentTimeMillis() - start);
+        }
+        return new ArrayList<ApplicationClass>(compiled.values());
+    }
+
+    static boolean hasStructuralChanges(String name, byte[] previous, byte[] byteCode) {
+        try {
+            return new ClassFileReader(previous, name.toCharArray()).hasStructuralChanges(byteCode);
+        } catch (ClassFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return The name of a class as it can be referenced in a source
+     */
+    static String simpleName(String name) {
+        return name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
+    }
+
+    /**
+     * @return The simple names of the types referenced by a compilation unit
+     */
+    static Set<String> references(CompilationResult result) {
+        Set<String> references = new HashSet<String>();
+        if (result.simpleNameReferences != null) {
+            for (char[] name : result.simpleNameReferences) {
+                references.add(new String(name));
+            }
+        }
+        if (result.qualifiedReferences != null) {
+            for (char[][] name : result.qualifiedReferences) {
+                references.add(new String(name[name.length - 1]));
+            }
+        }
+        return references;
+    }
+
     /**
      * Please compile this className
      */
     @SuppressWarnings("deprecation")
-    public void compile(String[] classNames) {
+    public synchronized void compile(String[] classNames) {
 
         ICompilationUnit[] compilationUnits = new CompilationUnit[classNames.length];
         for (int i = 0; i < classNames.length; i++) {
@@ -257,6 +342,7 @@ public class ApplicationCompiler {
                     }
                 }
                 // Something has been compiled
+                Set<String> references = references(result);
                 ClassFile[] clazzFiles = result.getClassFiles();
                 for (int i = 0; i < clazzFiles.length; i++) {
                     final ClassFile clazzFile = clazzFiles[i];
@@ -273,7 +359,9 @@ public class ApplicationCompiler {
                         Logger.trace("Compiled %s", clazzName);
                     }
 
-                    applicationClasses.getApplicationClass(clazzName.toString()).compiled(clazzFile.getBytes());
+                    ApplicationClass applicationClass = applicationClasses.getApplicationClass(clazzName.toString());
+                    applicationClass.compiled(clazzFile.getBytes());
+                    applicationClass.references = references;
                 }
             }
         };
@@ -287,6 +375,10 @@ public class ApplicationCompiler {
             protected void handleInternalException(Throwable e, CompilationUnitDeclaration ud, CompilationResult result) {
             }
         };
+        // To compile again the classes referencing a modified class
+        jdtCompiler.options.produceReferenceInfo = true;
+        // Sources read and code generated in the background
+        jdtCompiler.useSingleThread = !Boolean.parseBoolean(Play.configuration.getProperty("play.compiler.parallel", "false"));
 
         // Go !
         jdtCompiler.compile(compilationUnits);
@@ -1,21 +1,74 @@
 package play.classloading;
 
+import javassist.bytecode.ClassFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import play.CorePlugin;
 import play.Logger;
 import play.Play;
 import play.PlayPlugin;
+import play.classloading.ApplicationClasses.ApplicationClass;
+import play.classloading.enhancers.Enhancer;
+import play.classloading.enhancers.LVEnhancer;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
 import static org.apache.commons.io.FileUtils.writeByteArrayToFile;
 
 /**
- * Used to speed up compilation time
+ * Used to speed up compilation time.
+ *
+ * The bytecode of all classes and templates is kept in a single append-only archive,
+ * <code>tmp/bytecode/{mode}.cache</code>. The archive is memory-mapped and indexed once,
+ * then each lookup only compares the digest of the source. Records are appended under a
+ * file lock and checksummed, so that several JVMs can share the same archive: a record
+ * being written by another process is never read.
+ *
+ * The enhanced bytecode of the classes is also kept by digest of the compiled bytecode and
+ * of the enhancing plugins, so that a class compiled again to the same bytecode is not enhanced
+ * again, whatever the changes of its source.
  */
 public class BytecodeCache {
 
+    static final byte[] MAGIC = {'P', 'L', 'A', 'Y', 'B', 'C', '0', '1'};
+    // Name length, digest, bytecode length and checksum
+    static final int MIN_RECORD = 2 + 16 + 4 + 4;
+
+    static volatile Archive archive;
+
+    // Digests of the sources being compiled, to not compute them again when caching the result
+    static final Map<String, Digest> pending = new ConcurrentHashMap<String, Digest>();
+
+    static volatile List<PlayPlugin> fingerprintPlugins;
+    static volatile byte[] fingerprint;
+
+    // Prefix of the enhanced bytecode entries, never a class or template name
+    static final String ENHANCED = "{enhanced}";
+    static volatile List<PlayPlugin> enhancersPlugins;
+    static volatile byte[] enhancersFingerprint;
+    // Digests of the jars and class directories of the plugins, that don't change while running
+    static final Map<File, byte[]> codeSources = new ConcurrentHashMap<File, byte[]>();
+
     /**
      * Delete the bytecode
      * @param name Cache name
@@ -25,9 +78,9 @@ public class BytecodeCache {
             if (!Play.initialized || Play.tmpDir == null || Play.readOnlyTmp || !Play.configuration.getProperty("play.bytecodeCache", "true").equals("true")) {
                 return;
             }
-            File f = cacheFile(name.replace("/", "_").replace("{", "_").replace("}", "_").replace(":", "_"));
-            if (f.exists()) {
-                f.delete();
+            Archive archive = archive();
+            if (archive.get(name) != null) {
+                archive.append(name, null, null);
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -45,30 +98,13 @@ public class BytecodeCache {
             if (!Play.initialized || Play.tmpDir == null || !Play.configuration.getProperty("play.bytecodeCache", "true").equals("true")) {
                 return null;
             }
-            File f = cacheFile(name.replace("/", "_").replace("{", "_").replace("}", "_").replace(":", "_"));
-            if (f.exists()) {
-                FileInputStream fis = new FileInputStream(f);
-                // Read hash
-                int offset = 0;
-                int read = -1;
-                StringBuilder hash = new StringBuilder();
-                // look for null byte, or end-of file
-                while ((read = fis.read()) > 0) {
-                    hash.append((char) read);
-                    offset++;
-                }
-                if (!hash(source).equals(hash.toString())) {
-
-                    if (Logger.isTraceEnabled()) {
-                        Logger.trace("Bytecode too old (%s != %s)", hash, hash(source));
-                    }
-                    return null;
-                }
-                byte[] byteCode = new byte[(int) f.length() - (offset + 1)];
-                fis.read(byteCode);
-                fis.close();
+            byte[] digest = digest(source);
+            byte[] byteCode = archive().get(name, digest);
+            if (byteCode != null) {
+                pending.remove(name);
                 return byteCode;
             }
+            pending.put(name, new Digest(source, digest));
 
             if (Logger.isTraceEnabled()) {
                 Logger.trace("Cache MISS for %s", name);
@@ -90,20 +126,13 @@ public class BytecodeCache {
             if (!Play.initialized || Play.tmpDir == null || Play.readOnlyTmp || !Play.configuration.getProperty("play.bytecodeCache", "true").equals("true")) {
                 return;
             }
-            File f = cacheFile(name.replace("/", "_").replace("{", "_").replace("}", "_").replace(":", "_"));
-            FileOutputStream fos = new FileOutputStream(f);
-            try {
-                fos.write(hash(source).getBytes("utf-8"));
-                fos.write(0);
-                fos.write(byteCode);
-            }
-            finally {
-                fos.close();
-            }
+            Digest pendingDigest = pending.remove(name);
+            byte[] digest = pendingDigest != null && pendingDigest.source == source ? pendingDigest.digest : digest(source);
+            archive().append(name, digest, byteCode);
 
             // emit bytecode to standard class layout as well
             if (!name.contains("/") && !name.contains("{")) {
-                f = new File(Play.tmpDir, "classes/" + name.replace(".", "/") + ".class");
+                File f = new File(Play.tmpDir, "classes/" + name.replace(".", "/") + ".class");
                 f.getParentFile().mkdirs();
                 writeByteArrayToFile(f, byteCode);
             }
@@ -117,41 +146,604 @@ public class BytecodeCache {
     }
 
     /**
-     * Build a hash of the source code.
+     * Retrieve the enhanced bytecode of a class if it has been compiled to the same bytecode,
+     * and enhanced by the same plugins
+     * @param name The class name
+     * @param javaByteCode The compiled bytecode
+     * @return The enhanced bytecode
+     */
+    public static byte[] getEnhancedBytecode(String name, byte[] javaByteCode) {
+        try {
+            if (!Play.initialized || Play.tmpDir == null || !Play.configuration.getProperty("play.bytecodeCache", "true").equals("true")) {
+                return null;
+            }
+            byte[] digest = enhancedDigest(javaByteCode);
+            byte[] byteCode = archive().get(ENHANCED + name, digest);
+            if (byteCode != null) {
+                pending.remove(ENHANCED + name);
+                return byteCode;
+            }
+            pending.put(ENHANCED + name, new Digest(javaByteCode, digest));
+            return null;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Cache the enhanced bytecode of a class
+     * @param enhancedByteCode The enhanced bytecode
+     * @param name The class name
+     * @param javaByteCode The compiled bytecode
+     */
+    public static void cacheEnhancedBytecode(byte[] enhancedByteCode, String name, byte[] javaByteCode) {
+        try {
+            if (!Play.initialized || Play.tmpDir == null || Play.readOnlyTmp || !Play.configuration.getProperty("play.bytecodeCache", "true").equals("true")) {
+                return;
+            }
+            Digest pendingDigest = pending.remove(ENHANCED + name);
+            byte[] digest = pendingDigest != null && pendingDigest.source == javaByteCode ? pendingDigest.digest : enhancedDigest(javaByteCode);
+            archive().append(ENHANCED + name, digest, enhancedByteCode);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Build a digest of the source code, the Play version and the enabled plugins.
      * To efficiently track source code modifications.
      */
-    static String hash(String text) {
+    static byte[] digest(String text) {
         try {
-            StringBuffer plugins = new StringBuffer();
-            for(PlayPlugin plugin : Play.pluginCollection.getEnabledPlugins()) {
-                plugins.append(plugin.getClass().getName());
+            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            messageDigest.update(fingerprint());
+            messageDigest.update(enhancersConfiguration());
+            messageDigest.update(text.getBytes("utf-8"));
+            return messageDigest.digest();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static byte[] fingerprint() throws IOException {
+        List<PlayPlugin> plugins = Play.pluginCollection.getEnabledPlugins();
+        byte[] result = fingerprint;
+        if (result == null || fingerprintPlugins != plugins) {
+            StringBuilder builder = new StringBuilder(Play.version);
+            for (PlayPlugin plugin : plugins) {
+                builder.append(plugin.getClass().getName());
             }
+            result = builder.toString().getBytes("utf-8");
+            fingerprint = result;
+            fingerprintPlugins = plugins;
+        }
+        return result;
+    }
+
+    /**
+     * Build a digest of the compiled bytecode, of the compiled bytecode of its application
+     * superclasses and interfaces, and of the application classes it references, that the
+     * enhancers may look at (such as the modifiers of the fields it accesses), and of the code
+     * of the enhancing plugins
+     */
+    static byte[] enhancedDigest(byte[] javaByteCode) {
+        try {
             MessageDigest messageDigest = MessageDigest.getInstance("MD5");
-            messageDigest.reset();
-            messageDigest.update((Play.version + plugins.toString() + text).getBytes("utf-8"));
-            byte[] digest = messageDigest.digest();
-            StringBuilder builder = new StringBuilder();
-            for (int i = 0; i < digest.length; ++i) {
-                int value = digest[i];
-                if (value < 0) {
-                    value += 256;
-                }
-                builder.append(Integer.toHexString(value));
-            }
-            return builder.toString();
+            messageDigest.update(enhancersFingerprint());
+            messageDigest.update(enhancersConfiguration());
+            Set<String> visited = new HashSet<String>();
+            List<byte[]> byteCodes = new ArrayList<byte[]>();
+            byteCodes.add(javaByteCode);
+            boolean referencing = true;
+            while (!byteCodes.isEmpty()) {
+                byte[] byteCode = byteCodes.remove(byteCodes.size() - 1);
+                messageDigest.update(byteCode);
+                ClassFile classFile = new ClassFile(new DataInputStream(new ByteArrayInputStream(byteCode)));
+                visited.add(classFile.getName());
+                List<String> supertypes = new ArrayList<String>(Arrays.asList(classFile.getInterfaces()));
+                supertypes.add(classFile.getSuperclass());
+                if (referencing) {
+                    // Only the classes referenced by the enhanced class, then their supertypes
+                    referencing = false;
+                    Set<String> references = new TreeSet<String>();
+                    for (Object reference : classFile.getConstPool().getClassNames()) {
+                        String name = ((String) reference).replace('/', '.');
+                        if (!name.startsWith("[")) {
+                            references.add(name);
+                        }
+                    }
+                    supertypes.addAll(references);
+                }
+                for (String supertype : supertypes) {
+                    ApplicationClass applicationClass = Play.classes == null || !Play.classes.hasClass(supertype) || !visited.add(supertype) ? null : Play.classes.getApplicationClass(supertype);
+                    if (applicationClass == null) {
+                        continue;
+                    }
+                    if (applicationClass.javaByteCode != null) {
+                        byteCodes.add(applicationClass.javaByteCode);
+                    } else if (applicationClass.javaSource != null) {
+                        // Not compiled yet
+                        messageDigest.update(applicationClass.javaSource.getBytes("utf-8"));
+                    }
+                }
+            }
+            return messageDigest.digest();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Retrieve the real file that will be used as cache.
+     * The Play version, and the digest of the code sources (the jars or the class directories)
+     * of the enabled plugins and of the core enhancers, so that a new version of a plugin or of
+     * the enhancers it delegates to doesn't reuse the classes enhanced by the previous one.
+     */
+    static byte[] enhancersFingerprint() throws Exception {
+        List<PlayPlugin> plugins = Play.pluginCollection.getEnabledPlugins();
+        byte[] result = enhancersFingerprint;
+        if (result == null || enhancersPlugins != plugins) {
+            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            messageDigest.update(Play.version.getBytes("utf-8"));
+            messageDigest.update(codeSource(Enhancer.class));
+            for (PlayPlugin plugin : plugins) {
+                messageDigest.update(codeSource(plugin.getClass()));
+                if (plugin instanceof CorePlugin) {
+                    for (Class<?> enhancer : ((CorePlugin) plugin).defaultEnhancers()) {
+                        messageDigest.update(codeSource(enhancer));
+                    }
+                }
+            }
+            result = messageDigest.digest();
+            enhancersFingerprint = result;
+            enhancersPlugins = plugins;
+        }
+        return result;
+    }
+
+    /**
+     * The configuration of the core enhancers
+     */
+    static byte[] enhancersConfiguration() throws IOException {
+        return ("play.lvEnhancer.mode=" + (LVEnhancer.isStatic() ? "static" : "tracing")).getBytes("utf-8");
+    }
+
+    /**
+     * @return The class file of this class, or the source of an application class
+     */
+    static byte[] code(Class<?> type) throws IOException {
+        String name = type.getName();
+        if (type.getClassLoader() instanceof ApplicationClassloader) {
+            ApplicationClass applicationClass = Play.classes.getApplicationClass(name);
+            if (applicationClass != null && applicationClass.javaSource != null) {
+                return (name + applicationClass.javaSource).getBytes("utf-8");
+            }
+        }
+        InputStream input = type.getClassLoader() == null ? null : type.getClassLoader().getResourceAsStream(name.replace('.', '/') + ".class");
+        if (input == null) {
+            return name.getBytes("utf-8");
+        }
+        try {
+            return IOUtils.toByteArray(input);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * @return The digest of the code of this class and of the jar or of the class directory it
+     * was loaded from, or the source of an application class
+     */
+    static byte[] codeSource(Class<?> type) throws Exception {
+        File location = null;
+        if (!(type.getClassLoader() instanceof ApplicationClassloader) && type.getProtectionDomain().getCodeSource() != null) {
+            try {
+                location = new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+            } catch (Exception e) {
+                // Not a file
+            }
+        }
+        if (location == null || !location.exists()) {
+            return code(type);
+        }
+        MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        messageDigest.update(code(type));
+        messageDigest.update(codeSource(location));
+        return messageDigest.digest();
+    }
+
+    /**
+     * @return The digest of the content of a jar, or of the files of a class directory
+     */
+    static byte[] codeSource(File location) throws Exception {
+        byte[] digest = codeSources.get(location);
+        if (digest == null) {
+            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            if (location.isDirectory()) {
+                digestTree(messageDigest, location, "");
+            } else {
+                InputStream input = new FileInputStream(location);
+                try {
+                    byte[] buffer = new byte[8192];
+                    for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                        messageDigest.update(buffer, 0, read);
+                    }
+                } finally {
+                    IOUtils.closeQuietly(input);
+                }
+            }
+            digest = messageDigest.digest();
+            codeSources.put(location, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Digest the names, lengths and modification times of the files of a class directory
      */
-    static File cacheFile(String id) {
-        File dir = new File(Play.tmpDir, "bytecode/" + Play.mode.name());
-        if (!dir.exists() && Play.tmpDir != null && !Play.readOnlyTmp) {
-            dir.mkdirs();
+    static void digestTree(MessageDigest messageDigest, File directory, String path) throws IOException {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                digestTree(messageDigest, child, path + child.getName() + "/");
+            } else {
+                messageDigest.update((path + child.getName() + ":" + child.length() + ":" + child.lastModified() + "\n").getBytes("utf-8"));
+            }
+        }
+    }
+
+    /**
+     * Retrieve the archive used as cache.
+     */
+    static Archive archive() throws IOException {
+        File file = new File(Play.tmpDir, "bytecode/" + Play.mode.name() + ".cache");
+        Archive current = archive;
+        if (current == null || !current.file.equals(file)) {
+            synchronized (BytecodeCache.class) {
+                current = archive;
+                if (current == null || !current.file.equals(file)) {
+                    if (current != null) {
+                        current.close();
+                    }
+                    long start = System.currentTimeMillis();
+                    File files = new File(Play.tmpDir, "bytecode/" + Play.mode.name());
+                    if (!Play.readOnlyTmp && files.isDirectory()) {
+                        // The cache of the previous versions, with a file by entry
+                        FileUtils.deleteQuietly(files);
+                    }
+                    current = new Archive(file);
+                    archive = current;
+                    if (Logger.isDebugEnabled()) {
+                        Logger.debug("%s bytecode cache entries loaded in %sms", current.index.size(), System.currentTimeMillis() - start);
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    static class Digest {
+
+        // The source, or the compiled bytecode of an enhanced class
+        final Object source;
+        final byte[] digest;
+
+        Digest(Object source, byte[] digest) {
+            this.source = source;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * The archive records, appended one after the other after the magic number:
+     * <pre>
+     * int    length of the record, after this field
+     * short  length of the name, then the UTF-8 name
+     * byte[16] digest of the source
+     * int    length of the bytecode (-1 for a deleted entry), then the bytecode
+     * int    CRC32 of the record, from the name
+     * </pre>
+     * The last record of a name wins.
+     */
+    static class Archive {
+
+        final File file;
+        final Map<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+        MappedByteBuffer mapped;
+        RandomAccessFile output;
+        // End of the complete records known by this process
+        long end;
+        long dead;
+
+        Archive(File file) throws IOException {
+            this.file = file;
+            map();
+            if (!Play.readOnlyTmp && dead > 0 && dead > mapped.capacity() / 2) {
+                compact();
+            }
+        }
+
+        void map() throws IOException {
+            index.clear();
+            mapped = null;
+            end = 0;
+            dead = 0;
+            if (file.length() > 0) {
+                RandomAccessFile input = new RandomAccessFile(file, "r");
+                try {
+                    mapped = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+                } finally {
+                    // The mapping stays valid
+                    input.close();
+                }
+                load();
+            }
+        }
+
+        /**
+         * Index the records of the mapped archive, without reading the bytecode
+         */
+        void load() {
+            if (mapped.capacity() < MAGIC.length) {
+                return;
+            }
+            byte[] magic = new byte[MAGIC.length];
+            ByteBuffer buffer = mapped.duplicate();
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                Logger.warn("Ignoring the bytecode cache %s, unknown format", file);
+                dead = buffer.capacity();
+                return;
+            }
+            int position = MAGIC.length;
+            int limit = buffer.capacity();
+            while (position + 4 <= limit) {
+                int length = buffer.getInt(position);
+                if (length < MIN_RECORD || position + 4 + length > limit) {
+                    // An incomplete record, being written or interrupted
+                    break;
+                }
+                buffer.position(position + 4);
+                byte[] name = new byte[buffer.getShort() & 0xffff];
+                if (name.length > length - MIN_RECORD) {
+                    break;
+                }
+                buffer.get(name);
+                Entry entry = new Entry(position, length, buffer.position(), buffer.getInt(buffer.position() + 16));
+                if (MIN_RECORD + name.length + Math.max(entry.byteCodeLength, 0) != length) {
+                    break;
+                }
+                Entry previous = index.put(utf8(name), entry);
+                if (previous != null) {
+                    dead += 4 + previous.length;
+                }
+                if (entry.byteCodeLength < 0) {
+                    dead += 4 + length;
+                }
+                position += 4 + length;
+            }
+            end = position;
+        }
+
+        Entry get(String name) {
+            Entry entry = index.get(name);
+            return entry == null || entry.byteCodeLength < 0 ? null : entry;
+        }
+
+        /**
+         * @return The bytecode of this name, if it has been compiled from the source of this digest
+         */
+        byte[] get(String name, byte[] digest) {
+            Entry entry = get(name);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.byteCode != null) {
+                return Arrays.equals(entry.digest, digest) ? entry.byteCode : null;
+            }
+            ByteBuffer buffer = mapped.duplicate();
+            buffer.position(entry.digestOffset);
+            for (int i = 0; i < digest.length; i++) {
+                if (buffer.get() != digest[i]) {
+                    if (Logger.isTraceEnabled()) {
+                        Logger.trace("Bytecode too old for %s", name);
+                    }
+                    return null;
+                }
+            }
+            byte[] record = new byte[entry.length - 4];
+            buffer.position(entry.offset + 4);
+            buffer.get(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                Logger.warn("Corrupted bytecode cache entry for %s", name);
+                return null;
+            }
+            return Arrays.copyOfRange(record, record.length - entry.byteCodeLength, record.length);
+        }
+
+        /**
+         * Append a record to the archive, or a deletion if the bytecode is null
+         */
+        synchronized void append(String name, byte[] digest, byte[] byteCode) throws IOException {
+            byte[] nameBytes = name.getBytes("utf-8");
+            int byteCodeLength = byteCode == null ? -1 : byteCode.length;
+            ByteBuffer record = ByteBuffer.allocate(4 + 2 + nameBytes.length + 16 + 4 + Math.max(byteCodeLength, 0) + 4);
+            record.putInt(record.capacity() - 4);
+            record.putShort((short) nameBytes.length);
+            record.put(nameBytes);
+            record.put(digest == null ? new byte[16] : digest);
+            record.putInt(byteCodeLength);
+            if (byteCode != null) {
+                record.put(byteCode);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 4, record.position() - 4);
+            record.putInt((int) crc.getValue());
+            record.flip();
+
+            FileLock lock = lock();
+            FileChannel channel = output.getChannel();
+            try {
+                long position = channel.size();
+                if (position > end || end < MAGIC.length) {
+                    position = skip(channel, end, position);
+                }
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+                end = position;
+            } finally {
+                lock.release();
+            }
+            Entry entry = new Entry(-1, record.capacity() - 4, -1, byteCodeLength);
+            entry.digest = digest;
+            entry.byteCode = byteCode;
+            index.put(name, entry);
+        }
+
+        /**
+         * Lock the archive for writing. If another process has replaced it by a compacted
+         * archive meanwhile, the new archive is opened and indexed again first, so that the
+         * records are not appended to the replaced one.
+         */
+        FileLock lock() throws IOException {
+            while (true) {
+                if (output == null) {
+                    file.getParentFile().mkdirs();
+                    output = new RandomAccessFile(file, "rw");
+                }
+                FileLock lock = output.getChannel().lock();
+                // The records are only appended under the lock, so the same file has the same length
+                if (file.length() == output.getChannel().size()) {
+                    return lock;
+                }
+                lock.release();
+                output.close();
+                output = null;
+                map();
+            }
+        }
+
+        /**
+         * Skip the records appended by the other processes, and an interrupted record
+         * that would be left at the end of the archive.
+         * @return The end of the complete records
+         */
+        long skip(FileChannel channel, long position, long size) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+            if (position < MAGIC.length) {
+                channel.read(header, 0);
+                if (size < MAGIC.length || !Arrays.equals(header.array(), MAGIC)) {
+                    channel.truncate(0);
+                    channel.write(ByteBuffer.wrap(MAGIC), 0);
+                    return MAGIC.length;
+                }
+                position = MAGIC.length;
+            }
+            while (position + 4 <= size) {
+                header.clear();
+                header.limit(4);
+                channel.read(header, position);
+                int length = header.getInt(0);
+                if (length < MIN_RECORD || position + 4 + length > size) {
+                    break;
+                }
+                position += 4 + length;
+            }
+            if (position < size) {
+                // Appended records are complete once the lock is released
+                channel.truncate(position);
+            }
+            return position;
+        }
+
+        /**
+         * Rewrite the archive with its live records only. The archive is replaced by a rename
+         * under its lock, so that the other processes keep reading the previous one, and open
+         * the compacted one when they next append to it.
+         */
+        synchronized void compact() {
+            File compacted = null;
+            try {
+                FileLock lock = lock();
+                try {
+                    // With the records appended by the other processes
+                    map();
+                    compacted = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+                    RandomAccessFile out = new RandomAccessFile(compacted, "rw");
+                    try {
+                        FileChannel channel = out.getChannel();
+                        channel.write(ByteBuffer.wrap(MAGIC));
+                        for (Entry entry : index.values()) {
+                            if (entry.byteCodeLength >= 0) {
+                                ByteBuffer record = mapped.duplicate();
+                                record.limit(entry.offset + 4 + entry.length);
+                                record.position(entry.offset);
+                                while (record.hasRemaining()) {
+                                    channel.write(record);
+                                }
+                            }
+                        }
+                    } finally {
+                        out.close();
+                    }
+                    if (compacted.renameTo(file)) {
+                        map();
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                Logger.warn(e, "Cannot compact the bytecode cache %s", file);
+            } finally {
+                if (compacted != null) {
+                    compacted.delete();
+                }
+                // Opened again on the compacted archive
+                close();
+            }
+        }
+
+        synchronized void close() {
+            try {
+                if (output != null) {
+                    output.close();
+                    output = null;
+                }
+            } catch (IOException e) {
+                Logger.warn(e, "Cannot close the bytecode cache %s", file);
+            }
+        }
+
+        static String utf8(byte[] bytes) {
+            try {
+                return new String(bytes, "utf-8");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    static class Entry {
+
+        final int offset;
+        final int length;
+        final int digestOffset;
+        final int byteCodeLength;
+        // For the entries appended after the archive was mapped
+        byte[] digest;
+        byte[] byteCode;
+
+        Entry(int offset, int length, int digestOffset, int byteCodeLength) {
+            this.offset = offset;
+            this.length = length;
+            this.digestOffset = digestOffset;
+            this.byteCodeLength = byteCodeLength;
         }
-        return new File(dir, id);
     }
 }
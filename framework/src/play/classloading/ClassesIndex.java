@@ -0,0 +1,165 @@
+package play.classloading;
+
+import java.io.File;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import play.libs.IO;
+
+/**
+ * Index of the precompiled application classes, written by <code>play precompile</code> in
+ * <code>precompiled/classes.index</code>. For each class it lists its superclasses and
+ * interfaces and its annotations, so that a precompiled application finds its models,
+ * jobs, plugins... without loading all its classes.
+ * <p>
+ * Each line is a class, with tab separated fields:
+ * <pre>
+ * name    supertypes    annotations
+ * </pre>
+ * The supertypes are all the classes and interfaces the class is assignable to, and the
+ * annotations are the annotations present on the class, inherited ones included.
+ */
+public class ClassesIndex {
+
+    static final String HEADER = "# Play classes index";
+
+    final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    static class Entry {
+
+        final String name;
+        final Set<String> supertypes = new LinkedHashSet<String>();
+        final Set<String> annotations = new LinkedHashSet<String>();
+
+        Entry(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Index these loaded classes
+     * @param classes The classes, by name. A null class is only listed (a package-info)
+     */
+    public static ClassesIndex of(Map<String, Class<?>> classes) {
+        ClassesIndex index = new ClassesIndex();
+        for (Map.Entry<String, Class<?>> e : new TreeMap<String, Class<?>>(classes).entrySet()) {
+            Entry entry = new Entry(e.getKey());
+            Class<?> clazz = e.getValue();
+            if (clazz != null) {
+                supertypes(clazz, entry.supertypes);
+                entry.supertypes.remove(clazz.getName());
+                // Also for an interface
+                entry.supertypes.add(Object.class.getName());
+                for (Annotation annotation : clazz.getAnnotations()) {
+                    entry.annotations.add(annotation.annotationType().getName());
+                }
+            }
+            index.entries.put(entry.name, entry);
+        }
+        return index;
+    }
+
+    static void supertypes(Class<?> clazz, Set<String> supertypes) {
+        if (clazz == null || !supertypes.add(clazz.getName())) {
+            return;
+        }
+        supertypes(clazz.getSuperclass(), supertypes);
+        for (Class<?> i : clazz.getInterfaces()) {
+            supertypes(i, supertypes);
+        }
+    }
+
+    /**
+     * Read an index
+     * @return The index, or null if there is no such file
+     */
+    public static ClassesIndex read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        ClassesIndex index = new ClassesIndex();
+        for (String line : IO.readLines(file)) {
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t", -1);
+            Entry entry = new Entry(fields[0]);
+            entry.supertypes.addAll(split(fields[1]));
+            entry.annotations.addAll(split(fields[2]));
+            index.entries.put(entry.name, entry);
+        }
+        return index;
+    }
+
+    static List<String> split(String field) {
+        if (field.length() == 0) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(field.split(" "));
+    }
+
+    public void write(File file) {
+        StringBuilder out = new StringBuilder(HEADER).append('\n');
+        for (Entry entry : entries.values()) {
+            out.append(entry.name).append('\t');
+            join(out, entry.supertypes).append('\t');
+            join(out, entry.annotations).append('\n');
+        }
+        file.getParentFile().mkdirs();
+        IO.writeContent(out, file);
+    }
+
+    static StringBuilder join(StringBuilder out, Collection<String> names) {
+        boolean first = true;
+        for (String name : names) {
+            if (!first) {
+                out.append(' ');
+            }
+            out.append(name);
+            first = false;
+        }
+        return out;
+    }
+
+    /**
+     * @return The names of all the indexed classes, package-info included
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @return The names of the classes assignable to this class, but itself
+     */
+    public List<String> getAssignableClasses(Class<?> clazz) {
+        List<String> results = new ArrayList<String>();
+        for (Entry entry : entries.values()) {
+            if (entry.supertypes.contains(clazz.getName())) {
+                results.add(entry.name);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return The names of the classes with this annotation
+     */
+    public List<String> getAnnotatedClasses(Class<? extends Annotation> clazz) {
+        List<String> results = new ArrayList<String>();
+        for (Entry entry : entries.values()) {
+            if (entry.annotations.contains(clazz.getName())) {
+                results.add(entry.name);
+            }
+        }
+        return results;
+    }
+}
@@ -8,8 +8,15 @@ import java.io.FileInputStream;
 import java.lang.annotation.Annotation;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javassist.ClassPath;
 import javassist.ClassPool;
 import javassist.CtClass;
@@ -21,6 +28,7 @@ import javassist.bytecode.AnnotationsAttribute;
 import javassist.bytecode.annotation.MemberValue;
 import play.Play;
 import play.Logger;
+import play.PlayPlugin;
 import play.classloading.ApplicationClasses.ApplicationClass;
 
 /**
@@ -30,11 +38,29 @@ public abstract class Enhancer {
 
     protected ClassPool classPool;
 
+    /**
+     * The pool of the framework and JDK classes of this thread, while enhancing a batch of classes
+     */
+    static final ThreadLocal<ClassPool> batchClassPool = new ThreadLocal<ClassPool>();
+
+    /**
+     * Cumulated time spent in each enhancer, and in each plugin enhancing classes, in nanoseconds
+     */
+    static final ConcurrentMap<String, AtomicLong> enhancerTimings = new ConcurrentHashMap<String, AtomicLong>();
+    static final ConcurrentMap<String, AtomicLong> pluginTimings = new ConcurrentHashMap<String, AtomicLong>();
+
     public Enhancer() {
         this.classPool = newClassPool();
     }
     
     public static ClassPool newClassPool() {
+        ClassPool parent = batchClassPool.get();
+        if (parent != null) {
+            // The framework classes are parsed once per thread, the application classes once per enhancer
+            ClassPool classPool = new ClassPool(parent);
+            classPool.appendClassPath(new ApplicationClassesClasspath(true));
+            return classPool;
+        }
         ClassPool classPool = new ClassPool();
         classPool.appendSystemPath();
         classPool.appendClassPath(new LoaderClassPath(Enhancer.class.getClassLoader()));
@@ -42,6 +68,77 @@ public abstract class Enhancer {
         return classPool;
     }
 
+    /**
+     * Start enhancing a batch of classes in this thread, possibly concurrently with other threads.
+     * Until {@link #endBatch()}, the other application classes are seen as they have been compiled,
+     * before their enhancement, so that the result does not depend on the order of enhancement.
+     */
+    public static void startBatch() {
+        if (batchClassPool.get() == null) {
+            ClassPool classPool = new ClassPool();
+            classPool.appendSystemPath();
+            classPool.appendClassPath(new LoaderClassPath(Enhancer.class.getClassLoader()));
+            batchClassPool.set(classPool);
+        }
+    }
+
+    public static void endBatch() {
+        batchClassPool.remove();
+    }
+
+    /**
+     * Record the time spent by an enhancer on a class, in a batch
+     */
+    public static void addEnhancerTiming(Class<?> enhancer, long nanos) {
+        addTiming(enhancerTimings, enhancer.getSimpleName(), nanos);
+    }
+
+    /**
+     * Record the time spent by a plugin enhancing a class, in a batch
+     */
+    public static void addPluginTiming(PlayPlugin plugin, long nanos) {
+        addTiming(pluginTimings, plugin.getClass().getSimpleName(), nanos);
+    }
+
+    static void addTiming(ConcurrentMap<String, AtomicLong> timings, String name, long nanos) {
+        if (batchClassPool.get() == null) {
+            // Only the batches are reported
+            return;
+        }
+        AtomicLong total = timings.get(name);
+        if (total == null) {
+            AtomicLong existing = timings.putIfAbsent(name, total = new AtomicLong());
+            if (existing != null) {
+                total = existing;
+            }
+        }
+        total.addAndGet(nanos);
+    }
+
+    /**
+     * @return The cumulated time spent by each plugin and enhancer in the batches since the last call, from the longest
+     */
+    public static String timingsReport() {
+        String plugins = timingsReport(pluginTimings);
+        String enhancers = timingsReport(enhancerTimings);
+        return plugins + (enhancers.length() > 0 ? " - enhancers: " + enhancers : "");
+    }
+
+    static String timingsReport(ConcurrentMap<String, AtomicLong> timings) {
+        List<Map.Entry<String, AtomicLong>> entries = new ArrayList<Map.Entry<String, AtomicLong>>(timings.entrySet());
+        timings.clear();
+        Collections.sort(entries, new Comparator<Map.Entry<String, AtomicLong>>() {
+            public int compare(Map.Entry<String, AtomicLong> e1, Map.Entry<String, AtomicLong> e2) {
+                return Long.valueOf(e2.getValue().get()).compareTo(e1.getValue().get());
+            }
+        });
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, AtomicLong> entry : entries) {
+            report.append(report.length() == 0 ? "" : ", ").append(entry.getKey()).append(" ").append(entry.getValue().get() / 1000000).append("ms");
+        }
+        return report.toString();
+    }
+
     /**
      * Construct a javassist CtClass from an application class.
      */
@@ -59,6 +156,19 @@ public abstract class Enhancer {
      */
     public static class ApplicationClassesClasspath implements ClassPath {
 
+        final boolean compiled;
+
+        public ApplicationClassesClasspath() {
+            this(false);
+        }
+
+        /**
+         * @param compiled Read the compiled byteCode, instead of the byteCode enhanced so far
+         */
+        public ApplicationClassesClasspath(boolean compiled) {
+            this.compiled = compiled;
+        }
+
         public InputStream openClassfile(String className) throws NotFoundException {
 
             if(Play.usePrecompiled) {
@@ -71,6 +181,10 @@ public abstract class Enhancer {
             }
             ApplicationClass appClass = Play.classes.getApplicationClass(className);
 
+            if (compiled && appClass.javaByteCode != null) {
+                return new ByteArrayInputStream(appClass.javaByteCode);
+            }
+
             if ( appClass.enhancedByteCode == null) {
                 throw new RuntimeException("Trying to visit uncompiled class while enhancing. Uncompiled class: " + className);
             }
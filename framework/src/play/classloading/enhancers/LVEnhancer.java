@@ -1,6 +1,8 @@
 package play.classloading.enhancers;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Stack;
 
 import javassist.CtBehavior;
@@ -11,6 +13,7 @@ import javassist.NotFoundException;
 import javassist.bytecode.BadBytecode;
 import javassist.bytecode.Bytecode;
 import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstPool;
 import javassist.bytecode.Opcode;
 import javassist.compiler.CompileError;
 import bytecodeparser.analysis.decoders.DecodedMethodInvocationOp;
@@ -27,13 +30,51 @@ import play.classloading.ApplicationClasses.ApplicationClass;
 import play.exceptions.UnexpectedException;
 import play.libs.Codec;
 
+/**
+ * Give the names of their arguments to the methods reading them, such as <code>render(user, posts)</code>,
+ * and keep the names of the parameters of the methods, for the actions.
+ * <p>
+ * By default (<code>play.lvEnhancer.mode=tracing</code>), all the application methods are instrumented
+ * to trace, at runtime, the names of the arguments of all their calls. With
+ * <code>play.lvEnhancer.mode=static</code>, the names of the arguments are found when the class is
+ * enhanced, and only given before the calls to the methods reading them: the other methods are not
+ * instrumented, and only controllers and mailers keep the names of their parameters.
+ */
 public class LVEnhancer extends Enhancer {
+
+    /**
+     * The methods reading the names of their arguments, with their descriptor, besides the
+     * methods of {@link play.data.validation.Validation}
+     */
+    static final Set<String> NAMED_METHODS = new HashSet<String>(Arrays.asList(
+            "render([Ljava/lang/Object;)V",
+            "renderTemplate(Ljava/lang/String;[Ljava/lang/Object;)V",
+            "parent([Ljava/lang/Object;)V",
+            "send([Ljava/lang/Object;)Ljava/util/concurrent/Future;",
+            "validateAndSave()Z"));
+
+    // The checks of Validation naming their arguments, the other ones are given a key
+    static final Set<String> NAMED_CHECKS = new HashSet<String>(Arrays.asList(
+            "required", "min", "max", "future", "past", "match", "email", "url", "phone", "ipv4Address",
+            "ipv6Address", "isTrue", "equals", "range", "minSize", "maxSize", "valid"));
+
+    /**
+     * @return true if the arguments are named when the classes are enhanced
+     */
+    public static boolean isStatic() {
+        return Play.configuration != null && "static".equals(Play.configuration.getProperty("play.lvEnhancer.mode", "tracing"));
+    }
+
     @Override
     public void enhanceThisClass(ApplicationClass applicationClass)
             throws Exception {
         CtClass ctClass = makeClass(applicationClass);
         if(ctClass.isAnnotation() || ctClass.isInterface())
             return;
+        if(isStatic()) {
+            enhanceCallSites(applicationClass, ctClass);
+            return;
+        }
         for(CtBehavior behavior : ctClass.getDeclaredMethods()) {
             try {
                 if(behavior.isEmpty() || behavior.getMethodInfo().getCodeAttribute() == null || Utils.getLocalVariableAttribute(behavior) == null) {
@@ -43,35 +84,10 @@ public class LVEnhancer extends Enhancer {
                 }
 
                 StackAnalyzer parser = new StackAnalyzer(behavior);
-
-                // first, compute hash for parameter names
-                CtClass[] signatureTypes = behavior.getParameterTypes();
-                int memberShift = Modifier.isStatic(behavior.getModifiers()) ? 0 : 1;
-
-                if(signatureTypes.length > parser.context.localVariables.size() - memberShift) {
-                    Logger.debug("ignoring method: %s %s (local vars numbers differs : %s != %s)", Modifier.toString(behavior.getModifiers()), behavior.getLongName(), signatureTypes.length, parser.context.localVariables.size() - memberShift);
+                if(!addSignature(ctClass, behavior, parser)) {
                     continue;
                 }
 
-                StringBuffer signatureNames;
-                if(signatureTypes.length == 0)
-                    signatureNames = new StringBuffer("new String[0];");
-                else {
-                    signatureNames = new StringBuffer("new String[] {");
-
-                    for(int i = memberShift; i < signatureTypes.length + memberShift; i++) {
-                        if(i > memberShift)
-                            signatureNames.append(",");
-
-                        signatureNames.append("\"").append(parser.context.localVariables.get(i).name).append("\"");
-                    }
-                    signatureNames.append("};");
-                }
-
-                CtField signature = CtField.make("public static String[] $" + behavior.getName() + computeMethodHash(signatureTypes) + " = " + signatureNames.toString(), ctClass);
-                ctClass.addField(signature);
-                // end
-
                 Frames frames = parser.analyze();
                 CodeAttribute codeAttribute = behavior.getMethodInfo().getCodeAttribute();
                 FrameIterator iterator = frames.iterator();
@@ -86,16 +102,7 @@ public class LVEnhancer extends Enhancer {
                         if(!dmio.getDeclaringClassName().equals("org.apache.commons.javaflow.bytecode.StackRecorder") &&
                                 !dmio.getDeclaringClassName().startsWith("java.")) { // no need to track non-user method calls
                             MethodParams methodParams = DecodedMethodInvocationOp.resolveParameters(frame);
-                            
-                            String[] paramsNames = new String[methodParams.params.length + (methodParams.varargs != null ? methodParams.varargs.length : 0)];
-                            for(int i = 0; i < methodParams.params.length; i++)
-                                if(methodParams.params[i] != null && methodParams.params[i].name != null)
-                                    paramsNames[i] = methodParams.params[i].name;
-                            if(methodParams.varargs != null)
-                                for(int i = 0, j = methodParams.params.length; i < methodParams.varargs.length; i++, j++)
-                                    if(methodParams.varargs[i] != null && methodParams.varargs[i].name != null)
-                                        paramsNames[j] = methodParams.varargs[i].name;
-
+                            String[] paramsNames = paramsNames(methodParams);
                             Bytecode b = makeInitMethodCall(behavior, dmio.getName(), dmio.getNbParameters(), methodParams.subject != null ? methodParams.subject.name : null, paramsNames);
                             insert(b, ctClass, behavior, codeAttribute, iterator, frame, false);
                         }
@@ -115,7 +122,121 @@ public class LVEnhancer extends Enhancer {
         applicationClass.enhancedByteCode = ctClass.toBytecode();
         ctClass.defrost();
     }
-    
+
+    /**
+     * Name the arguments of the calls to the methods reading them, and keep the names of the
+     * parameters of the methods of controllers, WebSocket ones included, and mailers. The classes
+     * without any of these are left as they are.
+     */
+    void enhanceCallSites(ApplicationClass applicationClass, CtClass ctClass) throws Exception {
+        boolean signatures = ctClass.subtypeOf(classPool.get(ControllersEnhancer.ControllerSupport.class.getName())) || ctClass.subtypeOf(classPool.get("play.mvc.Mailer"));
+        boolean callSites = callsNamedMethods(ctClass.getClassFile().getConstPool());
+        if(!signatures && !callSites)
+            return;
+        for(CtBehavior behavior : ctClass.getDeclaredMethods()) {
+            try {
+                if(behavior.isEmpty() || behavior.getMethodInfo().getCodeAttribute() == null || Utils.getLocalVariableAttribute(behavior) == null) {
+                    if(signatures) {
+                        CtField signature = CtField.make("public static String[] $" + behavior.getName() + "0 = new String[0];", ctClass);
+                        ctClass.addField(signature);
+                    }
+                    continue;
+                }
+
+                StackAnalyzer parser = new StackAnalyzer(behavior);
+                if(signatures && !addSignature(ctClass, behavior, parser)) {
+                    continue;
+                }
+                if(!callSites) {
+                    continue;
+                }
+
+                Frames frames = parser.analyze();
+                CodeAttribute codeAttribute = behavior.getMethodInfo().getCodeAttribute();
+                FrameIterator iterator = frames.iterator();
+                while(iterator.hasNext()) {
+                    Frame frame = iterator.next();
+                    if(!frame.isAccessible || !(frame.decodedOp instanceof DecodedMethodInvocationOp)) {
+                        continue;
+                    }
+                    DecodedMethodInvocationOp dmio = (DecodedMethodInvocationOp) frame.decodedOp;
+                    if(readsNames(dmio.getDeclaringClassName(), dmio.getName(), dmio.getDescriptor())) {
+                        MethodParams methodParams = DecodedMethodInvocationOp.resolveParameters(frame);
+                        Bytecode b = makeCallSite(behavior, dmio.getNbParameters(), methodParams.subject != null ? methodParams.subject.name : null, paramsNames(methodParams));
+                        insert(b, ctClass, behavior, codeAttribute, iterator, frame, false);
+                    }
+                }
+            } catch(Exception e) {
+                throw new UnexpectedException("LVEnhancer: cannot enhance the behavior '" + behavior.getLongName() + "'", e);
+            }
+        }
+        applicationClass.enhancedByteCode = ctClass.toBytecode();
+        ctClass.defrost();
+    }
+
+    static boolean readsNames(String className, String name, String descriptor) {
+        if(className.equals("play.data.validation.Validation")) {
+            return NAMED_CHECKS.contains(name) && descriptor.startsWith("(Ljava/lang/Object;");
+        }
+        return NAMED_METHODS.contains(name + descriptor);
+    }
+
+    static boolean callsNamedMethods(ConstPool constPool) {
+        for(int i = 1; i < constPool.getSize(); i++) {
+            if(constPool.getTag(i) == ConstPool.CONST_Methodref
+                    && readsNames(constPool.getMethodrefClassName(i), constPool.getMethodrefName(i), constPool.getMethodrefType(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add the <code>$method{hash}</code> field with the names of the parameters of this method
+     * @return false if the local variables of the method do not match its parameters
+     */
+    private static boolean addSignature(CtClass ctClass, CtBehavior behavior, StackAnalyzer parser) throws Exception {
+        // first, compute hash for parameter names
+        CtClass[] signatureTypes = behavior.getParameterTypes();
+        int memberShift = Modifier.isStatic(behavior.getModifiers()) ? 0 : 1;
+
+        if(signatureTypes.length > parser.context.localVariables.size() - memberShift) {
+            Logger.debug("ignoring method: %s %s (local vars numbers differs : %s != %s)", Modifier.toString(behavior.getModifiers()), behavior.getLongName(), signatureTypes.length, parser.context.localVariables.size() - memberShift);
+            return false;
+        }
+
+        StringBuffer signatureNames;
+        if(signatureTypes.length == 0)
+            signatureNames = new StringBuffer("new String[0];");
+        else {
+            signatureNames = new StringBuffer("new String[] {");
+
+            for(int i = memberShift; i < signatureTypes.length + memberShift; i++) {
+                if(i > memberShift)
+                    signatureNames.append(",");
+
+                signatureNames.append("\"").append(parser.context.localVariables.get(i).name).append("\"");
+            }
+            signatureNames.append("};");
+        }
+
+        CtField signature = CtField.make("public static String[] $" + behavior.getName() + computeMethodHash(signatureTypes) + " = " + signatureNames.toString(), ctClass);
+        ctClass.addField(signature);
+        return true;
+    }
+
+    private static String[] paramsNames(MethodParams methodParams) {
+        String[] paramsNames = new String[methodParams.params.length + (methodParams.varargs != null ? methodParams.varargs.length : 0)];
+        for(int i = 0; i < methodParams.params.length; i++)
+            if(methodParams.params[i] != null && methodParams.params[i].name != null)
+                paramsNames[i] = methodParams.params[i].name;
+        if(methodParams.varargs != null)
+            for(int i = 0, j = methodParams.params.length; i < methodParams.varargs.length; i++, j++)
+                if(methodParams.varargs[i] != null && methodParams.varargs[i].name != null)
+                    paramsNames[j] = methodParams.varargs[i].name;
+        return paramsNames;
+    }
+
     private static final long startedAt = System.currentTimeMillis();
     
     private static Bytecode makeInitMethodCall(CtBehavior behavior, String method, int nbParameters, String subject, String... names) {
@@ -142,6 +263,26 @@ public class LVEnhancer extends Enhancer {
         return b;
     }
     
+    private static Bytecode makeCallSite(CtBehavior behavior, int nbParameters, String subject, String... names) {
+        Bytecode b = new Bytecode(behavior.getMethodInfo().getConstPool());
+        b.addIconst(nbParameters);
+        if(subject == null)
+            b.add(Opcode.ACONST_NULL);
+        else b.addLdc(subject);
+        b.addIconst(names.length);
+        b.addAnewarray("java.lang.String");
+        for(int i = 0; i < names.length; i++) {
+            if(names[i] != null) {
+                b.add(Opcode.DUP);
+                b.addIconst(i);
+                b.addLdc(names[i]);
+                b.add(Opcode.AASTORE);
+            }
+        }
+        b.addInvokestatic("play.classloading.enhancers.LVEnhancer$LVEnhancerRuntime", "initCallSite", "(ILjava/lang/String;[Ljava/lang/String;)V");
+        return b;
+    }
+
     private static Bytecode makeExitMethod(CtBehavior behavior, String className, String methodName, String signature) {
         Bytecode b = new Bytecode(behavior.getMethodInfo().getConstPool());
         b.addLdc(className);
@@ -224,6 +365,8 @@ public class LVEnhancer extends Enhancer {
 
     public static class LVEnhancerRuntime {
         private static ThreadLocal<Stack<MethodExecution>> methodParams = new ThreadLocal<Stack<MethodExecution>>();
+        // The last named call, with play.lvEnhancer.mode=static
+        private static ThreadLocal<MethodExecution> callSite = new ThreadLocal<MethodExecution>();
 
         public static void enterMethod(String clazz, String method, String signature) {
             getCurrentMethodParams().push(new MethodExecution());
@@ -243,6 +386,15 @@ public class LVEnhancer extends Enhancer {
         	stack.peek().currentNestedMethodCall = new MethodExecution(subject, paramNames, nbParams);
         }
         
+        /**
+         * Name the arguments of the method about to be called, from a call site named when
+         * the class was enhanced. The names are for this invocation only: the called method
+         * reads them once, when it starts, with {@link #getParamNames()}.
+         */
+        public static void initCallSite(int nbParams, String subject, String[] paramNames) {
+            callSite.set(new MethodExecution(subject, paramNames, nbParams));
+        }
+
         /**
          * Replace the current methodParams stack by the given one.
          * Don't use it unless you know exactly what you do.
@@ -266,12 +418,22 @@ public class LVEnhancer extends Enhancer {
             return result;
         }
 
+        /**
+         * @return The names of the arguments of the current invocation. With named call sites,
+         *         they can only be read once per invocation
+         */
         public static ParamsNames getParamNames() {
             Stack<MethodExecution> stack = getCurrentMethodParams();
             if(stack.size() > 0) {
                 MethodExecution me = getCurrentMethodExecution();
                 return new ParamsNames(me.subject, me.paramsNames, me.varargsNames);
             }
+            MethodExecution me = callSite.get();
+            if(me != null) {
+                // For this call only: a call from a site that was not enhanced must not get these names
+                callSite.remove();
+                return new ParamsNames(me.subject, me.paramsNames, me.varargsNames);
+            }
             throw new UnexpectedException("empty methodParams!");
         }
 
@@ -4,9 +4,15 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javassist.CannotCompileException;
 import javassist.CtBehavior;
 import javassist.CtClass;
@@ -14,13 +20,19 @@ import javassist.CtConstructor;
 import javassist.CtField;
 import javassist.CtMethod;
 import javassist.CtNewConstructor;
+import javassist.CtPrimitiveType;
 import javassist.NotFoundException;
 import javassist.bytecode.AccessFlag;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
 import javassist.expr.ExprEditor;
 import javassist.expr.FieldAccess;
 import play.Logger;
 import play.Play;
 import play.classloading.ApplicationClasses.ApplicationClass;
+import play.classloading.ApplicationClassloaderState;
 import play.exceptions.UnexpectedException;
 
 /**
@@ -180,11 +192,110 @@ public class PropertiesEnhancer extends Enhancer {
             });
         }
 
+        // Give a direct access to the fields
+        try {
+            addDirectAccess(ctClass);
+        } catch (Exception e) {
+            Logger.error(e, "Error in PropertiesEnhancer");
+            throw new UnexpectedException("Error in PropertiesEnhancer", e);
+        }
+
         // Done.
         applicationClass.enhancedByteCode = ctClass.toBytecode();
         ctClass.defrost();
     }
 
+    /**
+     * Implement {@link DirectAccess}: the fields declared by the class are read and written by their index
+     * in a switch, and the fields declared by the enhanced superclasses by the superclasses themselves.
+     * The names of the fields, in the order of their index, are listed by a <code>_playFields</code> static field.
+     */
+    void addDirectAccess(CtClass ctClass) throws Exception {
+        List<CtField> fields = new ArrayList<CtField>();
+        StringBuilder names = new StringBuilder();
+        for (CtField ctField : ctClass.getDeclaredFields()) {
+            if (Modifier.isStatic(ctField.getModifiers()) || (ctField.getFieldInfo2().getAccessFlags() & AccessFlag.SYNTHETIC) != 0) {
+                continue;
+            }
+            names.append(fields.isEmpty() ? "" : ",").append(ctField.getName());
+            fields.add(ctField);
+        }
+        int depth = 0;
+        for (CtClass superclass = ctClass.getSuperclass(); superclass != null; superclass = superclass.getSuperclass()) {
+            depth++;
+        }
+        ApplicationClass superclass = Play.classes.getApplicationClass(ctClass.getClassFile().getSuperclass());
+        boolean inherits = superclass != null && !isScala(superclass);
+
+        StringBuilder get = new StringBuilder("public Object _getField(int depth, int index) {");
+        StringBuilder set = new StringBuilder("public void _setField(int depth, int index, Object value) {");
+        if (inherits) {
+            // The superclass may not be enhanced yet, so its methods are called from bytecode
+            addSuperCall(ctClass, "_getSuperField", "_getField", "(II)Ljava/lang/Object;");
+            addSuperCall(ctClass, "_setSuperField", "_setField", "(IILjava/lang/Object;)V");
+            get.append("if (depth != ").append(depth).append(") { return _getSuperField(depth, index); }");
+            set.append("if (depth != ").append(depth).append(") { _setSuperField(depth, index, value); return; }");
+        } else {
+            get.append("if (depth == ").append(depth).append(") {");
+            set.append("if (depth == ").append(depth).append(") {");
+        }
+        if (!fields.isEmpty()) {
+            get.append("switch (index) {");
+            set.append("switch (index) {");
+            for (int i = 0; i < fields.size(); i++) {
+                CtField ctField = fields.get(i);
+                String field = "this." + ctField.getName();
+                if (ctField.getType().isPrimitive()) {
+                    CtPrimitiveType type = (CtPrimitiveType) ctField.getType();
+                    get.append("case ").append(i).append(": return ").append(type.getWrapperName()).append(".valueOf(").append(field).append(");");
+                    if (!isFinal(ctField)) {
+                        set.append("case ").append(i).append(": ").append(field).append(" = ((").append(type.getWrapperName()).append(") value).").append(type.getGetMethodName()).append("(); return;");
+                    }
+                } else {
+                    get.append("case ").append(i).append(": return ").append(field).append(";");
+                    if (!isFinal(ctField)) {
+                        set.append("case ").append(i).append(": ").append(field).append(" = (").append(ctField.getType().getName()).append(") value; return;");
+                    }
+                }
+            }
+            get.append("}");
+            set.append("}");
+        }
+        if (!inherits) {
+            get.append("}");
+            set.append("}");
+        }
+        String error = "throw new IllegalArgumentException(\"No field \" + depth + \":\" + index + \" in \" + getClass().getName());";
+        get.append(error).append("}");
+        set.append(error).append("}");
+
+        ctClass.addInterface(classPool.get(DirectAccess.class.getName()));
+        ctClass.addField(CtField.make("private static final String _playFields = \"" + names + "\";", ctClass));
+        ctClass.addMethod(CtMethod.make(get.toString(), ctClass));
+        ctClass.addMethod(CtMethod.make(set.toString(), ctClass));
+    }
+
+    /**
+     * Add a private method calling a method of the superclass with the same arguments
+     */
+    void addSuperCall(CtClass ctClass, String name, String method, String descriptor) throws Exception {
+        ConstPool constPool = ctClass.getClassFile().getConstPool();
+        boolean returns = !descriptor.endsWith("V");
+        Bytecode code = new Bytecode(constPool, 4, 4);
+        code.addAload(0);
+        code.addIload(1);
+        code.addIload(2);
+        if (!returns) {
+            code.addAload(3);
+        }
+        code.addInvokespecial(ctClass.getClassFile().getSuperclass(), method, descriptor);
+        code.addOpcode(returns ? Opcode.ARETURN : Opcode.RETURN);
+        MethodInfo methodInfo = new MethodInfo(constPool, name, descriptor);
+        methodInfo.setAccessFlags(AccessFlag.PRIVATE);
+        methodInfo.setCodeAttribute(code.toCodeAttribute());
+        ctClass.addMethod(CtMethod.make(methodInfo, ctClass));
+    }
+
     /**
      * Is this field a valid javabean property ?
      */
@@ -277,6 +388,132 @@ public class PropertiesEnhancer extends Enhancer {
         }
     }
 
+    /**
+     * Implemented by the enhanced classes, to read and write their fields without reflection.
+     * Use a {@link DirectAccessor} rather than these methods.
+     */
+    public interface DirectAccess {
+
+        /**
+         * @param depth The number of superclasses of the class declaring the field
+         * @param index The index of the field in this class
+         */
+        Object _getField(int depth, int index);
+
+        void _setField(int depth, int index, Object value);
+    }
+
+    /**
+     * Read and write a field, directly for the instances of the enhanced classes and by reflection
+     * for the others (including the proxies generated for the enhanced classes). Usable by the
+     * binding, the unbinding, the fixtures... in place of <code>Field.get</code> and <code>Field.set</code>.
+     */
+    public static class DirectAccessor {
+
+        static final ConcurrentMap<Field, DirectAccessor> accessors = new ConcurrentHashMap<Field, DirectAccessor>();
+        // Whether the classes of the accessed instances are enhanced
+        static final ConcurrentMap<Class<?>, Boolean> enhanced = new ConcurrentHashMap<Class<?>, Boolean>();
+        static ApplicationClassloaderState accessorsState;
+
+        final Field field;
+        final int depth;
+        // -1 when the field is not declared by an enhanced class
+        final int index;
+        final boolean writable;
+
+        DirectAccessor(Field field) {
+            field.setAccessible(true);
+            this.field = field;
+            int depth = 0;
+            for (Class<?> superclass = field.getDeclaringClass().getSuperclass(); superclass != null; superclass = superclass.getSuperclass()) {
+                depth++;
+            }
+            this.depth = depth;
+            String[] names = fields(field.getDeclaringClass());
+            this.index = names == null ? -1 : Arrays.asList(names).indexOf(field.getName());
+            this.writable = !Modifier.isFinal(field.getModifiers());
+        }
+
+        /**
+         * @return The accessor of this field, cached until the application classes change
+         */
+        public static DirectAccessor of(Field field) {
+            ApplicationClassloaderState currentState = Play.classloader == null ? null : Play.classloader.currentState;
+            if (currentState != null && !currentState.equals(accessorsState)) {
+                accessors.clear();
+                enhanced.clear();
+                accessorsState = currentState;
+            }
+            DirectAccessor accessor = accessors.get(field);
+            if (accessor == null) {
+                accessor = new DirectAccessor(field);
+                DirectAccessor existing = accessors.putIfAbsent(field, accessor);
+                if (existing != null) {
+                    accessor = existing;
+                }
+            }
+            return accessor;
+        }
+
+        /**
+         * @return The names of the fields declared by this class, by index, or null if it is not enhanced
+         */
+        static String[] fields(Class<?> clazz) {
+            try {
+                Field names = clazz.getDeclaredField("_playFields");
+                names.setAccessible(true);
+                String value = (String) names.get(null);
+                return value.length() == 0 ? new String[0] : value.split(",");
+            } catch (NoSuchFieldException e) {
+                return null;
+            } catch (Exception e) {
+                throw new UnexpectedException(e);
+            }
+        }
+
+        boolean isDirect(Object instance) {
+            if (index < 0 || instance == null) {
+                return false;
+            }
+            Class<?> clazz = instance.getClass();
+            if (clazz == field.getDeclaringClass()) {
+                return true;
+            }
+            return field.getDeclaringClass().isAssignableFrom(clazz) && isEnhanced(clazz);
+        }
+
+        /**
+         * @return true if this class is enhanced, cached until the application classes change
+         */
+        static boolean isEnhanced(Class<?> clazz) {
+            Boolean result = enhanced.get(clazz);
+            if (result == null) {
+                result = fields(clazz) != null;
+                enhanced.put(clazz, result);
+            }
+            return result;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public Object get(Object instance) throws IllegalAccessException {
+            if (isDirect(instance)) {
+                return ((DirectAccess) instance)._getField(depth, index);
+            }
+            return field.get(instance);
+        }
+
+        public void set(Object instance, Object value) throws IllegalAccessException {
+            if (writable && isDirect(instance)) {
+                ((DirectAccess) instance)._setField(depth, index, value);
+                return;
+            }
+            field.set(instance, value);
+        }
+    }
+
     @Retention(RetentionPolicy.RUNTIME)
     @Target(ElementType.METHOD)
     public @interface PlayPropertyAccessor {
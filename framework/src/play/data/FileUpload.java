@@ -5,8 +5,10 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import org.apache.commons.fileupload.FileItem;
+import play.data.parsing.ApacheMultipartParser.AutoFileItem;
 import play.data.parsing.TempFilePlugin;
 import play.exceptions.UnexpectedException;
+import play.libs.Codec;
 import play.libs.Files;
 import play.libs.IO;
 
@@ -21,6 +23,11 @@ public class FileUpload implements Upload {
 
     public FileUpload(FileItem fileItem) {
         this.fileItem = fileItem;
+        if (fileItem instanceof AutoFileItem && ((AutoFileItem) fileItem).isStored()) {
+            // Already written to the request temp folder by the parser
+            defaultFile = ((AutoFileItem) fileItem).getStoreLocation();
+            return;
+        }
         defaultFile = new File(TempFilePlugin.createTempFolder(), fileItem.getFieldName() + File.separator + fileItem.getName());
         defaultFile.getParentFile().mkdirs();
         try {
@@ -42,6 +49,24 @@ public class FileUpload implements Upload {
             throw new UnexpectedException(ex);
         }
     }
+
+    /**
+     * Move the uploaded file to the given file, with a rename when both are on the same
+     * file system, or else a copy. The upload then refers to the new file: the files
+     * previously given by {@link #asFile()}, or bound to File parameters, no longer exist.
+     */
+    public File moveTo(File file) {
+        try {
+            if (!defaultFile.renameTo(file)) {
+                Files.copy(defaultFile, file);
+                defaultFile.delete();
+            }
+            defaultFile = file;
+            return file;
+        } catch (Exception ex) {
+            throw new UnexpectedException(ex);
+        }
+    }
     
     public File asFile(String name) {
         return asFile(new File(name));
@@ -71,6 +96,21 @@ public class FileUpload implements Upload {
         return fileItem.getFieldName();
     }
 
+    /**
+     * @param algorithm A digest algorithm listed in <code>upload.digests</code>
+     * @return The hex digest of the uploaded file, computed while it was received,
+     *         or null if it was not computed
+     */
+    public String getDigest(String algorithm) {
+        if (fileItem instanceof AutoFileItem) {
+            byte[] digest = ((AutoFileItem) fileItem).getDigest(algorithm);
+            if (digest != null) {
+                return Codec.byteToHexString(digest);
+            }
+        }
+        return null;
+    }
+
     public Long getSize() {
         return defaultFile.length();
     }
@@ -5,6 +5,9 @@ import java.lang.reflect.*;
 import java.util.*;
 
 import play.Logger;
+import play.Play;
+import play.classloading.ApplicationClassloaderState;
+import play.classloading.enhancers.PropertiesEnhancer.DirectAccessor;
 import play.classloading.enhancers.PropertiesEnhancer.PlayPropertyAccessor;
 import play.exceptions.UnexpectedException;
 import play.utils.Utils;
@@ -19,6 +22,7 @@ public abstract class BeanWrapper {
     final static int notwritableField = Modifier.FINAL | Modifier.NATIVE | Modifier.STATIC;
     final static int notaccessibleMethod = Modifier.NATIVE | Modifier.STATIC;
     final static ConcurrentMap<Class<?>, BeanWrapper> beanWrapperCache = new ConcurrentHashMap<Class<?>, BeanWrapper>();
+    private static ApplicationClassloaderState beanWrapperCacheState = null;
 
     private final Class<?> beanClass;
 
@@ -27,6 +31,11 @@ public abstract class BeanWrapper {
      */
     private Map<String, Property> wrappers = new HashMap<String, Property>();
 
+    /**
+     * All the fields declared by the bean class and its superclasses, resolved on first use
+     */
+    private volatile List<Field> declaredFields;
+
     private BeanWrapper(Class<?> forClass) {
         if (Logger.isTraceEnabled()) {
             Logger.trace("Bean wrapper for class %s", forClass.getName());
@@ -43,6 +52,12 @@ public abstract class BeanWrapper {
      */
 
     public static BeanWrapper forClass(Class<?> forClass) {
+        // if there is changes to application classes we must invalidate the cache
+        ApplicationClassloaderState currentState = Play.classloader == null ? null : Play.classloader.currentState;
+        if (currentState != null && !currentState.equals(beanWrapperCacheState)) {
+            beanWrapperCache.clear();
+            beanWrapperCacheState = currentState;
+        }
         final BeanWrapper wrapper = beanWrapperCache.get(forClass);
         if (wrapper == null) {
             final BeanWrapper newWrapper = BeanWrapper.generateForClass(forClass);
@@ -83,12 +98,27 @@ public abstract class BeanWrapper {
         return wrappers.values();
     }
 
-    public void set(String name, Object instance, Object value) {
-        for (Property prop : wrappers.values()) {
-            if (name.equals(prop.name)) {
-                prop.setValue(instance, value);
-                return;
+    /**
+     * @return All the fields declared by the bean class and its superclasses
+     */
+    public List<Field> getDeclaredFields() {
+        List<Field> fields = declaredFields;
+        if (fields == null) {
+            fields = new ArrayList<Field>();
+            for (Class<?> clazz = beanClass; clazz != null && !clazz.equals(Object.class); clazz = clazz.getSuperclass()) {
+                Collections.addAll(fields, clazz.getDeclaredFields());
             }
+            fields = Collections.unmodifiableList(fields);
+            declaredFields = fields;
+        }
+        return fields;
+    }
+
+    public void set(String name, Object instance, Object value) {
+        Property prop = wrappers.get(name);
+        if (prop != null) {
+            prop.setValue(instance, value);
+            return;
         }
         String message = String.format("Can't find property with name '%s' on class %s", name, instance.getClass().getName());
         Logger.warn(message);
@@ -185,6 +215,7 @@ public abstract class BeanWrapper {
         final private Annotation[] annotations;
         final private Method setter;
         final private Field field;
+        final private DirectAccessor accessor;
         final private Class<?> type;
         final private Type genericType;
         final private String name;
@@ -197,12 +228,13 @@ public abstract class BeanWrapper {
             annotations = setter.getAnnotations();
             genericType = setter.getGenericParameterTypes()[0];
             field = null;
+            accessor = null;
             profiles = createProfiles(this.annotations);
         }
 
         Property(Field field) {
             this.field = field;
-            this.field.setAccessible(true);
+            this.accessor = DirectAccessor.of(field);
             name = field.getName();
             type = field.getType();
             annotations = field.getAnnotations();
@@ -234,7 +266,7 @@ public abstract class BeanWrapper {
                     if (Logger.isTraceEnabled()) {
                         Logger.trace("field.set(%s, %s)", instance, value);
                     }
-                    field.set(instance, value);
+                    accessor.set(instance, value);
                 }
             } catch (Exception ex) {
                 Logger.warn(ex, "ERROR in BeanWrapper when setting property %s value is %s (%s)", name, value, value == null ? null : value.getClass());
@@ -4,6 +4,7 @@ import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
 import play.Logger;
 import play.Play;
+import play.classloading.ApplicationClassloaderState;
 import play.data.Upload;
 import play.data.binding.types.*;
 import play.data.validation.Validation;
@@ -19,6 +20,8 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
@@ -31,6 +34,12 @@ public abstract class Binder {
 
     static final Map<Class<?>, TypeBinder<?>> supportedTypes = new HashMap<Class<?>, TypeBinder<?>>();
 
+    /**
+     * How to directly bind each type, resolved on first use
+     */
+    static final ConcurrentMap<Class<?>, TypeBinding> typeBindings = new ConcurrentHashMap<Class<?>, TypeBinding>();
+    private static ApplicationClassloaderState typeBindingsState = null;
+
     // TODO: something a bit more dynamic? The As annotation allows you to inject your own binder
     static {
         supportedTypes.put(Date.class, new DateBinder());
@@ -49,6 +58,56 @@ public abstract class Binder {
 
     public static <T> void register(Class<T> clazz, TypeBinder<T> typeBinder) {
         supportedTypes.put(clazz, typeBinder);
+        typeBindings.clear();
+    }
+
+    /**
+     * The binders that may directly bind a type: the application global binders
+     * and the registered binder for this type or one of its supertypes.
+     */
+    static class TypeBinding {
+        final List<Class<TypeBinder<?>>> globalBinders;
+        final TypeBinder<?> typeBinder;
+
+        TypeBinding(List<Class<TypeBinder<?>>> globalBinders, TypeBinder<?> typeBinder) {
+            this.globalBinders = globalBinders;
+            this.typeBinder = typeBinder;
+        }
+    }
+
+    static TypeBinding typeBinding(Class<?> clazz) {
+        // if there is changes to application classes we must invalidate the cache
+        ApplicationClassloaderState currentState = Play.classloader.currentState;
+        if (!currentState.equals(typeBindingsState)) {
+            typeBindings.clear();
+            typeBindingsState = currentState;
+        }
+        TypeBinding typeBinding = typeBindings.get(clazz);
+        if (typeBinding == null) {
+            typeBinding = resolveTypeBinding(clazz);
+            typeBindings.put(clazz, typeBinding);
+        }
+        return typeBinding;
+    }
+
+    private static TypeBinding resolveTypeBinding(Class<?> clazz) {
+        List<Class<TypeBinder<?>>> globalBinders = new ArrayList<Class<TypeBinder<?>>>();
+        for (Class<TypeBinder<?>> c : Play.classloader.getAssignableClasses(TypeBinder.class)) {
+            if (c.isAnnotationPresent(Global.class)) {
+                Class<?> forType = (Class) ((ParameterizedType) c.getGenericInterfaces()[0]).getActualTypeArguments()[0];
+                if (forType.isAssignableFrom(clazz)) {
+                    globalBinders.add(c);
+                }
+            }
+        }
+        TypeBinder<?> typeBinder = null;
+        for (Map.Entry<Class<?>, TypeBinder<?>> supportedType : supportedTypes.entrySet()) {
+            if (supportedType.getKey().isAssignableFrom(clazz)) {
+                typeBinder = supportedType.getValue();
+                break;
+            }
+        }
+        return new TypeBinding(globalBinders, typeBinder);
     }
 
     public static class MethodAndParamInfo {
@@ -558,31 +617,22 @@ public abstract class Binder {
             }
         }
 
+        TypeBinding typeBinding = typeBinding(clazz);
+
         // application custom types have higher priority. If unable to bind proceed with the next one
-        for (Class<TypeBinder<?>> c : Play.classloader.getAssignableClasses(TypeBinder.class)) {
-            if (c.isAnnotationPresent(Global.class)) {
-                Class<?> forType = (Class) ((ParameterizedType) c.getGenericInterfaces()[0]).getActualTypeArguments()[0];
-                if (forType.isAssignableFrom(clazz)) {
-                    Object result = c.newInstance().bind(name, annotations, value, clazz, type);
-                    if (result != null) {
-                        return result;
-                    }
-                }
+        for (Class<TypeBinder<?>> c : typeBinding.globalBinders) {
+            Object result = c.newInstance().bind(name, annotations, value, clazz, type);
+            if (result != null) {
+                return result;
             }
         }
 
         // custom types
-        for (Class<?> c : supportedTypes.keySet()) {
+        if (typeBinding.typeBinder != null) {
             if (Logger.isTraceEnabled()) {
-                Logger.trace("directBind: value [" + value + "] c [" + c + "] Class [" + clazz + "]");
-            }
-
-            if (c.isAssignableFrom(clazz)) {
-                if (Logger.isTraceEnabled()) {
-                    Logger.trace("directBind: isAssignableFrom is true");
-                }
-                return supportedTypes.get(c).bind(name, annotations, value, clazz, type);
+                Logger.trace("directBind: value [" + value + "] binder [" + typeBinding.typeBinder + "] Class [" + clazz + "]");
             }
+            return typeBinding.typeBinder.bind(name, annotations, value, clazz, type);
         }
 
         // raw String
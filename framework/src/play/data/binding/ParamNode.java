@@ -2,6 +2,7 @@ package play.data.binding;
 
 import play.utils.Utils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -57,7 +58,7 @@ public class ParamNode {
     }
 
     public ParamNode getChild(String name, boolean returnEmptyChildIfNotFound) {
-        ParamNode child = getChild( name.split(keyPartDelimiterRegexpString));
+        ParamNode child = getChild(splitKey(name));
         if (child == null && returnEmptyChildIfNotFound) {
             child = new ParamNode(name);
         }
@@ -131,6 +132,43 @@ public class ParamNode {
         return originalKey;
     }
 
+    /**
+     * Same result as <code>key.split(keyPartDelimiterRegexpString)</code>, without the regular expression.
+     */
+    static String[] splitKey(String key) {
+        int length = key.length();
+        int i = 0;
+        while (i < length && !isKeyPartDelimiter(key.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            // Simple name
+            return new String[] {key};
+        }
+        List<String> parts = new ArrayList<String>(4);
+        int start = 0;
+        for (; i < length; i++) {
+            if (isKeyPartDelimiter(key.charAt(i))) {
+                parts.add(key.substring(start, i));
+                while (i + 1 < length && isKeyPartDelimiter(key.charAt(i + 1))) {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        parts.add(key.substring(start));
+        // Like String.split, trailing empty strings are not included
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).length() == 0) {
+            size--;
+        }
+        return parts.subList(0, size).toArray(new String[size]);
+    }
+
+    private static boolean isKeyPartDelimiter(char c) {
+        return c == '.' || c == '[' || c == ']';
+    }
+
     public static RootParamNode convert(Map<String, String[]> params) {
         RootParamNode root = new RootParamNode( params);
 
@@ -143,7 +181,7 @@ public class ParamNode {
 
             ParamNode currentParent = root;
 
-            for ( String name : key.split(keyPartDelimiterRegexpString)) {
+            for ( String name : splitKey(key)) {
                 ParamNode paramNode = currentParent.getChild( name );
                 if (paramNode ==null) {
                     // first time we see this node - create it and add it to parent
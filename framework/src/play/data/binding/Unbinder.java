@@ -8,6 +8,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 
 import play.Play;
+import play.classloading.enhancers.PropertiesEnhancer.DirectAccessor;
 import play.libs.I18N;
 
 /**
@@ -176,8 +177,6 @@ public class Unbinder {
                 }
 
                 String newName = name + "." + field.getName();
-                boolean oldAcc = field.isAccessible();
-                field.setAccessible(true);
 
                 // first we try with annotations resolved from property
                 List<Annotation> allAnnotations = new ArrayList<Annotation>();
@@ -192,13 +191,11 @@ public class Unbinder {
                 }
 
                 try {
-                    internalUnbind(result, field.get(src), field.getType(), newName, allAnnotations.toArray(new Annotation[0]));
+                    internalUnbind(result, DirectAccessor.of(field).get(src), field.getType(), newName, allAnnotations.toArray(new Annotation[0]));
                 } catch (IllegalArgumentException e) {
                     throw new RuntimeException("Object " + field.getType() + " won't unbind field " + newName, e);
                 } catch (IllegalAccessException e) {
                     throw new RuntimeException("Object " + field.getType() + " won't unbind field " + newName, e);
-                }finally{
-                    field.setAccessible(oldAcc);
                 }
             }
         }
@@ -14,10 +14,19 @@ import play.data.FileUpload;
 import play.data.MemoryUpload;
 import play.data.Upload;
 import play.exceptions.UnexpectedException;
+import play.exceptions.ConfigurationException;
+import play.mvc.Http;
 import play.mvc.Http.Request;
+import play.mvc.results.Status;
 import play.utils.HTTP;
+import play.utils.Utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 import static org.apache.commons.io.FileUtils.readFileToByteArray;
@@ -130,6 +139,18 @@ public class ApacheMultipartParser extends DataParser {
          * The file items headers. 
          */
         private FileItemHeaders headers;
+        /**
+         * The file the item was directly stored to, if any.
+         */
+        private File storedFile;
+        /**
+         * The size of the stored file.
+         */
+        private long storedSize;
+        /**
+         * The digests computed while storing the item, by algorithm.
+         */
+        private Map<String, byte[]> digests;
 
         public AutoFileItem(FileItemStream stream) {
             this.fieldName = stream.getFieldName();
@@ -151,8 +172,8 @@ public class ApacheMultipartParser extends DataParser {
          */
         public InputStream getInputStream()
                 throws IOException {
-            if (!dfos.isInMemory()) {
-                return new FileInputStream(dfos.getFile());
+            if (!isInMemory()) {
+                return new FileInputStream(getStoreLocation());
             }
 
             if (cachedContent == null) {
@@ -205,7 +226,7 @@ public class ApacheMultipartParser extends DataParser {
          *         from memory; <code>false</code> otherwise.
          */
         public boolean isInMemory() {
-            return (dfos.isInMemory());
+            return storedFile == null && dfos.isInMemory();
         }
 
         /**
@@ -214,7 +235,9 @@ public class ApacheMultipartParser extends DataParser {
          * @return The size of the file, in bytes.
          */
         public long getSize() {
-            if (cachedContent != null) {
+            if (storedFile != null) {
+                return storedSize;
+            } else if (cachedContent != null) {
                 return cachedContent.length;
             } else if (dfos.isInMemory()) {
                 return dfos.getData().length;
@@ -231,7 +254,7 @@ public class ApacheMultipartParser extends DataParser {
          * @return The contents of the file as an array of bytes.
          */
         public byte[] get() {
-            if (dfos.isInMemory()) {
+            if (isInMemory()) {
                 if (cachedContent == null) {
                     cachedContent = dfos.getData();
                 }
@@ -239,7 +262,7 @@ public class ApacheMultipartParser extends DataParser {
             }
 
             try {
-                return readFileToByteArray(dfos.getFile());
+                return readFileToByteArray(getStoreLocation());
             } catch (IOException e) {
                 return null;
             }
@@ -419,14 +442,124 @@ public class ApacheMultipartParser extends DataParser {
          *         memory.
          */
         public File getStoreLocation() {
+            if (storedFile != null) {
+                return storedFile;
+            }
             return dfos.getFile();
         }
+
+        /**
+         * @return <code>true</code> if the item was directly stored to its final
+         *         location by {@link #store(InputStream, File, byte[], String[])}.
+         */
+        public boolean isStored() {
+            return storedFile != null;
+        }
+
+        /**
+         * Returns a digest of the content, computed while the item was read.
+         *
+         * @param algorithm The digest algorithm, as configured in <code>upload.digests</code>.
+         * @return The digest, or <code>null</code> if it was not computed.
+         */
+        public byte[] getDigest(String algorithm) {
+            return digests == null ? null : digests.get(algorithm);
+        }
+
+        /**
+         * Writes the item content straight to the given file, through a file
+         * channel, computing the digests on the way. The file is the final
+         * location of the upload: there is no intermediate temporary file.
+         *
+         * @param in         The item content.
+         * @param file       Where to store the item.
+         * @param buffer     The copy buffer.
+         * @param algorithms The digests to compute.
+         * @return <code>false</code> if the file could not be created: nothing was read then.
+         * @throws IOException if reading the item or writing the file fails.
+         */
+        boolean store(InputStream in, File file, byte[] buffer, String[] algorithms) throws IOException {
+            FileOutputStream out;
+            try {
+                file.getParentFile().mkdirs();
+                out = new FileOutputStream(file);
+            } catch (IOException e) {
+                return false;
+            }
+            boolean done = false;
+            try {
+                storedSize = copy(in, out.getChannel(), buffer, algorithms);
+                storedFile = file;
+                done = true;
+            } finally {
+                in.close();
+                out.close();
+                if (!done) {
+                    file.delete();
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Writes the item content to memory or to a temporary file, depending on
+         * <code>upload.threshold</code>, computing the digests on the way.
+         *
+         * @param in         The item content.
+         * @param buffer     The copy buffer.
+         * @param algorithms The digests to compute.
+         * @throws IOException if reading the item fails.
+         */
+        void buffer(InputStream in, byte[] buffer, String[] algorithms) throws IOException {
+            OutputStream out = getOutputStream();
+            try {
+                copy(in, Channels.newChannel(out), buffer, algorithms);
+            } finally {
+                in.close();
+                out.close();
+            }
+        }
+
+        private long copy(InputStream in, WritableByteChannel out, byte[] buffer, String[] algorithms) throws IOException {
+            MessageDigest[] mds = new MessageDigest[algorithms.length];
+            for (int i = 0; i < algorithms.length; i++) {
+                try {
+                    mds[i] = MessageDigest.getInstance(algorithms[i]);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new UnexpectedException(e);
+                }
+            }
+            ByteBuffer bb = ByteBuffer.wrap(buffer);
+            long size = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (MessageDigest md : mds) {
+                    md.update(buffer, 0, read);
+                }
+                bb.clear().limit(read);
+                while (bb.hasRemaining()) {
+                    out.write(bb);
+                }
+                size += read;
+            }
+            if (mds.length > 0) {
+                digests = new TreeMap<String, byte[]>(String.CASE_INSENSITIVE_ORDER);
+                for (int i = 0; i < mds.length; i++) {
+                    digests.put(algorithms[i], mds[i].digest());
+                }
+            }
+            return size;
+        }
         // ------------------------------------------------------ Protected methods
 
         /**
          * Removes the file contents from the temporary storage.
          */
         protected void finalize() {
+            // A directly stored item is deleted with the request temp folder
+            if (dfos == null) {
+                return;
+            }
             File outputFile = dfos.getFile();
 
             if (outputFile != null && outputFile.exists()) {
@@ -506,12 +639,23 @@ public class ApacheMultipartParser extends DataParser {
     public Map<String, String[]> parse(InputStream body) {
         Map<String, String[]> result = new HashMap<String, String[]>();
         try {
+            checkContentLength();
             FileItemIteratorImpl iter = new FileItemIteratorImpl(body, Request.current().headers.get("content-type").value(), Request.current().encoding);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
             while (iter.hasNext()) {
                 FileItemStream item = iter.next();
-                FileItem fileItem = new AutoFileItem(item);
+                AutoFileItem fileItem = new AutoFileItem(item);
                 try {
-                    Streams.copy(item.openStream(), fileItem.getOutputStream(), true);
+                    InputStream in = item.openStream();
+                    if (item.isFormField()) {
+                        fileItem.buffer(in, buffer, NO_DIGESTS);
+                    } else {
+                        // Uploaded files go straight to their place in the request temp folder
+                        File file = storeLocation(item);
+                        if (file == null || !fileItem.store(in, file, buffer, digests)) {
+                            fileItem.buffer(in, buffer, digests);
+                        }
+                    }
                 } catch (FileUploadIOException e) {
                     throw (FileUploadException) e.getCause();
                 } catch (IOException e) {
@@ -544,7 +688,12 @@ public class ApacheMultipartParser extends DataParser {
                     putMapEntry(result, fileItem.getFieldName(), fileItem.getFieldName());
                 }
             }
+        } catch (SizeException e) {
+            throw tooLarge(e);
         } catch (FileUploadIOException e) {
+            if (e.getCause() instanceof SizeException) {
+                throw tooLarge((SizeException) e.getCause());
+            }
             Logger.debug(e, "error");
             throw new IllegalStateException("Error when handling upload", e);
         } catch (IOException e) {
@@ -558,7 +707,51 @@ public class ApacheMultipartParser extends DataParser {
             throw new UnexpectedException(e);
         }
         return result;
-    }    // ---------------------------------------------------------- Class methods
+    }
+
+    /**
+     * Rejects the request before reading it if it announces more than the maximum size.
+     */
+    private void checkContentLength() throws SizeException {
+        if (sizeMax < 0) {
+            return;
+        }
+        Http.Header header = Request.current().headers.get("content-length");
+        if (header == null) {
+            return;
+        }
+        try {
+            long length = Long.parseLong(header.value().trim());
+            if (length > sizeMax) {
+                throw new SizeLimitExceededException("the request was rejected because its size (" + length + ") exceeds the configured maximum (" + sizeMax + ")", length, sizeMax);
+            }
+        } catch (NumberFormatException e) {
+            // The actual size is checked while reading
+        }
+    }
+
+    /**
+     * The final location of an uploaded file, in the request temp folder.
+     *
+     * @return The file, or <code>null</code> if the upload can't be directly stored.
+     */
+    private static File storeLocation(FileItemStream item) {
+        if (item.getName() == null || item.getName().length() == 0) {
+            return null;
+        }
+        File folder = TempFilePlugin.createTempFolder();
+        if (folder == null) {
+            return null;
+        }
+        return new File(folder, item.getFieldName() + File.separator + item.getName());
+    }
+
+    private static Status tooLarge(SizeException e) {
+        Logger.warn("Upload rejected: %s. Can be configured using 'upload.maxSize' and 'upload.maxFileSize'", e.getMessage());
+        return new Status(413); //413 Request Entity Too Large
+    }
+
+    // ---------------------------------------------------------- Class methods
     // ----------------------------------------------------- Manifest constants
     /**
      * HTTP content type header name.
@@ -593,12 +786,43 @@ public class ApacheMultipartParser extends DataParser {
      * The maximum size permitted for the complete request, as opposed to
      * {@link #fileSizeMax}. A value of -1 indicates no maximum.
      */
-    private long sizeMax = -1;
+    private long sizeMax = parseLimit("upload.maxSize");
     /**
      * The maximum size permitted for a single uploaded file, as opposed to
      * {@link #sizeMax}. A value of -1 indicates no maximum.
      */
-    private long fileSizeMax = -1;
+    private long fileSizeMax = parseLimit("upload.maxFileSize");
+    /**
+     * The digests computed for the uploaded files, as configured in <code>upload.digests</code>.
+     */
+    private String[] digests = parseDigests();
+
+    private static final String[] NO_DIGESTS = new String[0];
+    /**
+     * Size of the buffer used to copy the items.
+     */
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static long parseLimit(String key) {
+        String value = Play.configuration.getProperty(key, "-1").trim();
+        return value.startsWith("-") ? -1 : Utils.parseSize(value);
+    }
+
+    private static String[] parseDigests() {
+        String value = Play.configuration.getProperty("upload.digests", "").trim();
+        if (value.length() == 0) {
+            return NO_DIGESTS;
+        }
+        String[] algorithms = value.split("\\s*,\\s*");
+        for (String algorithm : algorithms) {
+            try {
+                MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new ConfigurationException("Bad configuration for upload.digests: unknown algorithm " + algorithm);
+            }
+        }
+        return algorithms;
+    }
 
     // ------------------------------------------------------ Protected methods
 
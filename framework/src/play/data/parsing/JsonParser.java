@@ -0,0 +1,214 @@
+package play.data.parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import play.Logger;
+import play.Play;
+import play.exceptions.UnexpectedException;
+import play.mvc.Http;
+import play.mvc.results.BadRequest;
+import play.mvc.results.Status;
+import play.utils.Utils;
+
+/**
+ * Parse JSON requests, streaming from the request body.
+ *
+ * <p>The JSON document is flattened into params with the usual naming, so that it is
+ * bound to action parameters like a form post: <code>{"user": {"name": "Bob",
+ * "tags": ["a", "b"]}}</code> gives <code>user.name=Bob</code>, <code>user.tags[0]=a</code>
+ * and <code>user.tags[1]=b</code>. The members of a flat object are simply put in the params.
+ *
+ * <p>The raw document is also kept in the <code>body</code> param, unless
+ * <code>http.json.body=false</code>: the body is then never buffered.
+ */
+public class JsonParser extends DataParser {
+
+    static final boolean keepBody = Boolean.parseBoolean(Play.configuration.getProperty("http.json.body", "true"));
+    static final long maxSize = Utils.parseSize(Play.configuration.getProperty("http.json.maxSize", "0")); // 0 == no limit
+    static final int maxDepth = Integer.parseInt(Play.configuration.getProperty("http.json.maxDepth", "64"));
+    static final int maxParams = Integer.parseInt(Play.configuration.getProperty("http.maxParams", "1000")); // 0 == no limit
+
+    @Override
+    public Map<String, String[]> parse(InputStream is) {
+        String encoding = Http.Request.current().encoding;
+        Map<String, String[]> params = new LinkedHashMap<String, String[]>();
+        try {
+            if (maxSize > 0) {
+                is = new LimitedInputStream(is, maxSize);
+            }
+            if (keepBody) {
+                String body = read(new InputStreamReader(is, encoding));
+                try {
+                    flatten(new JsonReader(new StringReader(body)), params);
+                } catch (IOException e) {
+                    // Not JSON after all: the application deals with the raw body
+                    Logger.debug("Invalid JSON request body: %s", e.getMessage());
+                    params.clear();
+                }
+                params.put("body", new String[] {body});
+            } else {
+                try {
+                    flatten(new JsonReader(new InputStreamReader(is, encoding)), params);
+                } catch (IOException e) {
+                    if (e instanceof LimitExceededException) {
+                        throw e;
+                    }
+                    throw new BadRequest("Invalid JSON request body: " + e.getMessage());
+                }
+            }
+            return params;
+        } catch (LimitExceededException e) {
+            Logger.warn("JSON request body larger than the maximum of %d bytes, aborting. Can be configured using 'http.json.maxSize'", maxSize);
+            throw new Status(413); //413 Request Entity Too Large
+        } catch (Status s) {
+            // just pass it along
+            throw s;
+        } catch (BadRequest b) {
+            throw b;
+        } catch (Exception e) {
+            throw new UnexpectedException(e);
+        }
+    }
+
+    static void flatten(JsonReader reader, Map<String, String[]> params) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            // Only objects are flattened into params
+            return;
+        }
+        new Flattener(reader, params).object("", 0);
+    }
+
+    /**
+     * Walks the JSON tokens and puts the values in the params
+     */
+    static class Flattener {
+
+        final JsonReader reader;
+        final Map<String, String[]> params;
+        int count = 0;
+
+        Flattener(JsonReader reader, Map<String, String[]> params) {
+            this.reader = reader;
+            this.params = params;
+        }
+
+        void object(String prefix, int depth) throws IOException {
+            checkDepth(depth);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                // Fast path for the members of the root object
+                value(prefix.length() == 0 ? name : prefix + "." + name, depth);
+            }
+            reader.endObject();
+        }
+
+        void array(String prefix, int depth) throws IOException {
+            checkDepth(depth);
+            reader.beginArray();
+            int index = 0;
+            while (reader.hasNext()) {
+                value(prefix + "[" + index++ + "]", depth);
+            }
+            reader.endArray();
+        }
+
+        void value(String key, int depth) throws IOException {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    object(key, depth + 1);
+                    break;
+                case BEGIN_ARRAY:
+                    array(key, depth + 1);
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    put(key, null);
+                    break;
+                case BOOLEAN:
+                    put(key, reader.nextBoolean() ? "true" : "false");
+                    break;
+                default:
+                    // Numbers are kept as written
+                    put(key, reader.nextString());
+            }
+        }
+
+        void put(String key, String value) {
+            // to prevent the Play-server from being vulnerable to hash collision DOS-attack
+            if (maxParams != 0 && ++count > maxParams) {
+                Logger.warn("Number of request parameters is higher than maximum of %d, aborting. Can be configured using 'http.maxParams'", maxParams);
+                throw new Status(413); //413 Request Entity Too Large
+            }
+            params.put(key, new String[] {value});
+        }
+
+        void checkDepth(int depth) {
+            if (depth > maxDepth) {
+                throw new BadRequest("JSON request body nested deeper than " + maxDepth + " levels. Can be configured using 'http.json.maxDepth'");
+            }
+        }
+    }
+
+    static String read(Reader reader) throws IOException {
+        StringBuilder body = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            body.append(buffer, 0, read);
+        }
+        return body.toString();
+    }
+
+    static class LimitExceededException extends IOException {
+    }
+
+    /**
+     * Fails as soon as more than the maximum size has been read
+     */
+    static class LimitedInputStream extends InputStream {
+
+        final InputStream in;
+        long remaining;
+
+        LimitedInputStream(InputStream in, long maxSize) {
+            this.in = in;
+            this.remaining = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1 && --remaining < 0) {
+                throw new LimitExceededException();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                remaining -= read;
+                if (remaining < 0) {
+                    throw new LimitExceededException();
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
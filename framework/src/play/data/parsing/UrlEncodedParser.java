@@ -1,12 +1,16 @@
 package play.data.parsing;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import play.Logger;
 import play.Play;
@@ -15,8 +19,6 @@ import play.mvc.Http;
 import play.mvc.results.Status;
 import play.utils.Utils;
 
-import org.apache.commons.codec.net.URLCodec;
-
 /**
  * Parse url-encoded requests.
  */
@@ -47,16 +49,9 @@ public class UrlEncodedParser extends DataParser {
         // Encoding is either retrieved from contentType or it is the default encoding
         final String encoding = Http.Request.current().encoding;
         try {
-            Map<String, String[]> params = new LinkedHashMap<String, String[]>();
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ( (bytesRead = is.read(buffer)) > 0 ) {
-                os.write( buffer, 0, bytesRead);
-            }
-
-            String data = new String(os.toByteArray(), encoding);
-            if (data.length() == 0) {
+            Charset charset = Charset.forName(encoding);
+            FormDecoder decoder = new FormDecoder(is, charset);
+            if (decoder.length == 0) {
                 //data is empty - can skip the rest
                 return new HashMap<String, String[]>(0);
             }
@@ -64,82 +59,37 @@ public class UrlEncodedParser extends DataParser {
             // data is o the form:
             // a=b&b=c%12...
 
-            // Let us parse in two phases - we wait until everything is parsed before
-            // we decoded it - this makes it possible for use to look for the
-            // special _charset_ param which can hold the charset the form is encoded in.
+            // Keys and values are decoded in one pass with the request encoding. The special
+            // _charset_ param can hold the charset the form is encoded in: if it is found,
+            // and it is another charset, the params are decoded again with this charset.
             //
             // http://www.crazysquirrel.com/computing/general/form-encoding.jspx
             // https://bugzilla.mozilla.org/show_bug.cgi?id=18643
             //
             // NB: _charset_ must always be used with accept-charset and it must have the same value
 
-            String[] keyValues = data.split("&");
-
-
-            // to prevent the Play-server from being vulnerable to POST hash collision DOS-attack (Denial of Service through hash table multi-collisions),
-            // we should by default not parse the params into HashMap if the count exceeds a maximum limit
-            if(maxParams != 0 && keyValues.length > maxParams) {
-                Logger.warn("Number of request parameters %d is higher than maximum of %d, aborting. Can be configured using 'http.maxParams'", keyValues.length, maxParams);
-                throw new Status(413); //413 Request Entity Too Large
-            }
-
-            for (String keyValue : keyValues) {
-                // split this key-value on the first '='
-                int i = keyValue.indexOf('=');
-                String key=null;
-                String value=null;
-                if ( i > 0) {
-                    key = keyValue.substring(0,i);
-                    value = keyValue.substring(i+1);
-                } else {
-                    key = keyValue;
-                }
-                if (key.length()>0) {
-                    Utils.Maps.mergeValueInMap(params, key, value);
-                }
-            }
-
-            // Second phase - look for _charset_ param and do the encoding
-            String charset = encoding;
-            if (params.containsKey("_charset_")) {
+            Map<String, String[]> decodedParams = decoder.decode(charset);
+            if (decoder.providedCharset != null) {
                 // The form contains a _charset_ param - When this is used together
                 // with accept-charset, we can use _charset_ to extract the encoding.
                 // PS: When rendering the view/form, _charset_ and accept-charset must be given the
                 // same value - since only Firefox and sometimes IE actually sets it when Posting
-                String providedCharset = params.get("_charset_")[0];
+                String providedCharset = decoder.providedCharset;
                 // Must be sure the providedCharset is a valid encoding..
                 try {
-                    "test".getBytes(providedCharset);
-                    charset = providedCharset; // it works..
+                    Charset formCharset = Charset.forName(providedCharset);
+                    if (!formCharset.equals(charset)) {
+                        decodedParams = decoder.decode(formCharset);
+                    }
                 } catch (Exception e) {
                     Logger.debug("Got invalid _charset_ in form: " + providedCharset);
                     // lets just use the default one..
                 }
             }
 
-            // We're ready to decode the params
-            Map<String, String[]> decodedParams = new LinkedHashMap<String, String[]>(params.size());
-            URLCodec codec = new URLCodec();
-            for (Map.Entry<String, String[]> e : params.entrySet()) {
-                String key = e.getKey();
-                try {
-                    key = codec.decode(e.getKey(), charset);
-                } catch (Throwable z) {
-                    // Nothing we can do about, ignore
-                }
-                for (String value : e.getValue()) {
-                    try {
-                        Utils.Maps.mergeValueInMap(decodedParams, key, (value == null ? null : codec.decode(value, charset)));
-                    } catch (Throwable z) {
-                        // Nothing we can do about, lets fill in with the non decoded value
-                        Utils.Maps.mergeValueInMap(decodedParams, key, value);
-                    }
-                }
-            }
-
             // add the complete body as a parameters
             if(!forQueryString) {
-                decodedParams.put("body", new String[] {data});
+                decodedParams.put("body", new String[] {new String(decoder.data, 0, decoder.length, charset)});
             }
 
             return decodedParams;
@@ -151,4 +101,153 @@ public class UrlEncodedParser extends DataParser {
         }
     }
 
+    /**
+     * Reads the url-encoded data and decodes its keys and values, scanning the bytes once.
+     *
+     * <p>Percent-escapes are decoded into a reused byte buffer; keys and values made
+     * of ASCII characters only are then copied to a reused char buffer, the others are
+     * decoded with the charset. A key or a value with an invalid escape is kept as is.
+     */
+    static class FormDecoder {
+
+        final byte[] data;
+        final int length;
+        /**
+         * The raw value of the _charset_ param, if any
+         */
+        String providedCharset;
+        private final Charset rawCharset;
+        private byte[] bytes = new byte[64];
+        private char[] chars = new char[64];
+
+        FormDecoder(InputStream is, Charset rawCharset) throws IOException {
+            this.rawCharset = rawCharset;
+            byte[] buffer = new byte[Math.max(is.available() + 1, 1024)];
+            int length = 0;
+            // to prevent the Play-server from being vulnerable to POST hash collision DOS-attack (Denial of Service through hash table multi-collisions),
+            // we should by default not parse the params into HashMap if the count exceeds a maximum limit.
+            // The params are counted as they are read, like a split on '&' would do.
+            int separators = 0;
+            int bytesRead;
+            while ((bytesRead = is.read(buffer, length, buffer.length - length)) != -1) {
+                if (maxParams != 0) {
+                    for (int i = length; i < length + bytesRead; i++) {
+                        if (buffer[i] == '&') {
+                            separators++;
+                        } else if (separators >= maxParams) {
+                            Logger.warn("Number of request parameters is higher than maximum of %d, aborting. Can be configured using 'http.maxParams'", maxParams);
+                            throw new Status(413); //413 Request Entity Too Large
+                        }
+                    }
+                }
+                length += bytesRead;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            this.data = buffer;
+            this.length = length;
+        }
+
+        Map<String, String[]> decode(Charset charset) {
+            Map<String, String[]> params = new LinkedHashMap<String, String[]>();
+            boolean asciiCompatible = isAsciiCompatible(charset);
+            int start = 0;
+            while (start < length) {
+                // split this key-value on the first '='
+                int equals = -1;
+                int end = start;
+                for (; end < length && data[end] != '&'; end++) {
+                    if (equals == -1 && data[end] == '=') {
+                        equals = end;
+                    }
+                }
+                int keyEnd = equals > start ? equals : end;
+                if (keyEnd > start) {
+                    String key = decode(start, keyEnd, charset, asciiCompatible);
+                    String value = null;
+                    if (equals > start) {
+                        value = decode(equals + 1, end, charset, asciiCompatible);
+                        if (isCharsetParam(start, keyEnd) && providedCharset == null) {
+                            providedCharset = new String(data, equals + 1, end - equals - 1, rawCharset);
+                        }
+                    }
+                    Utils.Maps.mergeValueInMap(params, key, value);
+                }
+                start = end + 1;
+            }
+            return params;
+        }
+
+        private String decode(int start, int end, Charset charset, boolean asciiCompatible) {
+            if (bytes.length < end - start) {
+                bytes = new byte[Math.max(end - start, bytes.length * 2)];
+            }
+            int count = 0;
+            boolean ascii = asciiCompatible;
+            for (int i = start; i < end; i++) {
+                byte b = data[i];
+                if (b == '+') {
+                    b = ' ';
+                } else if (b == '%') {
+                    int high = i + 2 < end ? Character.digit((char) data[i + 1], 16) : -1;
+                    int low = high != -1 ? Character.digit((char) data[i + 2], 16) : -1;
+                    if (low == -1) {
+                        // Invalid URL encoding: keep the non decoded value
+                        return new String(data, start, end - start, rawCharset);
+                    }
+                    b = (byte) ((high << 4) + low);
+                    i += 2;
+                }
+                if (b < 0) {
+                    ascii = false;
+                }
+                bytes[count++] = b;
+            }
+            if (!ascii) {
+                return new String(bytes, 0, count, charset);
+            }
+            if (chars.length < count) {
+                chars = new char[Math.max(count, chars.length * 2)];
+            }
+            for (int i = 0; i < count; i++) {
+                chars[i] = (char) bytes[i];
+            }
+            return new String(chars, 0, count);
+        }
+
+        private boolean isCharsetParam(int start, int end) {
+            if (end - start != CHARSET_PARAM.length) {
+                return false;
+            }
+            for (int i = 0; i < CHARSET_PARAM.length; i++) {
+                if (data[start + i] != CHARSET_PARAM[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final byte[] CHARSET_PARAM = {'_', 'c', 'h', 'a', 'r', 's', 'e', 't', '_'};
+    private static final ConcurrentMap<Charset, Boolean> asciiCompatibleCharsets = new ConcurrentHashMap<Charset, Boolean>();
+
+    /**
+     * @return true if the charset decodes the bytes 0 to 127 as the ASCII characters
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        Boolean asciiCompatible = asciiCompatibleCharsets.get(charset);
+        if (asciiCompatible == null) {
+            byte[] ascii = new byte[128];
+            char[] expected = new char[128];
+            for (int i = 0; i < 128; i++) {
+                ascii[i] = (byte) i;
+                expected[i] = (char) i;
+            }
+            asciiCompatible = new String(ascii, charset).equals(new String(expected));
+            asciiCompatibleCharsets.put(charset, asciiCompatible);
+        }
+        return asciiCompatible;
+    }
+
 }
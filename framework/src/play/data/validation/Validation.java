@@ -459,9 +459,9 @@ public class Validation {
     }
 
     public ValidationResult equals(Object o, Object to) {
-        String key = getLocalName(o);
-        String otherKey = getLocalName(to);
-        return Validation.equals(key, o, otherKey, to);
+        // Both names are read at once, the names given by the call site are cleared when they are read
+        String[] names = LVEnhancerRuntime.getParamNames().params;
+        return Validation.equals(getLocalName(names, 0), o, getLocalName(names, 1), to);
     }
 
     public static ValidationResult range(String key, Object o, double min, double max) {
@@ -536,9 +536,12 @@ public class Validation {
     // And this not backward compatible as previously it was returning an empty
     // string instead of the object name.
     static String getLocalName(Object o) {
-        String[] names = LVEnhancerRuntime.getParamNames().params;
-        if(names.length > 0 && names[0] != null)
-            return names[0];
+        return getLocalName(LVEnhancerRuntime.getParamNames().params, 0);
+    }
+
+    static String getLocalName(String[] names, int index) {
+        if(names.length > index && names[index] != null)
+            return names[index];
         return "";
     }
 
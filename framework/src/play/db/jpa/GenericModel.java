@@ -77,13 +77,7 @@ public class GenericModel extends JPABase {
         try {
             BeanWrapper bw = BeanWrapper.forClass(o.getClass());
             // Start with relations
-            Set<Field> fields = new HashSet<Field>();
-            Class<?> clazz = o.getClass();
-            while (!clazz.equals(Object.class)) {
-                Collections.addAll(fields, clazz.getDeclaredFields());
-                clazz = clazz.getSuperclass();
-            }
-            for (Field field : fields) {
+            for (Field field : bw.getDeclaredFields()) {
                 boolean isEntity = false;
                 String relation = null;
                 boolean multiple = false;
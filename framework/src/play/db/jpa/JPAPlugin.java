@@ -12,6 +12,7 @@ import play.Logger;
 import play.Play;
 import play.PlayPlugin;
 import play.classloading.ApplicationClasses.ApplicationClass;
+import play.classloading.enhancers.PropertiesEnhancer.DirectAccessor;
 import play.data.binding.Binder;
 import play.data.binding.NoBinding;
 import play.data.binding.ParamNode;
@@ -619,7 +620,7 @@ public class JPAPlugin extends PlayPlugin {
                     throw new UnexpectedException("Composite id property missing: " + clazz.getName() + "." + idPropertyName
                             + " (defined in IdClass " + idClass.getName() + ")");
                 // sanity check
-                Object value = modelProperty.field.get(model);
+                Object value = DirectAccessor.of(modelProperty.field).get(model);
 
                 if (modelProperty.isMultiple)
                     throw new UnexpectedException("Composite id property cannot be multiple: " + clazz.getName() + "." + idPropertyName);
@@ -662,7 +663,7 @@ public class JPAPlugin extends PlayPlugin {
                 final Object[] values = new Object[fields.length];
                 int i = 0;
                 for (Field f : fields) {
-                    final Object o = f.get(m);
+                    final Object o = DirectAccessor.of(f).get(m);
                     if (o != null) {
                         values[i++] = o;
                     }
@@ -4,6 +4,8 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.LinkedList;
@@ -97,11 +99,16 @@ public class JobsPlugin extends PlayPlugin {
     @Override
     public void afterApplicationStart() {
         List<Class<?>> jobs = new ArrayList<Class<?>>();
-        for (Class clazz : Play.classloader.getAllClasses()) {
-            if (Job.class.isAssignableFrom(clazz)) {
-                jobs.add(clazz);
-            }
+        for (Class clazz : Play.classloader.getAssignableClasses(Job.class)) {
+            jobs.add(clazz);
         }
+        // In the order of their names, as they used to be found among all the classes
+        Collections.sort(jobs, new Comparator<Class<?>>() {
+
+            public int compare(Class<?> o1, Class<?> o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
         scheduledJobs = new ArrayList<Job>();
         for (final Class<?> clazz : jobs) {
             // @OnApplicationStart
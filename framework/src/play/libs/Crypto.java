@@ -2,6 +2,7 @@ package play.libs;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 import org.apache.commons.codec.binary.Base64;
 
@@ -41,7 +42,7 @@ public class Crypto {
      * Sign a message using the application secret key (HMAC-SHA1)
      */
     public static String sign(String message) {
-        return sign(message, Play.secretKey.getBytes());
+        return sign(message, secretKeyBytes());
     }
 
     /**
@@ -58,9 +59,7 @@ public class Crypto {
         }
 
         try {
-            Mac mac = Mac.getInstance("HmacSHA1");
-            SecretKeySpec signingKey = new SecretKeySpec(key, "HmacSHA1");
-            mac.init(signingKey);
+            Mac mac = hmacSHA1(key);
             byte[] messageBytes = message.getBytes("utf-8");
             byte[] result = mac.doFinal(messageBytes);
             int len = result.length;
@@ -79,6 +78,57 @@ public class Crypto {
 
     }
 
+    /**
+     * The application secret key bytes, computed once per secret key
+     */
+    static byte[] secretKeyBytes() {
+        SecretKeyBytes current = secretKeyBytes;
+        String secret = Play.secretKey;
+        if (current == null || !current.secret.equals(secret)) {
+            current = new SecretKeyBytes(secret);
+            secretKeyBytes = current;
+        }
+        return current.bytes;
+    }
+
+    private static volatile SecretKeyBytes secretKeyBytes;
+
+    private static class SecretKeyBytes {
+        final String secret;
+        final byte[] bytes;
+
+        SecretKeyBytes(String secret) {
+            this.secret = secret;
+            this.bytes = secret.getBytes();
+        }
+    }
+
+    /**
+     * A HmacSHA1 Mac initialized with this key. Mac instances are expensive to look up and
+     * initialize, so each thread keeps its own, re-initialized only when the key changes.
+     */
+    static Mac hmacSHA1(byte[] key) throws Exception {
+        HmacSHA1 hmac = hmacs.get();
+        if (hmac == null || !Arrays.equals(hmac.key, key)) {
+            hmac = new HmacSHA1(key);
+            hmacs.set(hmac);
+        }
+        return hmac.mac;
+    }
+
+    private static final ThreadLocal<HmacSHA1> hmacs = new ThreadLocal<HmacSHA1>();
+
+    private static class HmacSHA1 {
+        final byte[] key;
+        final Mac mac;
+
+        HmacSHA1(byte[] key) throws Exception {
+            this.key = key.clone();
+            this.mac = Mac.getInstance("HmacSHA1");
+            this.mac.init(new SecretKeySpec(this.key, "HmacSHA1"));
+        }
+    }
+
     /**
         * Create a password hash using the default hashing algorithm
         * @param input The password
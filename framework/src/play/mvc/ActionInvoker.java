@@ -30,6 +30,8 @@ import play.mvc.Http.Request;
 import play.mvc.Router.Route;
 import play.mvc.results.NoResult;
 import play.mvc.results.Result;
+import play.utils.ChecksumByteArrayOutputStream;
+import play.utils.HTTP;
 import play.utils.Java;
 import play.utils.Utils;
 
@@ -111,6 +113,11 @@ public class ActionInvoker {
             resolve(request, response);
             Method actionMethod = request.invokedMethod;
 
+            // Checksum the body while it is written, for the automatic ETag
+            if (isAutoETag(request, actionMethod) && response.out != null && response.out.size() == 0 && !(response.out instanceof ChecksumByteArrayOutputStream)) {
+                response.out = new ChecksumByteArrayOutputStream();
+            }
+
             // 1. Prepare request params
             Scope.Params.current().__mergeWith(request.routeArgs);
 
@@ -243,6 +250,8 @@ public class ActionInvoker {
 
             result.apply(request, response);
 
+            applyAutoETag(request, response);
+
             Play.pluginCollection.afterActionInvocation();
 
             // @Finally
@@ -261,6 +270,40 @@ public class ActionInvoker {
         }
     }
 
+    static boolean isAutoETag(Http.Request request, Method actionMethod) {
+        if (!request.method.equals("GET") && !request.method.equals("HEAD")) {
+            return false;
+        }
+        AutoETag autoETag = actionMethod.getAnnotation(AutoETag.class);
+        if (autoETag == null) {
+            autoETag = actionMethod.getDeclaringClass().getAnnotation(AutoETag.class);
+        }
+        if (autoETag != null) {
+            return autoETag.value();
+        }
+        return Play.configuration.getProperty("http.autoETag", "false").equals("true");
+    }
+
+    /**
+     * Set a weak ETag computed from the response body, and turn the response into a
+     * 304 Not Modified if the client already has it.
+     */
+    static void applyAutoETag(Http.Request request, Http.Response response) {
+        if (!(response.out instanceof ChecksumByteArrayOutputStream)) {
+            return;
+        }
+        if (response.status == null || response.status != 200 || response.direct != null || response.chunked || response.getHeader("ETag") != null) {
+            return;
+        }
+        String etag = ((ChecksumByteArrayOutputStream) response.out).weakETag();
+        response.setHeader("ETag", etag);
+        Http.Header ifNoneMatch = request.headers.get("if-none-match");
+        if (ifNoneMatch != null && HTTP.etagMatches(ifNoneMatch.value(), etag)) {
+            response.status = Http.StatusCode.NOT_MODIFIED;
+            response.out.reset();
+        }
+    }
+
     private static boolean isActionMethod(Method method) {
         if (method.isAnnotationPresent(Before.class)) {
             return false;
@@ -602,20 +645,26 @@ public class ActionInvoker {
         }
 
         rArgs = new Object[method.getParameterTypes().length];
+        RootParamNode allParams = null;
         for (int i = 0; i < method.getParameterTypes().length; i++) {
 
             Class<?> type = method.getParameterTypes()[i];
-            Map<String, String[]> params = new HashMap<String, String[]> ();
+            RootParamNode root;
 
             // In case of simple params, we don't want to parse the body.
             if (type.equals(String.class) || Number.class.isAssignableFrom(type) || type.isPrimitive()) {
+                Map<String, String[]> params = new HashMap<String, String[]> ();
                 params.put(paramsNames[i], Scope.Params.current().getAll(paramsNames[i]));
+                root = ParamNode.convert(params);
             } else {
-                params.putAll(Scope.Params.current().all());
+                // All the params are converted once, and shared by the complex params
+                if (allParams == null) {
+                    allParams = ParamNode.convert(new HashMap<String, String[]>(Scope.Params.current().all()));
+                }
+                root = allParams;
             }
             Logger.trace("getActionMethodArgs name [" + paramsNames[i] + "] annotation [" + Utils.join(method.getParameterAnnotations()[i], " ") + "]");
 
-            RootParamNode root = ParamNode.convert(params);
             rArgs[i] = Binder.bind(
                         root,
                         paramsNames[i],
@@ -0,0 +1,24 @@
+package play.mvc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Compute a weak ETag from the response body of this action (or of all the actions
+ * of this controller), and answer <code>304 Not Modified</code> without the body
+ * when it matches the <code>If-None-Match</code> request header.
+ *
+ * <p>It can be enabled for all actions with <code>http.autoETag=true</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface AutoETag {
+
+    /**
+     * Set to false to disable the automatic ETag for this action, when enabled globally
+     */
+    boolean value() default true;
+
+}
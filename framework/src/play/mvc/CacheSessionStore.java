@@ -0,0 +1,46 @@
+package play.mvc;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import play.cache.Cache;
+
+/**
+ * Session store backed by the application cache (memcached or EhCache).
+ */
+public class CacheSessionStore extends SessionStore {
+
+    static final String PREFIX = "session:";
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, String> load(String id) {
+        return (Map<String, String>) Cache.cacheImpl.get(PREFIX + id);
+    }
+
+    @Override
+    public void save(String id, Map<String, String> data, int expiration) {
+        Cache.cacheImpl.set(PREFIX + id, new HashMap<String, String>(data), expiration);
+    }
+
+    @Override
+    public void touch(Collection<String> ids, int expiration) {
+        String[] keys = new String[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            keys[i++] = PREFIX + id;
+        }
+        // One bulk read, then only the sessions still alive are written back
+        for (Map.Entry<String, Object> entry : Cache.cacheImpl.get(keys).entrySet()) {
+            if (entry.getValue() != null) {
+                Cache.cacheImpl.replace(entry.getKey(), entry.getValue(), expiration);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        Cache.cacheImpl.delete(PREFIX + id);
+    }
+}
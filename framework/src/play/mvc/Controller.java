@@ -23,6 +23,7 @@ import play.classloading.enhancers.ControllersEnhancer.ControllerInstrumentation
 import play.classloading.enhancers.ControllersEnhancer.ControllerSupport;
 import play.classloading.enhancers.LVEnhancer;
 import play.classloading.enhancers.LVEnhancer.LVEnhancerRuntime;
+import play.classloading.enhancers.LVEnhancer.LVEnhancerRuntime.ParamsNames;
 import play.classloading.enhancers.LVEnhancer.MethodExecution;
 import play.data.binding.Unbinder;
 import play.data.validation.Validation;
@@ -642,9 +643,12 @@ public class Controller implements ControllerSupport {
      * @param args The template data
      */
     protected static void renderTemplate(String templateName, Object... args) {
+        renderTemplate(templateName, LVEnhancerRuntime.getParamNames().varargs, args);
+    }
+
+    private static void renderTemplate(String templateName, String[] names, Object[] args) {
         // Template datas
         Map<String, Object> templateBinding = new HashMap<String, Object>(16);
-        String[] names = LVEnhancerRuntime.getParamNames().varargs;
         if(args != null && args.length > 0 && names == null)
             throw new UnexpectedException("no varargs names while args.length > 0 !");
         for(int i = 0; i < args.length; i++) {
@@ -701,13 +705,15 @@ public class Controller implements ControllerSupport {
      * @param args The template data
      */
     protected static void render(Object... args) {
+        // Read once, the names given by the call site are cleared when they are read
+        ParamsNames names = LVEnhancerRuntime.getParamNames();
         String templateName = null;
-        if (args.length > 0 && args[0] instanceof String && LVEnhancerRuntime.getParamNames().mergeParamsAndVarargs()[0] == null) {
+        if (args.length > 0 && args[0] instanceof String && names.mergeParamsAndVarargs()[0] == null) {
             templateName = args[0].toString();
         } else {
             templateName = template();
         }
-        renderTemplate(templateName, args);
+        renderTemplate(templateName, names.varargs, args);
     }
 
     /**
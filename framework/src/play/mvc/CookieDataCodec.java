@@ -36,12 +36,19 @@ public class CookieDataCodec {
             return;
         }
 
-        String[] keyValues = data.split("&");
-        for (String keyValue : keyValues) {
-            String[] splitted = keyValue.split("=", 2);
-            if (splitted.length == 2) {
-                map.put(URLDecoder.decode(splitted[0], "utf-8"), URLDecoder.decode(splitted[1], "utf-8"));
+        // Single pass over the data: only the entries actually escaped are URL-decoded
+        int length = data.length();
+        int start = 0;
+        while (start < length) {
+            int end = data.indexOf('&', start);
+            if (end < 0) {
+                end = length;
             }
+            int separator = data.indexOf('=', start);
+            if (separator >= 0 && separator < end) {
+                map.put(decodeComponent(data, start, separator), decodeComponent(data, separator + 1, end));
+            }
+            start = end + 1;
         }
     }
 
@@ -55,16 +62,42 @@ public class CookieDataCodec {
         String separator = "";
         for (Map.Entry<String, String> entry : map.entrySet()) {
             if (entry.getValue() != null) {
-                data.append(separator)
-                        .append(URLEncoder.encode(entry.getKey(), "utf-8"))
-                        .append("=")
-                        .append(URLEncoder.encode(entry.getValue(), "utf-8"));
+                data.append(separator);
+                encodeComponent(data, entry.getKey());
+                data.append("=");
+                encodeComponent(data, entry.getValue());
                 separator = "&";
             }
         }
         return data.toString();
     }
 
+    static String decodeComponent(String data, int start, int end) throws UnsupportedEncodingException {
+        for (int i = start; i < end; i++) {
+            char c = data.charAt(i);
+            if (c == '%' || c == '+') {
+                return URLDecoder.decode(data.substring(start, end), "utf-8");
+            }
+        }
+        return data.substring(start, end);
+    }
+
+    static void encodeComponent(StringBuilder data, String value) throws UnsupportedEncodingException {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isUnreserved(value.charAt(i))) {
+                data.append(URLEncoder.encode(value, "utf-8"));
+                return;
+            }
+        }
+        // URLEncoder would leave it unchanged
+        data.append(value);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
     /**
      * Constant time for same length String comparison, to prevent timing attacks
      */
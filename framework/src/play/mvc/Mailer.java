@@ -375,6 +375,8 @@ public class Mailer {
     @SuppressWarnings("unchecked")
     public static Future<Boolean> send(Object... args) {
         try {
+            // Read first, the names given by the call site are cleared when they are read
+            String[] names = LVEnhancerRuntime.getParamNames().mergeParamsAndVarargs();
             final HashMap<String, Object> map = infos.get();
             if (map == null) {
                 throw new UnexpectedException("Mailer not instrumented ?");
@@ -399,8 +401,6 @@ public class Mailer {
             templateName = templateName.substring(0, templateName.indexOf("("));
             templateName = templateName.replace(".", "/");
 
-            String[] names = LVEnhancerRuntime.getParamNames().mergeParamsAndVarargs();
-            
             // overrides Template name
             if (args.length > 0 && args[0] instanceof String && names[0] == null) {
                 templateName = args[0].toString();
@@ -4,6 +4,7 @@ import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -42,18 +43,31 @@ public class Scope {
 
         Map<String, String> data = new HashMap<String, String>();
         Map<String, String> out = new HashMap<String, String>();
+        /**
+         * The flash cookie value, decoded on first access only
+         */
+        String cookieValue;
 
         public static Flash restore() {
-            try {
-                Flash flash = new Flash();
-                Http.Cookie cookie = Http.Request.current().cookies.get(COOKIE_PREFIX + "_FLASH");
-                if (cookie != null) {
-                    CookieDataCodec.decode(flash.data, cookie.value);
+            Flash flash = new Flash();
+            Http.Cookie cookie = Http.Request.current().cookies.get(COOKIE_PREFIX + "_FLASH");
+            if (cookie != null && cookie.value != null && cookie.value.length() > 0) {
+                flash.cookieValue = cookie.value;
+            }
+            return flash;
+        }
+
+        Map<String, String> data() {
+            if (cookieValue != null) {
+                String value = cookieValue;
+                cookieValue = null;
+                try {
+                    CookieDataCodec.decode(data, value);
+                } catch (Exception e) {
+                    throw new UnexpectedException("Flash corrupted", e);
                 }
-                return flash;
-            } catch (Exception e) {
-                throw new UnexpectedException("Flash corrupted", e);
             }
+            return data;
         }
 
         void save() {
@@ -84,7 +98,7 @@ public class Scope {
             if (key.contains(":")) {
                 throw new IllegalArgumentException("Character ':' is invalid in a flash key.");
             }
-            data.put(key, value);
+            data().put(key, value);
             out.put(key, value);
         }
 
@@ -99,7 +113,7 @@ public class Scope {
             if (key.contains(":")) {
                 throw new IllegalArgumentException("Character ':' is invalid in a flash key.");
             }
-            data.put(key, value);
+            data().put(key, value);
         }
 
         public void error(String value, Object... args) {
@@ -119,34 +133,34 @@ public class Scope {
         }
 
         public void keep(String key) {
-            if (data.containsKey(key)) {
-                out.put(key, data.get(key));
+            if (data().containsKey(key)) {
+                out.put(key, data().get(key));
             }
         }
 
         public void keep() {
-            out.putAll(data);
+            out.putAll(data());
         }
 
         public String get(String key) {
-            return data.get(key);
+            return data().get(key);
         }
 
         public boolean remove(String key) {
-            return data.remove(key) != null;
+            return data().remove(key) != null;
         }
 
         public void clear() {
-            data.clear();
+            data().clear();
         }
 
         public boolean contains(String key) {
-            return data.containsKey(key);
+            return data().containsKey(key);
         }
 
         @Override
         public String toString() {
-            return data.toString();
+            return data().toString();
         }
     }
 
@@ -158,6 +172,7 @@ public class Scope {
         static final String AT_KEY = "___AT";
         static final String ID_KEY = "___ID";
         static final String TS_KEY = "___TS";
+        static final String SID_KEY = "___SID";
 
         public static Session restore() {
             try {
@@ -167,16 +182,8 @@ public class Scope {
 				final long expiration = (duration * 1000l);
 
                 if (cookie != null && Play.started && cookie.value != null && !cookie.value.trim().equals("")) {
-                    String value = cookie.value;
-				 	int firstDashIndex = value.indexOf("-");
-				    if(firstDashIndex > -1) {
-                    	String sign = value.substring(0, firstDashIndex);
-                    	String data = value.substring(firstDashIndex + 1);
-                    	if (CookieDataCodec.safeEquals(sign, Crypto.sign(data, Play.secretKey.getBytes()))) {
-                            CookieDataCodec.decode(session.data, data);
-                    	}
-					} 
-                    if (COOKIE_EXPIRE != null) {
+                    if (COOKIE_EXPIRE != null && SessionStore.current == null) {
+                        session.decode(cookie.value);
                         // Verify that the session contains a timestamp, and that it's not expired
 					    if (!session.contains(TS_KEY)) {
                             session = new Session();
@@ -188,12 +195,15 @@ public class Scope {
                         }
 					    session.put(TS_KEY, System.currentTimeMillis() + expiration);
                     } else {
-                        // Just restored. Nothing changed. No cookie-expire.
+                        // Just restored. Nothing changed. No cookie-expire (or stored sessions, expired by the store).
+                        // The cookie is verified and decoded on first access only
+                        session.cookieValue = cookie.value;
+                        session.decoded = false;
                         session.changed = false;
                     }
                 } else {
                     // no previous cookie to restore; but we may have to set the timestamp in the new cookie
-			        if (COOKIE_EXPIRE != null) {	
+			        if (COOKIE_EXPIRE != null && SessionStore.current == null) {
 				        session.put(TS_KEY, (System.currentTimeMillis() + expiration));
                     }
                 }
@@ -205,29 +215,117 @@ public class Scope {
         }
         Map<String, String> data = new HashMap<String, String>(); // ThreadLocal access
         boolean changed = false;
+        /**
+         * The signed cookie value as received, kept to be sent back as is if the session is unchanged
+         */
+        String cookieValue;
+        /**
+         * Has the cookie value been verified and decoded into data?
+         */
+        boolean decoded = true;
+        /**
+         * The session id in the session store, if the cookie only carries this id
+         */
+        String storeId;
+        /**
+         * The signed cookie value carrying the session id, as received
+         */
+        String storeCookieValue;
+        /**
+         * Has the data been loaded from the session store?
+         */
+        boolean loaded = true;
+        /**
+         * Could the data not be loaded because the session store is unavailable?
+         */
+        boolean storeUnavailable = false;
+        /**
+         * A stored session cleared during this request, to delete once a new id is issued
+         */
+        String clearedStoreId;
         public static ThreadLocal<Session> current = new ThreadLocal<Session>();
 
         public static Session current() {
             return current.get();
         }
 
+        void decode(String value) throws UnsupportedEncodingException {
+            int firstDashIndex = value.indexOf("-");
+            if (firstDashIndex > -1) {
+                String sign = value.substring(0, firstDashIndex);
+                String sessionData = value.substring(firstDashIndex + 1);
+                if (CookieDataCodec.safeEquals(sign, Crypto.sign(sessionData))) {
+                    CookieDataCodec.decode(data, sessionData);
+                    if (data.size() == 1 && data.containsKey(SID_KEY)) {
+                        // The data is in the session store
+                        storeId = data.remove(SID_KEY);
+                        storeCookieValue = value;
+                        loaded = false;
+                    }
+                }
+            }
+        }
+
+        void load() {
+            SessionStore store = SessionStore.current;
+            if (store == null) {
+                storeId = null;
+                return;
+            }
+            if (!SessionStore.isAvailable()) {
+                storeUnavailable = true;
+                return;
+            }
+            try {
+                Map<String, String> stored = store.load(storeId);
+                if (stored == null) {
+                    // Unknown or expired: a new id will be issued if needed
+                    storeId = null;
+                } else {
+                    data.putAll(stored);
+                }
+            } catch (Exception e) {
+                SessionStore.failed(e);
+                storeUnavailable = true;
+            }
+        }
+
+        Map<String, String> data() {
+            if (!decoded) {
+                decoded = true;
+                try {
+                    decode(cookieValue);
+                } catch (Exception e) {
+                    throw new UnexpectedException("Corrupted HTTP session from " + Http.Request.current().remoteAddress, e);
+                }
+            }
+            if (!loaded) {
+                loaded = true;
+                load();
+            }
+            return data;
+        }
+
         public String getId() {
-            if (!data.containsKey(ID_KEY)) {
+            if (!data().containsKey(ID_KEY)) {
                 this.put(ID_KEY, Codec.UUID());
             }
-            return data.get(ID_KEY);
+            return data().get(ID_KEY);
 
         }
 
         public Map<String, String> all() {
-            return data;
+            Map<String, String> all = data();
+            // The map may be modified directly, the original cookie can't be sent back as is
+            cookieValue = null;
+            return all;
         }
 
         public String getAuthenticityToken() {
-            if (!data.containsKey(AT_KEY)) {
+            if (!data().containsKey(AT_KEY)) {
                 this.put(AT_KEY, Crypto.sign(UUID.randomUUID().toString()));
             }
-            return data.get(AT_KEY);
+            return data().get(AT_KEY);
         }
 
         void change() {
@@ -239,10 +337,20 @@ public class Scope {
                 // Some request like WebSocket don't have any response
                 return;
             }
+            if (SessionStore.current != null && saveToStore()) {
+                return;
+            }
             if(!changed && SESSION_SEND_ONLY_IF_CHANGED && COOKIE_EXPIRE == null) {
                 // Nothing changed and no cookie-expire, consequently send nothing back.
                 return;
             }
+            if (!changed && cookieValue != null && !(decoded && isEmpty())) {
+                // Nothing changed: send back the very same cookie, no need to encode and sign it again.
+                // If it was never accessed, its signature has not been verified, but then its data
+                // has not been trusted either.
+                Http.Response.current().setCookie(COOKIE_PREFIX + "_SESSION", cookieValue, null, "/", null, COOKIE_SECURE, SESSION_HTTPONLY);
+                return;
+            }
             if (isEmpty()) {
                 // The session is empty: delete the cookie
                 if(Http.Request.current().cookies.containsKey(COOKIE_PREFIX + "_SESSION") || !SESSION_SEND_ONLY_IF_CHANGED) {
@@ -252,7 +360,7 @@ public class Scope {
             }
             try {
                 String sessionData = CookieDataCodec.encode(data);
-                String sign = Crypto.sign(sessionData, Play.secretKey.getBytes());
+                String sign = Crypto.sign(sessionData);
                 if (COOKIE_EXPIRE == null) {
                     Http.Response.current().setCookie(COOKIE_PREFIX + "_SESSION", sign + "-" + sessionData, null, "/", null, COOKIE_SECURE, SESSION_HTTPONLY);
                 } else {
@@ -263,15 +371,94 @@ public class Scope {
             }
         }
 
+        /**
+         * Save the session in the session store, sending back only its id.
+         * @return false if the session must be sent back in the cookie instead
+         */
+        boolean saveToStore() {
+            if (!decoded) {
+                // Verify the signature and read the id, without loading the data
+                decoded = true;
+                try {
+                    decode(cookieValue);
+                } catch (Exception e) {
+                    throw new UnexpectedException("Corrupted HTTP session from " + Http.Request.current().remoteAddress, e);
+                }
+            }
+            // all() exposes the map itself, it may have been modified
+            boolean dirty = changed || cookieValue == null;
+            if (!dirty) {
+                if (storeId == null) {
+                    return false;
+                }
+                if (!storeUnavailable) {
+                    SessionStore.touchLater(storeId);
+                }
+                if (!SESSION_SEND_ONLY_IF_CHANGED || COOKIE_EXPIRE != null) {
+                    setCookie(cookieValue);
+                }
+                return true;
+            }
+            if (storeUnavailable && storeId != null) {
+                // The data only holds the changes of this request: it must not replace the stored
+                // session, which is kept by sending its id back
+                Logger.warn("Session store unavailable, the changes to the session %s are lost", storeId);
+                setCookie(storeCookieValue);
+                return true;
+            }
+            if (clearedStoreId != null) {
+                delete(clearedStoreId);
+                clearedStoreId = null;
+            }
+            if (isEmpty()) {
+                if (storeId != null) {
+                    delete(storeId);
+                    storeId = null;
+                }
+                return false;
+            }
+            if (!SessionStore.isAvailable()) {
+                return false;
+            }
+            if (storeId == null) {
+                storeId = Codec.UUID();
+            }
+            try {
+                SessionStore.current.save(storeId, data, SessionStore.expiration);
+            } catch (Exception e) {
+                SessionStore.failed(e);
+                return false;
+            }
+            try {
+                String sessionData = CookieDataCodec.encode(Collections.singletonMap(SID_KEY, storeId));
+                setCookie(Crypto.sign(sessionData) + "-" + sessionData);
+            } catch (Exception e) {
+                throw new UnexpectedException("Session serializationProblem", e);
+            }
+            return true;
+        }
+
+        private void delete(String id) {
+            try {
+                SessionStore.current.delete(id);
+            } catch (Exception e) {
+                SessionStore.failed(e);
+            }
+        }
+
+        private void setCookie(String value) {
+            Http.Response.current().setCookie(COOKIE_PREFIX + "_SESSION", value, null, "/", COOKIE_EXPIRE == null ? null : Time.parseDuration(COOKIE_EXPIRE), COOKIE_SECURE, SESSION_HTTPONLY);
+        }
+
         public void put(String key, String value) {
             if (key.contains(":")) {
                 throw new IllegalArgumentException("Character ':' is invalid in a session key.");
             }
             change();
             if (value == null) {
-                data.remove(key);
+                data().remove(key);
             } else {
-                data.put(key, value);
+                data().put(key, value);
             }
         }
 
@@ -284,12 +471,12 @@ public class Scope {
         }
 
         public String get(String key) {
-            return data.get(key);
+            return data().get(key);
         }
 
         public boolean remove(String key) {
             change();
-            return data.remove(key) != null;
+            return data().remove(key) != null;
         }
 
         public void remove(String... keys) {
@@ -300,7 +487,12 @@ public class Scope {
 
         public void clear() {
             change();
-            data.clear();
+            data().clear();
+            if (storeId != null) {
+                // Never reuse the id of a cleared session
+                clearedStoreId = storeId;
+                storeId = null;
+            }
         }
 
         /**
@@ -308,7 +500,7 @@ public class Scope {
          * e.g. does not contain anything else than the timestamp
          */
         public boolean isEmpty() {
-            for (String key : data.keySet()) {
+            for (String key : data().keySet()) {
                 if (!TS_KEY.equals(key)) {
                     return false;
                 }
@@ -317,12 +509,12 @@ public class Scope {
         }
 
         public boolean contains(String key) {
-            return data.containsKey(key);
+            return data().containsKey(key);
         }
 
         @Override
         public String toString() {
-            return data.toString();
+            return data().toString();
         }
     }
 
@@ -0,0 +1,166 @@
+package play.mvc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+import play.Logger;
+import play.Play;
+import play.exceptions.ConfigurationException;
+import play.libs.Time;
+
+/**
+ * Server side storage of the session data.
+ *
+ * <p>When a store is configured (<code>application.session.store</code>), the
+ * session cookie only carries a signed session id and the session data is kept
+ * in the store. The data is written back only when the session has been modified;
+ * the expiration of sessions that are only read is refreshed in batch, every
+ * <code>application.session.store.touchInterval</code>.
+ *
+ * <p>If the store fails, it is considered unavailable for a few seconds, and
+ * modified sessions are sent back in the cookie as usual.
+ */
+public abstract class SessionStore {
+
+    static final long RETRY_DELAY = 10000;
+
+    /**
+     * The configured store, or null if the session data is kept in the cookie
+     */
+    public static SessionStore current;
+
+    /**
+     * Expiration of the stored sessions, in seconds
+     */
+    static int expiration = 3600;
+
+    private static final Set<String> pendingTouches = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    static volatile long unavailableUntil = 0;
+    private static Timer timer;
+
+    /**
+     * Load the data of a session.
+     * @param id The session id
+     * @return The session data, or null if the session is unknown or expired
+     */
+    public abstract Map<String, String> load(String id);
+
+    /**
+     * Store the data of a session.
+     * @param id The session id
+     * @param data The session data
+     * @param expiration Expiration in seconds
+     */
+    public abstract void save(String id, Map<String, String> data, int expiration);
+
+    /**
+     * Postpone the expiration of existing sessions.
+     * @param ids The session ids
+     * @param expiration Expiration in seconds
+     */
+    public abstract void touch(Collection<String> ids, int expiration);
+
+    /**
+     * Delete a session.
+     * @param id The session id
+     */
+    public abstract void delete(String id);
+
+    /**
+     * Initialize the session store from the configuration.
+     */
+    public static synchronized void init() {
+        stop();
+        String type = Play.configuration.getProperty("application.session.store", "cookie");
+        if (type.equals("cookie")) {
+            return;
+        }
+        if (type.equals("cache")) {
+            current = new CacheSessionStore();
+        } else {
+            try {
+                current = (SessionStore) Play.classloader.loadClass(type).newInstance();
+            } catch (Exception e) {
+                throw new ConfigurationException("Bad configuration for application.session.store: cannot instantiate " + type);
+            }
+        }
+        expiration = Time.parseDuration(Play.configuration.getProperty("application.session.store.expiration", Play.configuration.getProperty("application.session.maxAge", "1h")));
+        long touchInterval = Time.parseDuration(Play.configuration.getProperty("application.session.store.touchInterval", "30s")) * 1000L;
+        unavailableUntil = 0;
+        timer = new Timer("session-store", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                flushTouches();
+            }
+        }, touchInterval, touchInterval);
+        Logger.info("Sessions are stored in %s", current.getClass().getSimpleName());
+    }
+
+    /**
+     * Flush the pending expiration refreshes and stop using the store.
+     */
+    public static synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        flushTouches();
+        current = null;
+    }
+
+    /**
+     * Refresh the expiration of this session with the next batch.
+     * @param id The session id
+     */
+    static void touchLater(String id) {
+        pendingTouches.add(id);
+    }
+
+    /**
+     * Refresh the expiration of all the sessions read since the last flush.
+     */
+    static void flushTouches() {
+        SessionStore store = current;
+        if (pendingTouches.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<String>(pendingTouches.size());
+        for (Iterator<String> it = pendingTouches.iterator(); it.hasNext();) {
+            ids.add(it.next());
+            it.remove();
+        }
+        if (store == null || !isAvailable()) {
+            return;
+        }
+        try {
+            store.touch(ids, expiration);
+        } catch (Exception e) {
+            failed(e);
+        }
+    }
+
+    static int pendingTouches() {
+        return pendingTouches.size();
+    }
+
+    /**
+     * @return false if the store failed recently
+     */
+    static boolean isAvailable() {
+        return System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    static void failed(Exception e) {
+        unavailableUntil = System.currentTimeMillis() + RETRY_DELAY;
+        Logger.warn(e, "Session store unavailable, sessions are kept in the cookie for the next %s seconds", RETRY_DELAY / 1000);
+    }
+}
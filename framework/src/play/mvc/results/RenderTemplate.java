@@ -1,12 +1,17 @@
 package play.mvc.results;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
 import java.util.Map;
 
+import play.Play;
+import play.cache.CacheFor;
 import play.exceptions.UnexpectedException;
 import play.libs.MimeTypes;
 import play.mvc.Http.Request;
 import play.mvc.Http.Response;
 import play.templates.Template;
+import play.templates.TemplateWriter;
 
 /**
  * 200 OK with a template rendering
@@ -21,21 +26,63 @@ public class RenderTemplate extends Result {
         if (args.containsKey("out")) {
             throw new RuntimeException("Assertion failed! args shouldn't contain out");
         }
-        this.content = template.render(args);
+        Response response = Response.current();
+        if (response != null && response.out != null && !cached(Request.current())
+                && Boolean.parseBoolean(Play.configuration.getProperty("play.templates.stream", "false"))) {
+            // Rendered now, as the template may still modify the session, but straight to the response
+            stream(template, args, response.out, response.encoding);
+        } else {
+            this.content = template.render(args);
+        }
     }
 
     public void apply(Request request, Response response) {
         try {
             final String contentType = MimeTypes.getContentType(name, "text/plain");
-            response.out.write(content.getBytes(getEncoding()));
+            if (content != null) {
+                response.out.write(content.getBytes(getEncoding()));
+            }
             setContentTypeIfNotSet(response, contentType);
         } catch (Exception e) {
             throw new UnexpectedException(e);
         }
     }
 
+    /**
+     * @return The rendered content, or null if it was directly written to the response
+     *         (<code>play.templates.stream=true</code>)
+     */
     public String getContent() {
         return content;
     }
 
+    /**
+     * @return true if the result is kept by @CacheFor and applied again to other responses,
+     *         so that the content must not be streamed
+     */
+    static boolean cached(Request request) {
+        return request != null && request.invokedMethod != null && request.invokedMethod.isAnnotationPresent(CacheFor.class);
+    }
+
+    static void stream(Template template, Map<String, Object> args, ByteArrayOutputStream out, String encoding) {
+        int mark = out.size();
+        try {
+            // The static texts of the template are copied as already encoded bytes
+            Writer writer = new TemplateWriter(out, encoding);
+            template.render(args, writer);
+            writer.flush();
+        } catch (Exception e) {
+            // Don't leave a partial page in the response
+            byte[] previous = mark > 0 ? out.toByteArray() : null;
+            out.reset();
+            if (previous != null) {
+                out.write(previous, 0, mark);
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new UnexpectedException(e);
+        }
+    }
+
 }
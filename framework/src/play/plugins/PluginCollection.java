@@ -5,6 +5,7 @@ import play.Play;
 import play.PlayPlugin;
 import play.classloading.ApplicationClasses;
 import play.classloading.ApplicationClassloader;
+import play.classloading.enhancers.Enhancer;
 import play.data.binding.RootParamNode;
 import play.db.Model;
 import play.exceptions.UnexpectedException;
@@ -15,6 +16,7 @@ import play.templates.BaseTemplate;
 import play.templates.Template;
 import play.test.BaseTest;
 import play.test.TestEngine;
+import play.utils.Timeline;
 import play.vfs.VirtualFile;
 
 import java.io.BufferedReader;
@@ -77,6 +79,12 @@ public class PluginCollection {
      */
     protected List<PlayPlugin> enabledPlugins_readOnlyCopy = createReadonlyCopy(enabledPlugins);
 
+    /**
+     * The enabled plugins overriding each hook called for every request, computed from the current
+     * list of enabled plugins
+     */
+    private volatile Hooks hooks;
+
 
     /**
      * Using readonly list to crash if someone tries to modify the copy.
@@ -88,6 +96,80 @@ public class PluginCollection {
     }
 
 
+    /**
+     * For each hook called for every request, the enabled plugins overriding it, in order:
+     * the other plugins would only run the empty implementation of PlayPlugin.
+     */
+    static class Hooks {
+
+        final List<PlayPlugin> enabledPlugins;
+        final PlayPlugin[] beforeInvocation;
+        final PlayPlugin[] afterInvocation;
+        final PlayPlugin[] onInvocationSuccess;
+        final PlayPlugin[] invocationFinally;
+        final PlayPlugin[] rawInvocation;
+        final PlayPlugin[] routeRequest;
+        final PlayPlugin[] onRequestRouting;
+        final PlayPlugin[] beforeActionInvocation;
+        final PlayPlugin[] onActionInvocationResult;
+        final PlayPlugin[] afterActionInvocation;
+        final PlayPlugin[] bind;
+
+        Hooks(List<PlayPlugin> enabledPlugins) {
+            this.enabledPlugins = enabledPlugins;
+            beforeInvocation = overriding("beforeInvocation");
+            afterInvocation = overriding("afterInvocation");
+            onInvocationSuccess = overriding("onInvocationSuccess");
+            invocationFinally = overriding("invocationFinally");
+            rawInvocation = overriding("rawInvocation", Http.Request.class, Http.Response.class);
+            routeRequest = overriding("routeRequest", Http.Request.class);
+            onRequestRouting = overriding("onRequestRouting", Router.Route.class);
+            beforeActionInvocation = overriding("beforeActionInvocation", Method.class);
+            onActionInvocationResult = overriding("onActionInvocationResult", Result.class);
+            afterActionInvocation = overriding("afterActionInvocation");
+            List<PlayPlugin> binders = new ArrayList<PlayPlugin>();
+            for (PlayPlugin plugin : enabledPlugins) {
+                // The default implementation calls the deprecated one
+                if (overrides(plugin, "bind", RootParamNode.class, String.class, Class.class, Type.class, Annotation[].class)
+                        || overrides(plugin, "bind", String.class, Class.class, Type.class, Annotation[].class, Map.class)) {
+                    binders.add(plugin);
+                }
+            }
+            bind = binders.toArray(new PlayPlugin[binders.size()]);
+        }
+
+        PlayPlugin[] overriding(String hook, Class<?>... parameterTypes) {
+            List<PlayPlugin> plugins = new ArrayList<PlayPlugin>();
+            for (PlayPlugin plugin : enabledPlugins) {
+                if (overrides(plugin, hook, parameterTypes)) {
+                    plugins.add(plugin);
+                }
+            }
+            return plugins.toArray(new PlayPlugin[plugins.size()]);
+        }
+
+        static boolean overrides(PlayPlugin plugin, String hook, Class<?>... parameterTypes) {
+            try {
+                return plugin.getClass().getMethod(hook, parameterTypes).getDeclaringClass() != PlayPlugin.class;
+            } catch (NoSuchMethodException e) {
+                throw new UnexpectedException(e);
+            }
+        }
+    }
+
+    /**
+     * @return The hooks of the enabled plugins, computed again when plugins are enabled or disabled
+     */
+    Hooks hooks() {
+        List<PlayPlugin> plugins = getEnabledPlugins();
+        Hooks current = hooks;
+        if (current == null || current.enabledPlugins != plugins) {
+            current = new Hooks(plugins);
+            hooks = current;
+        }
+        return current;
+    }
+
     private static class LoadingPluginInfo implements Comparable<LoadingPluginInfo> {
         public final String name;
         public final int index;
@@ -246,7 +328,9 @@ public class PluginCollection {
         // must create a unique Play.plugins-list for this onLoad-method-call so
         // we can detect if some plugins are removed/disabled
         Play.plugins = new ArrayList<PlayPlugin>(getEnabledPlugins());
+        Timeline.Phase phase = Timeline.begin(plugin.getClass().getName());
         plugin.onLoad();
+        phase.end();
         // Check for missing/removed plugins
         for (PlayPlugin enabledPlugin : getEnabledPlugins()) {
             if (!Play.plugins.contains(enabledPlugin)) {
@@ -450,25 +534,25 @@ public class PluginCollection {
     }
 
     public void invocationFinally() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().invocationFinally) {
             plugin.invocationFinally();
         }
     }
 
     public void beforeInvocation() {
-        for( PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().beforeInvocation) {
             plugin.beforeInvocation();
         }
     }
 
     public void afterInvocation(){
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().afterInvocation) {
             plugin.afterInvocation();
         }
     }
 
     public void onInvocationSuccess(){
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().onInvocationSuccess) {
             plugin.onInvocationSuccess();
         }
     }
@@ -496,27 +580,43 @@ public class PluginCollection {
     }
 
     public void onApplicationReady(){
+        Timeline.Phase phase = Timeline.begin("onApplicationReady");
         for (PlayPlugin plugin : getEnabledPlugins()) {
+            Timeline.Phase pluginPhase = Timeline.begin(plugin.getClass().getName());
             plugin.onApplicationReady();
+            pluginPhase.end();
         }
+        phase.end();
     }
 
     public void onConfigurationRead(){
+        Timeline.Phase phase = Timeline.begin("onConfigurationRead");
         for (PlayPlugin plugin : getEnabledPlugins()) {
+            Timeline.Phase pluginPhase = Timeline.begin(plugin.getClass().getName());
             plugin.onConfigurationRead();
+            pluginPhase.end();
         }
+        phase.end();
     }
 
     public void onApplicationStart(){
+        Timeline.Phase phase = Timeline.begin("onApplicationStart");
         for (PlayPlugin plugin : getEnabledPlugins()) {
+            Timeline.Phase pluginPhase = Timeline.begin(plugin.getClass().getName());
             plugin.onApplicationStart();
+            pluginPhase.end();
         }
+        phase.end();
     }
 
     public void afterApplicationStart(){
+        Timeline.Phase phase = Timeline.begin("afterApplicationStart");
         for (PlayPlugin plugin : getEnabledPlugins()) {
+            Timeline.Phase pluginPhase = Timeline.begin(plugin.getClass().getName());
             plugin.afterApplicationStart();
+            pluginPhase.end();
         }
+        phase.end();
     }
 
     public void onApplicationStop(){
@@ -544,10 +644,12 @@ public class PluginCollection {
     public void enhance(ApplicationClasses.ApplicationClass applicationClass) {
         for (PlayPlugin plugin : getEnabledPlugins()) {
             try {
-                long start = System.currentTimeMillis();
+                long start = System.nanoTime();
                 plugin.enhance(applicationClass);
+                long time = System.nanoTime() - start;
+                Enhancer.addPluginTiming(plugin, time);
                 if (Logger.isTraceEnabled()) {
-                    Logger.trace("%sms to apply %s to %s", System.currentTimeMillis() - start, plugin, applicationClass.name);
+                    Logger.trace("%sms to apply %s to %s", time / 1000000, plugin, applicationClass.name);
                 }
             } catch (Exception e) {
                 throw new UnexpectedException("While applying " + plugin + " on " + applicationClass.name, e);
@@ -572,7 +674,7 @@ public class PluginCollection {
     }
 
     public Object bind(RootParamNode rootParamNode, String name, Class<?> clazz, Type type, Annotation[] annotations){
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().bind) {
             Object result = plugin.bind(rootParamNode, name, clazz, type, annotations);
             if (result != null) {
                 return result;
@@ -632,43 +734,47 @@ public class PluginCollection {
     }
 
     public void beforeActionInvocation(Method actionMethod) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().beforeActionInvocation) {
             plugin.beforeActionInvocation(actionMethod);
         }
     }
 
     public void onActionInvocationResult(Result result) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().onActionInvocationResult) {
             plugin.onActionInvocationResult(result);
         }
     }
 
     public void afterActionInvocation(){
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().afterActionInvocation) {
             plugin.afterActionInvocation();
         }
     }
 
     public void routeRequest(Http.Request request) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().routeRequest) {
             plugin.routeRequest(request);
         }
     }
 
     public void onRequestRouting(Router.Route route) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().onRequestRouting) {
             plugin.onRequestRouting(route);
         }
     }
 
     public void onRoutesLoaded() {
+        Timeline.Phase phase = Timeline.begin("onRoutesLoaded");
         for (PlayPlugin plugin : getEnabledPlugins()) {
+            Timeline.Phase pluginPhase = Timeline.begin(plugin.getClass().getName());
             plugin.onRoutesLoaded();
+            pluginPhase.end();
         }
+        phase.end();
     }
 
     public boolean rawInvocation(Http.Request request, Http.Response response) throws Exception {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : hooks().rawInvocation) {
             if (plugin.rawInvocation(request, response)) {
                 return true;
             }
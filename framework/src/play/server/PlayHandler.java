@@ -17,6 +17,7 @@ import play.Invoker;
 import play.Invoker.InvocationContext;
 import play.Logger;
 import play.Play;
+import play.cache.ResponseCache;
 import play.data.binding.CachedBoundActionMethodArgs;
 import play.data.validation.Validation;
 import play.exceptions.PlayException;
@@ -129,8 +130,14 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
                     copyResponse(ctx, request, response, nettyRequest);
                 } else {
 
-                    // Deleguate to Play framework
-                    Invoker.invoke(new NettyInvocation(request, response, ctx, nettyRequest, messageEvent));
+                    // Cached response: serve it from here, no invocation needed
+                    ResponseCache.Entry cached = ResponseCache.lookup(request);
+                    if (cached != null) {
+                        serveCached(ctx, cached, nettyRequest);
+                    } else {
+                        // Deleguate to Play framework
+                        Invoker.invoke(new NettyInvocation(request, response, ctx, nettyRequest, messageEvent));
+                    }
 
                 }
 
@@ -273,6 +280,7 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
             if (response.chunked) {
                 closeChunked(request, response, ctx, nettyRequest);
             } else {
+                ResponseCache.store(request, response);
                 copyResponse(ctx, request, response, nettyRequest);
             }
             if (Logger.isTraceEnabled()) {
@@ -412,11 +420,7 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
             nettyResponse.setHeader(SERVER, signature);
         }
 
-        if (response.contentType != null) {
-            nettyResponse.setHeader(CONTENT_TYPE, response.contentType + (response.contentType.startsWith("text/") && !response.contentType.contains("charset") ? "; charset=" + response.encoding : ""));
-        } else {
-            nettyResponse.setHeader(CONTENT_TYPE, "text/plain; charset=" + response.encoding);
-        }
+        nettyResponse.setHeader(CONTENT_TYPE, getContentType(response.contentType, response.encoding));
 
         addToResponse(response, nettyResponse);
 
@@ -491,6 +495,55 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
     }
 
 
+    static String getContentType(String contentType, String encoding) {
+        if (contentType != null) {
+            return contentType + (contentType.startsWith("text/") && !contentType.contains("charset") ? "; charset=" + encoding : "");
+        }
+        return "text/plain; charset=" + encoding;
+    }
+
+    /**
+     * Write a response from the response cache, directly from the I/O thread.
+     */
+    public static void serveCached(ChannelHandlerContext ctx, ResponseCache.Entry entry, HttpRequest nettyRequest) {
+        if (Logger.isTraceEnabled()) {
+            Logger.trace("serveCached: begin");
+        }
+
+        long now = System.currentTimeMillis();
+        HttpResponse nettyResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf(entry.status));
+        if (exposePlayServer) {
+            nettyResponse.setHeader(SERVER, signature);
+        }
+        nettyResponse.setHeader(CONTENT_TYPE, getContentType(entry.contentType, entry.encoding));
+        for (Map.Entry<String, List<String>> header : entry.headers.entrySet()) {
+            for (String value : header.getValue()) {
+                nettyResponse.addHeader(header.getKey(), value);
+            }
+        }
+        nettyResponse.setHeader(DATE, Utils.getHttpDateFormatter().format(new Date(now)));
+        nettyResponse.setHeader(LAST_MODIFIED, Utils.getHttpDateFormatter().format(new Date(entry.lastModified)));
+        nettyResponse.setHeader(AGE, String.valueOf(entry.age(now)));
+
+        if (!isModified(entry.etag, entry.lastModified, nettyRequest) && nettyRequest.getMethod().equals(HttpMethod.GET)) {
+            nettyResponse.setStatus(HttpResponseStatus.NOT_MODIFIED);
+        } else {
+            setContentLength(nettyResponse, entry.body.length);
+            if (!nettyRequest.getMethod().equals(HttpMethod.HEAD)) {
+                // The cached bytes are never modified, no need to copy them
+                nettyResponse.setContent(ChannelBuffers.wrappedBuffer(entry.body));
+            }
+        }
+
+        ChannelFuture f = ctx.getChannel().write(nettyResponse);
+        if (!isKeepAlive(nettyRequest)) {
+            f.addListener(ChannelFutureListener.CLOSE);
+        }
+        if (Logger.isTraceEnabled()) {
+            Logger.trace("serveCached: end");
+        }
+    }
+
     static String getRemoteIPAddress(MessageEvent e) {
         String fullAddress = ((InetSocketAddress) e.getRemoteAddress()).getAddress().getHostAddress();
         if (fullAddress.matches("/[0-9]+[.][0-9]+[.][0-9]+[.][0-9]+[:][0-9]+")) {
@@ -97,6 +97,10 @@ public abstract class BaseTemplate extends Template {
     public static ThreadLocal<BaseTemplate> layout = new ThreadLocal<BaseTemplate>();
     public static ThreadLocal<Map<Object, Object>> layoutData = new ThreadLocal<Map<Object, Object>>();
     public static ThreadLocal<BaseTemplate> currentTemplate = new ThreadLocal<BaseTemplate>();
+    /**
+     * The rendered content of the template extending the layout being rendered
+     */
+    public static ThreadLocal<CharSequence> layoutBody = new ThreadLocal<CharSequence>();
 
     public static class RawData {
 
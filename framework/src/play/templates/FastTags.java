@@ -297,7 +297,17 @@ public class FastTags {
     }
 
     public static void _doLayout(Map<?, ?> args, Closure body, PrintWriter out, ExecutableTemplate template, int fromLine) {
-        out.print("____%LAYOUT%____");
+        CharSequence layoutBody = BaseTemplate.layoutBody.get();
+        if (layoutBody == null) {
+            // Not rendered as a layout
+            out.print("____%LAYOUT%____");
+            return;
+        }
+        if (layoutBody instanceof TextSegment && out instanceof TemplateWriter) {
+            ((TemplateWriter) out).print((TextSegment) layoutBody);
+        } else {
+            GroovyTemplate.writeBody(layoutBody, out);
+        }
     }
 
     public static void _get(Map<?, ?> args, Closure body, PrintWriter out, ExecutableTemplate template, int fromLine) {
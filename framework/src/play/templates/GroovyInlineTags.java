@@ -74,7 +74,7 @@ public class GroovyInlineTags {
                 s.append("if(!attrs").append(index).append("['items']) {attrs").append(index).append("['items'] = attrs").append(index).append("['arg'];};");
                 s.append("if(attrs").append(index).append("['items']) { play.templates.TagContext.parent().data.put('_executeNextElse', false);");
                 s.append("_iter").append(index).append(" = attrs").append(index).append("['items'].iterator();");
-                s.append("for (_").append(index).append("_i = 1; _iter").append(index).append(".hasNext(); _").append(index).append("_i++) {");
+                s.append("for (int _").append(index).append("_i = 1; _iter").append(index).append(".hasNext(); _").append(index).append("_i++) {");
                 s.append("_item").append(index).append(" = _iter").append(index).append(".next();");
                 s.append("setProperty(attrs").append(index).append("['as'] ?: '_', _item").append(index).append(");");
                 s.append("setProperty(attrs").append(index).append("['as']+'_index', _").append(index).append("_i);");
@@ -35,8 +35,10 @@ import play.utils.HTML;
 import play.utils.Java;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -62,6 +64,9 @@ public class GroovyTemplate extends BaseTemplate {
         new GroovyShell().evaluate("java.lang.String.metaClass.if = { condition -> if(condition) delegate; else '' }");
     }
     
+    private Boolean mayExtend;
+    private Boolean typed;
+
     public GroovyTemplate(String name, String source) {
         super(name, source);
     }
@@ -123,6 +128,9 @@ public class GroovyTemplate extends BaseTemplate {
                 
                 CompilationUnit compilationUnit = new CompilationUnit(compilerConfiguration);
                 compilationUnit.addSource(new SourceUnit(name, compiledSource, compilerConfiguration, tClassLoader, compilationUnit.getErrorCollector()));         
+                if (TypedTemplates.isTyped(this)) {
+                    TypedTemplates.compileStatic(compilationUnit);
+                }
 
                 Field phasesF = compilationUnit.getClass().getDeclaredField("phaseOperations");
                 phasesF.setAccessible(true);
@@ -212,6 +220,15 @@ public class GroovyTemplate extends BaseTemplate {
         }
     }
 
+    @Override
+    public void render(Map<String, Object> args, Writer out) {
+        try {
+            super.render(args, out);
+        } finally {
+            currentTemplate.remove();
+        }
+    }
+
     protected Binding setUpBindingVariables(Map<String, Object> args){
         Binding binding = new Binding(args);
         binding.setVariable("play", new Play());
@@ -222,6 +239,115 @@ public class GroovyTemplate extends BaseTemplate {
     
     @Override
     protected String internalRender(Map<String, Object> args) {
+        // If this template is called from inside another template,
+        // then args("out") have already been initialized
+        if (args.containsKey("out")) {
+            execute(args, null);
+            return null;
+        }
+        StringWriter writer = new StringWriter();
+        internalRender(args, writer);
+        return writer.toString();
+    }
+
+    @Override
+    protected void internalRender(Map<String, Object> args, Writer out) {
+        // This is the first template being rendered.
+        // We have to set up the PrintWriter that this (and all sub-templates) are going
+        // to write the output to..
+        layout.set(null);
+        currentTemplate.set(this);
+
+        // Static texts are written pre-encoded when the output is a TemplateWriter
+        TemplateWriter encoded = out instanceof TemplateWriter && ((TemplateWriter) out).direct ? (TemplateWriter) out : null;
+
+        // The output of a template extending a layout is captured, and written
+        // by #{doLayout /} while the layout is rendered
+        StringWriter body = null;
+        TemplateWriter.Buffer buffer = null;
+        PrintWriter writer;
+        // Where the output starts, when written straight to an output it can be taken back from
+        int mark = -1;
+        if (!mayExtend()) {
+            mark = encoded != null ? encoded.mark() : out instanceof StringWriter ? ((StringWriter) out).getBuffer().length() : -1;
+        }
+        if (mark >= 0) {
+            writer = encoded != null ? encoded : new PrintWriter(out);
+        } else if (encoded != null) {
+            writer = buffer = encoded.buffer();
+        } else {
+            writer = new PrintWriter(body = new StringWriter());
+        }
+        execute(args, writer);
+        writer.flush();
+
+        BaseTemplate layoutTemplate = layout.get();
+        CharSequence captured;
+        if (mark >= 0) {
+            if (layoutTemplate == null) {
+                return;
+            }
+            // The layout was set by an included template or a tag: what has been written is the body
+            if (encoded != null) {
+                captured = encoded.takeFrom(mark);
+            } else {
+                StringBuffer written = ((StringWriter) out).getBuffer();
+                captured = written.substring(mark);
+                written.setLength(mark);
+            }
+        } else {
+            captured = buffer != null ? buffer.content() : body.getBuffer();
+            if (layoutTemplate == null) {
+                if (buffer != null) {
+                    encoded.print((TextSegment) captured);
+                } else {
+                    writeBody(captured, out);
+                }
+                return;
+            }
+        }
+        Map<String, Object> layoutArgs = new HashMap<String, Object>(args);
+        layoutArgs.remove("out");
+        layoutArgs.put("_isLayout", true);
+        CharSequence previousBody = layoutBody.get();
+        layoutBody.set(captured);
+        try {
+            Writer layoutOut = encoded != null ? encoded.trimmed() : null;
+            if (layoutOut == null) {
+                layoutOut = out instanceof TrimWriter ? out : new TrimWriter(out);
+            }
+            layoutTemplate.internalRender(layoutArgs, layoutOut);
+            layoutOut.flush();
+        } catch (IOException e) {
+            throw new UnexpectedException(e);
+        } finally {
+            layoutBody.set(previousBody);
+        }
+    }
+
+    /**
+     * @return false if the template itself does not call #{extends}, so that it is rendered straight to
+     *         the output when the output can be taken back (a layout may still be set by an included
+     *         template or a tag)
+     */
+    boolean mayExtend() {
+        if (mayExtend == null) {
+            mayExtend = source == null || source.contains("extends");
+        }
+        return mayExtend;
+    }
+
+    /**
+     * @return true if the template is statically compiled, see {@link TypedTemplates}
+     */
+    boolean isTyped() {
+        if (typed == null) {
+            typed = TypedTemplates.isTyped(this);
+        }
+        return typed;
+    }
+
+    private void execute(Map<String, Object> args, PrintWriter out) {
         compile();
 
         Binding binding = this.setUpBindingVariables(args);
@@ -231,22 +357,8 @@ public class GroovyTemplate extends BaseTemplate {
         if (currentResponse != null) {
             binding.setVariable("_response_encoding", currentResponse.encoding);
         }
-        StringWriter writer = null;
-        Boolean applyLayouts = false;
-
-        // must check if this is the first template being rendered..
-        // If this template is called from inside another template,
-        // then args("out") have already been initialized
-
-        if (!args.containsKey("out")) {
-            // This is the first template being rendered.
-            // We have to set up the PrintWriter that this (and all sub-templates) are going
-            // to write the output to..
-            applyLayouts = true;
-            layout.set(null);
-            writer = new StringWriter();
-            binding.setProperty("out", new PrintWriter(writer));
-            currentTemplate.set(this);
+        if (out != null) {
+            binding.setProperty("out", out);
         }
         if (!args.containsKey("_body") && !args.containsKey("_isLayout") && !args.containsKey("_isInclude")) {
             layoutData.set(new HashMap<Object, Object>());
@@ -258,7 +370,11 @@ public class GroovyTemplate extends BaseTemplate {
         try {
             monitor = MonitorFactory.start(name);
             long start = System.currentTimeMillis();
-            t.run();
+            if (isTyped()) {
+                TypedTemplates.run(t);
+            } else {
+                t.run();
+            }
             monitor.stop();
             monitor = null;
             if (Logger.isTraceEnabled()) {
@@ -289,29 +405,210 @@ public class GroovyTemplate extends BaseTemplate {
                 monitor.stop();
             }
         }
-        if (applyLayouts && layout.get() != null) {
-            Map<String, Object> layoutArgs = new HashMap<String, Object>(args);
-            layoutArgs.remove("out");
-            layoutArgs.put("_isLayout", true);
-            String layoutR = layout.get().internalRender(layoutArgs);
+    }
+
+    /**
+     * Writes a captured body without copying it to a String
+     */
+    static void writeBody(CharSequence body, Writer out) {
+        try {
+            if (body instanceof StringBuffer) {
+                StringBuffer buffer = (StringBuffer) body;
+                char[] chars = new char[Math.min(buffer.length(), 8192)];
+                for (int i = 0; i < buffer.length(); i += chars.length) {
+                    int end = Math.min(i + chars.length, buffer.length());
+                    buffer.getChars(i, end, chars, 0);
+                    out.write(chars, 0, end - i);
+                }
+            } else {
+                out.append(body);
+            }
+        } catch (IOException e) {
+            throw new UnexpectedException(e);
+        }
+    }
+
+    /**
+     * Drops the leading and trailing whitespaces of a layout rendering, as
+     * {@link String#trim()} would do on the complete output.
+     */
+    static class TrimWriter extends Writer {
+
+        final Writer out;
+        boolean started = false;
+        final StringBuilder pending = new StringBuilder();
+        char[] chars = new char[1024];
+
+        TrimWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int start = off;
+            int end = off + len;
+            if (!started) {
+                while (start < end && cbuf[start] <= ' ') {
+                    start++;
+                }
+                if (start == end) {
+                    return;
+                }
+            }
+            int last = end;
+            while (last > start && cbuf[last - 1] <= ' ') {
+                last--;
+            }
+            if (last > start) {
+                started = true;
+                if (pending.length() > 0) {
+                    out.append(pending);
+                    pending.setLength(0);
+                }
+                out.write(cbuf, start, last - start);
+            }
+            pending.append(cbuf, last, end - last);
+        }
 
-            // Must replace '____%LAYOUT%____' inside the string layoutR with the content from writer..
-            final String whatToFind = "____%LAYOUT%____";
-            final int pos = layoutR.indexOf(whatToFind);
-            if (pos >=0) {
-                // prepending and appending directly to writer/buffer to prevent us
-                // from having to duplicate the string.
-                // this makes us use half of the memory!
-                writer.getBuffer().insert(0,layoutR.substring(0,pos));
-                writer.append(layoutR.substring(pos+whatToFind.length()));
-                return writer.toString().trim();
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (chars.length < len) {
+                chars = new char[Math.max(len, chars.length * 2)];
             }
-            return layoutR;
+            str.getChars(off, off + len, chars, 0);
+            write(chars, 0, len);
         }
-        if (writer != null) {
-            return writer.toString();
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The trailing whitespaces are dropped
+            flush();
+        }
+    }
+
+    /**
+     * The variables of a tag template. Rather than copying them in a new map for
+     * each tag invocation, they are looked up in layers: the variables set by the
+     * tag template itself, the <code>_body</code>, the attributes as <code>_name</code>,
+     * <code>_attrs</code> and <code>_caller</code>, and a few variables shared
+     * with the calling template (<code>session</code>, <code>out</code>...).
+     */
+    static class TagScope extends AbstractMap<String, Object> {
+
+        static final Set<String> INHERITED = new HashSet<String>(Arrays.asList("session", "flash", "request", "params", "play", "lang", "messages", "out"));
+        static final Object REMOVED = new Object();
+
+        final Map<String, Object> caller;
+        final Map<String, Object> attrs;
+        final Closure body;
+        final Map<String, Object> locals = new HashMap<String, Object>(8);
+
+        @SuppressWarnings("unchecked")
+        TagScope(Map caller, Map<String, Object> attrs, Closure body) {
+            this.caller = caller;
+            this.attrs = attrs;
+            this.body = body;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Object value = locals.get(key);
+            if (value != null || locals.containsKey(key)) {
+                return value == REMOVED ? null : value;
+            }
+            return inherited(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Object value = locals.get(key);
+            if (value != null || locals.containsKey(key)) {
+                return value != REMOVED;
+            }
+            return inherited(key) != null || hasInherited(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Object previous = get(key);
+            locals.put(key, value);
+            return previous;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            Object previous = get(key);
+            locals.put((String) key, REMOVED);
+            return previous;
+        }
+
+        private Object inherited(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            String name = (String) key;
+            if (name.startsWith("_")) {
+                if (name.equals("_body")) {
+                    return body;
+                }
+                if (attrs != null && name.length() > 1) {
+                    Object value = attrs.get(name.substring(1));
+                    if (value != null) {
+                        return value;
+                    }
+                }
+                if (name.equals("_attrs")) {
+                    return attrs;
+                }
+                if (name.equals("_caller")) {
+                    return caller;
+                }
+                return null;
+            }
+            return INHERITED.contains(name) ? caller.get(name) : null;
+        }
+
+        private boolean hasInherited(Object key) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+            String name = (String) key;
+            if (name.startsWith("_")) {
+                return name.equals("_body") || name.equals("_attrs") || name.equals("_caller")
+                        || (attrs != null && name.length() > 1 && attrs.containsKey(name.substring(1)));
+            }
+            return INHERITED.contains(name);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            // Only needed when the variables are copied (#{include} in a tag...)
+            Map<String, Object> all = new HashMap<String, Object>();
+            for (String name : INHERITED) {
+                all.put(name, caller.get(name));
+            }
+            all.put("_attrs", attrs);
+            all.put("_caller", caller);
+            if (attrs != null) {
+                for (Map.Entry<String, Object> entry : attrs.entrySet()) {
+                    all.put("_" + entry.getKey(), entry.getValue());
+                }
+            }
+            all.put("_body", body);
+            for (Map.Entry<String, Object> entry : locals.entrySet()) {
+                if (entry.getValue() == REMOVED) {
+                    all.remove(entry.getKey());
+                } else {
+                    all.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return all.entrySet();
         }
-        return null;
     }
 
     protected Throwable cleanStackTrace(Throwable e) {
@@ -376,41 +673,18 @@ public class GroovyTemplate extends BaseTemplate {
         }
 
         public void invokeTag(Integer fromLine, String tag, Map<String, Object> attrs, Closure body) {
-            String templateName = tag.replace(".", "/");
             String callerExtension = (extension != null) ? extension : "tag";
 
-            BaseTemplate tagTemplate = null;
-            try {
-                tagTemplate = (BaseTemplate)TemplateLoader.load("tags/" + templateName + "." + callerExtension);
-            } catch (TemplateNotFoundException e) {
-                try {
-                    tagTemplate = (BaseTemplate)TemplateLoader.load("tags/" + templateName + ".tag");
-                } catch (TemplateNotFoundException ex) {
-                    if (callerExtension.equals("tag")) {
-                        throw new TemplateNotFoundException("tags/" + templateName + ".tag", template, fromLine);
-                    }
-                    throw new TemplateNotFoundException("tags/" + templateName + "." + callerExtension + " or tags/" + templateName + ".tag", template, fromLine);
+            BaseTemplate tagTemplate = TemplateLoader.loadTag(tag, callerExtension);
+            if (tagTemplate == null) {
+                String templateName = tag.replace(".", "/");
+                if (callerExtension.equals("tag")) {
+                    throw new TemplateNotFoundException("tags/" + templateName + ".tag", template, fromLine);
                 }
+                throw new TemplateNotFoundException("tags/" + templateName + "." + callerExtension + " or tags/" + templateName + ".tag", template, fromLine);
             }
             TagContext.enterTag(tag);
-            Map<String, Object> args = new HashMap<String, Object>();
-            args.put("session", getBinding().getVariables().get("session"));
-            args.put("flash", getBinding().getVariables().get("flash"));
-            args.put("request", getBinding().getVariables().get("request"));
-            args.put("params", getBinding().getVariables().get("params"));
-            args.put("play", getBinding().getVariables().get("play"));
-            args.put("lang", getBinding().getVariables().get("lang"));
-            args.put("messages", getBinding().getVariables().get("messages"));
-            args.put("out", getBinding().getVariable("out"));
-            args.put("_attrs", attrs);
-            // all other vars are template-specific
-            args.put("_caller", getBinding().getVariables());
-            if (attrs != null) {
-                for (Map.Entry<String, Object> entry : attrs.entrySet()) {
-                    args.put("_" + entry.getKey(), entry.getValue());
-                }
-            }
-            args.put("_body", body);
+            Map<String, Object> args = new TagScope(getBinding().getVariables(), attrs, body);
             try {
                 tagTemplate.internalRender(args);
             } catch (TagInternalException e) {
@@ -460,6 +734,26 @@ public class GroovyTemplate extends BaseTemplate {
             return (val != null) ? val.toString() : "";
         }
 
+        /**
+         * Print the value of an expression, the safe formatters writing the formatted
+         * value directly to the output
+         */
+        public void __safePrint(Object val) throws IOException {
+            Writer out = (Writer) getBinding().getVariables().get("out");
+            if (val instanceof RawData) {
+                out.write(((RawData) val).data);
+                return;
+            }
+            SafeFormatter formatter = extension != null ? safeFormatters.get(extension) : null;
+            if (formatter instanceof StreamingSafeFormatter) {
+                ((StreamingSafeFormatter) formatter).format(template, val, out);
+            } else if (formatter != null) {
+                out.write(String.valueOf(formatter.format(template, val)));
+            } else if (val != null) {
+                out.write(val.toString());
+            }
+        }
+
         public String __getMessage(Object[] val) {
             if (val==null) {
                 throw new NullPointerException("You are trying to resolve a message with an expression " +
@@ -20,22 +20,35 @@ import java.util.regex.Pattern;
  */
 public class GroovyTemplateCompiler extends TemplateCompiler {
 
-    public static List<String> extensionsClassnames = new ArrayList<String>();
+    public static volatile List<String> extensionsClassnames = new ArrayList<String>();
 
     // [#714] The groovy-compiler complaints if a line is more than 65535 unicode units long..
     // Have to split it if it is really that big
     protected static final int maxPlainTextLength = 60000;
 
+    // The static texts are constants of the template class, encoded once.
+    // Beyond this count they are printed inline, so that the class initializer stays small
+    protected static final int maxTextSegments = 1000;
+
+    protected String className;
+    // The declared arguments of a typed template, null for dynamic templates
+    protected List<String[]> declarations;
+    protected int declarationsOffset;
+    protected int maxTagIndex;
+    protected List<String> textSegments = new ArrayList<String>();
+
 
     @Override
     public BaseTemplate compile(BaseTemplate template) {
         try {
-            extensionsClassnames.clear();
-            extensionsClassnames.addAll( Play.pluginCollection.addTemplateExtensions());
+            // Replaced rather than updated, as templates may be compiled concurrently
+            List<String> names = new ArrayList<String>();
+            names.addAll( Play.pluginCollection.addTemplateExtensions());
             List<Class> extensionsClasses = Play.classloader.getAssignableClasses(JavaExtensions.class);
             for (Class extensionsClass : extensionsClasses) {
-                extensionsClassnames.add(extensionsClass.getName());
+                names.add(extensionsClass.getName());
             }
+            extensionsClassnames = names;
         } catch (Throwable e) {
             //
         }
@@ -138,9 +151,21 @@ public class GroovyTemplateCompiler extends TemplateCompiler {
 
         String uniqueNumberForTemplateFile = TemplateLoader.getUniqueNumberForTemplateFile(template.name);
 
-        String className = "Template_" + uniqueNumberForTemplateFile;
+        className = "Template_" + uniqueNumberForTemplateFile;
         print(className);
         println(" extends play.templates.GroovyTemplate.ExecutableTemplate {");
+        declarations = TypedTemplates.declarations(template);
+        if (declarations != null) {
+            // Typed template: the arguments are declared as local variables, and the
+            // extensions categories are set by TypedTemplates.run()
+            print("public Object run() {");
+            declarationsOffset = compiledSource.length();
+            println();
+            for (String[] declaration : declarations) {
+                println(declaration[0] + " " + declaration[1] + " = (" + declaration[0] + ") getBinding().getVariables().get('" + declaration[1] + "');");
+            }
+            return;
+        }
         println("public Object run() { use(play.templates.JavaExtensions) {");
         for (String n : extensionsClassnames) {
             println("use(_('" + n + "')) {");
@@ -150,10 +175,24 @@ public class GroovyTemplateCompiler extends TemplateCompiler {
     @Override
     @SuppressWarnings("unused")
     protected void end() {
-        for (String n : extensionsClassnames) {
-            println(" } ");
+        if (declarations != null) {
+            println("}");
+            // The variables of the tags are declared, on the first line to keep the line numbers
+            StringBuilder variables = new StringBuilder(" List toUnset = null;");
+            for (int i = 1; i <= maxTagIndex; i++) {
+                variables.append(" Map attrs").append(i).append(" = null; Closure body").append(i).append(" = null;");
+                variables.append(" def _iter").append(i).append(" = null; def _item").append(i).append(" = null;");
+            }
+            compiledSource.insert(declarationsOffset, variables);
+        } else {
+            for (String n : extensionsClassnames) {
+                println(" } ");
+            }
+            println("} }");
+        }
+        for (int i = 0; i < textSegments.size(); i++) {
+            println("public static final play.templates.TextSegment __T" + i + " = new play.templates.TextSegment(\"" + textSegments.get(i) + "\");");
         }
-        println("} }");
         println("}");
     }
 
@@ -179,7 +218,7 @@ public class GroovyTemplateCompiler extends TemplateCompiler {
         // Have to split it if it is really that big
         if (text.length() <maxPlainTextLength) {
             // text is "short" - just print it
-            println("out.print(\""+text+"\");");
+            printText(text);
         } else {
             // text is long - must split it
             int offset = 0;
@@ -195,12 +234,24 @@ public class GroovyTemplateCompiler extends TemplateCompiler {
                         endPos++;
                     }
                 }
-                println("out.print(\""+text.substring(offset, endPos)+"\");");
+                printText(text.substring(offset, endPos));
                 offset+= (endPos - offset);
             }while(offset < text.length());
         }
     }
 
+    /**
+     * Prints an escaped static text, through a pre-encoded constant when possible
+     */
+    protected void printText(String text) {
+        if (text.length() > 0 && textSegments.size() < maxTextSegments) {
+            println("out.print(" + className + ".__T" + textSegments.size() + ");");
+            textSegments.add(text);
+        } else {
+            println("out.print(\""+text+"\");");
+        }
+    }
+
     @Override
     protected void script() {
         String text = parser.getToken();
@@ -222,7 +273,7 @@ public class GroovyTemplateCompiler extends TemplateCompiler {
     @Override
     protected void expr() {
         String expr = parser.getToken().trim();
-        print(";out.print(__safeFaster("+expr+"))");
+        print(";__safePrint("+expr+")");
         markLine(parser.getLine());
         println();
     }
@@ -261,6 +312,7 @@ public class GroovyTemplateCompiler extends TemplateCompiler {
     @Override
     protected void startTag() {
         tagIndex++;
+        maxTagIndex = Math.max(maxTagIndex, tagIndex);
         String tagText = parser.getToken().trim().replaceAll("\r", "").replaceAll("\n", " ");
         String tagName = "";
         String tagArgs = "";
@@ -289,7 +341,7 @@ public class GroovyTemplateCompiler extends TemplateCompiler {
         tag.hasBody = hasBody;
         tagsStack.push(tag);
         if (tagArgs.trim().equals("_:_")) {
-            print("attrs" + tagIndex + " = _attrs;");
+            print("attrs" + tagIndex + " = " + (declarations != null ? "(Map) " : "") + "_attrs;");
         } else {
             print("attrs" + tagIndex + " = [" + tagArgs + "];");
         }
@@ -0,0 +1,12 @@
+package play.templates;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A formatter writing the formatted values straight to the template output,
+ * without building a formatted String for each value.
+ */
+public interface StreamingSafeFormatter extends SafeFormatter {
+	void format(Template template, Object value, Writer out) throws IOException;
+}
@@ -1,8 +1,12 @@
 package play.templates;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
+import play.exceptions.UnexpectedException;
+
 public abstract class Template {
 
     public String name;
@@ -27,12 +31,37 @@ public abstract class Template {
     }
 
 
+    /**
+     * Starts the rendering process without modifying the args-map, writing
+     * the result to the given writer instead of building a String.
+     * @param args map containing data binding info
+     * @param out where to write the result of the complete rendering
+     */
+    public void render(Map<String, Object> args, Writer out) {
+        internalRender(new HashMap<String, Object>(args), out);
+    }
+
     /**
      * The internal rendering method - When one templated calls another template,
      * this method is used. The input args-map is constantly being modified, as different
      * templates "communicate" with each other by storing info in the map
      */
     protected abstract String internalRender(Map<String, Object> args);
+
+    /**
+     * The internal rendering method writing to the given writer. Templates able to
+     * stream their output should override it; by default the rendered String is written.
+     */
+    protected void internalRender(Map<String, Object> args, Writer out) {
+        String result = internalRender(args);
+        if (result != null) {
+            try {
+                out.write(result);
+            } catch (IOException e) {
+                throw new UnexpectedException(e);
+            }
+        }
+    }
     
     public String render() {
         return internalRender(new HashMap<String, Object>());
@@ -1,29 +1,42 @@
 package play.templates;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.Collections;
 
 import play.Logger;
 import play.Play;
 import play.vfs.VirtualFile;
 import play.exceptions.TemplateCompilationException;
 import play.exceptions.TemplateNotFoundException;
+import play.exceptions.UnexpectedException;
+import play.utils.PThreadFactory;
 
 /**
  * Load templates
  */
 public class TemplateLoader {
 
-    protected static Map<String, BaseTemplate> templates = new HashMap<String, BaseTemplate>();
+    protected static Map<String, BaseTemplate> templates = new ConcurrentHashMap<String, BaseTemplate>();
     /**
      * See getUniqueNumberForTemplateFile() for more info
      */
     private static AtomicLong nextUniqueNumber = new AtomicLong(1000);//we start on 1000
-    private static Map<String, String> templateFile2UniqueNumber = Collections.synchronizedMap(new HashMap<String, String>());
+    private static ConcurrentMap<String, String> templateFile2UniqueNumber = new ConcurrentHashMap<String, String>();
+    /**
+     * Resolved tag templates by caller extension and tag name, in PROD
+     */
+    private static final ConcurrentMap<String, ConcurrentMap<String, BaseTemplate>> tags = new ConcurrentHashMap<String, ConcurrentMap<String, BaseTemplate>>();
 
     /**
      * All loaded templates is cached in the templates-list using a key.
@@ -46,7 +59,11 @@ public class TemplateLoader {
         if (uniqueNumber == null) {
             //this is the first time we see this path - must assign a unique number to it.
             uniqueNumber = Long.toString(nextUniqueNumber.getAndIncrement());
-            templateFile2UniqueNumber.put(path, uniqueNumber);
+            String existing = templateFile2UniqueNumber.putIfAbsent(path, uniqueNumber);
+            if (existing != null) {
+                // Assigned meanwhile by another thread
+                uniqueNumber = existing;
+            }
         }
         return uniqueNumber;
     }
@@ -148,6 +165,7 @@ public class TemplateLoader {
      */
     public static void cleanCompiledCache() {
         templates.clear();
+        tags.clear();
     }
 
     /**
@@ -164,6 +182,19 @@ public class TemplateLoader {
      * @return The executable template
      */
     public static Template load(String path) {
+        Template template = find(path);
+        if (template == null) {
+            throw new TemplateNotFoundException(path);
+        }
+        return template;
+    }
+
+    /**
+     * Load a template if it exists
+     * @param path The path of the template (ex: Application/index.html)
+     * @return The executable template, or null if there is no such template
+     */
+    public static Template find(String path) {
         Template template = null;
         for (VirtualFile vf : Play.templatesPath) {
             if (vf == null) {
@@ -195,22 +226,57 @@ public class TemplateLoader {
             VirtualFile tf = Play.getVirtualFile(path);
             if (tf != null && tf.exists()) {
                 template = TemplateLoader.load(tf);
-            } else {
-                throw new TemplateNotFoundException(path);
             }
         }
         return template;
     }
 
     /**
-     * List all found templates
+     * Load the template of a tag: <code>tags/name.callerExtension</code>, or else
+     * <code>tags/name.tag</code>. In PROD the resolved template is cached.
+     * @param tag The tag name (ex: my.tag)
+     * @param callerExtension The extension of the calling template
+     * @return The tag template, or null if the tag does not exist
+     */
+    public static BaseTemplate loadTag(String tag, String callerExtension) {
+        ConcurrentMap<String, BaseTemplate> resolved = null;
+        if (Play.mode == Play.Mode.PROD) {
+            resolved = tags.get(callerExtension);
+            if (resolved == null) {
+                resolved = new ConcurrentHashMap<String, BaseTemplate>();
+                ConcurrentMap<String, BaseTemplate> existing = tags.putIfAbsent(callerExtension, resolved);
+                if (existing != null) {
+                    resolved = existing;
+                }
+            }
+            BaseTemplate template = resolved.get(tag);
+            if (template != null) {
+                return template;
+            }
+        }
+        String templateName = "tags/" + tag.replace(".", "/");
+        BaseTemplate template = (BaseTemplate) find(templateName + "." + callerExtension);
+        if (template == null && !callerExtension.equals("tag")) {
+            template = (BaseTemplate) find(templateName + ".tag");
+        }
+        if (template != null && resolved != null) {
+            resolved.put(tag, template);
+        }
+        return template;
+    }
+
+    /**
+     * List all found templates, and compile them. The templates of the application,
+     * of the modules and of the framework (including the tags) are compiled in parallel,
+     * using <code>play.templates.compile.threads</code> threads.
      * @return A list of executable templates
      */
     public static List<Template> getAllTemplate() {
-        List<Template> res = new ArrayList<Template>();
+        List<VirtualFile> files = new ArrayList<VirtualFile>();
         for (VirtualFile virtualFile : Play.templatesPath) {
-            scan(res, virtualFile);
+            scan(files, virtualFile);
         }
+        List<Template> res = compileAll(files);
         for (VirtualFile root : Play.roots) {
             VirtualFile vf = root.child("conf/routes");
             if (vf != null && vf.exists()) {
@@ -223,26 +289,103 @@ public class TemplateLoader {
         return res;
     }
 
-    private static void scan(List<Template> templates, VirtualFile current) {
+    private static void scan(List<VirtualFile> files, VirtualFile current) {
         if (!current.isDirectory() && !current.getName().startsWith(".")) {
+            files.add(current);
+        } else if (!current.getName().startsWith(".")) {
+            for (VirtualFile virtualFile : current.list()) {
+                scan(files, virtualFile);
+            }
+        }
+    }
+
+    static List<Template> compileAll(List<VirtualFile> files) {
+        long start = System.currentTimeMillis();
+        int threads = Integer.parseInt(Play.configuration.getProperty("play.templates.compile.threads", Runtime.getRuntime().availableProcessors() + ""));
+        threads = Math.max(1, Math.min(threads, files.size()));
+        List<CompileTask> tasks = new ArrayList<CompileTask>(files.size());
+        for (VirtualFile file : files) {
+            tasks.add(new CompileTask(file, Thread.currentThread().getContextClassLoader()));
+        }
+        if (threads == 1) {
+            for (CompileTask task : tasks) {
+                task.call();
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new PThreadFactory("templates"));
+            try {
+                List<Future<Template>> results = executor.invokeAll(tasks);
+                for (Future<Template> result : results) {
+                    // Reports the first failure, in the scan order
+                    result.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new UnexpectedException(e.getCause());
+            } catch (InterruptedException e) {
+                throw new UnexpectedException(e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        List<Template> res = new ArrayList<Template>(tasks.size());
+        for (CompileTask task : tasks) {
+            if (task.template != null) {
+                res.add(task.template);
+            }
+        }
+        if (!tasks.isEmpty()) {
+            List<CompileTask> slowest = new ArrayList<CompileTask>(tasks);
+            Collections.sort(slowest, new Comparator<CompileTask>() {
+                public int compare(CompileTask t1, CompileTask t2) {
+                    return t1.time < t2.time ? 1 : (t1.time == t2.time ? 0 : -1);
+                }
+            });
+            StringBuilder report = new StringBuilder();
+            for (CompileTask task : slowest.subList(0, Math.min(5, slowest.size()))) {
+                report.append(report.length() == 0 ? "" : ", ").append(task.file.relativePath()).append(" (").append(task.time).append("ms)");
+            }
+            Logger.info("%s templates compiled in %sms using %s threads, slowest: %s", res.size(), System.currentTimeMillis() - start, threads, report);
+        }
+        return res;
+    }
+
+    static class CompileTask implements Callable<Template> {
+
+        final VirtualFile file;
+        final ClassLoader contextClassLoader;
+        Template template;
+        long time;
+
+        CompileTask(VirtualFile file, ClassLoader contextClassLoader) {
+            this.file = file;
+            this.contextClassLoader = contextClassLoader;
+        }
+
+        public Template call() {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
             long start = System.currentTimeMillis();
-            Template template = load(current);
-            if (template != null) {
+            Template loaded = load(file);
+            if (loaded != null) {
                 try {
-                    template.compile();
-                    if (Logger.isTraceEnabled()) {
-                        Logger.trace("%sms to load %s", System.currentTimeMillis() - start, current.getName());
-                    }
+                    loaded.compile();
                 } catch (TemplateCompilationException e) {
                     Logger.error("Template %s does not compile at line %d", e.getTemplate().name, e.getLineNumber());
                     throw e;
                 }
-                templates.add(template);
             }
-        } else if (!current.getName().startsWith(".")) {
-            for (VirtualFile virtualFile : current.list()) {
-                scan(templates, virtualFile);
+            time = System.currentTimeMillis() - start;
+            if (Logger.isTraceEnabled()) {
+                Logger.trace("%sms to load %s", time, file.getName());
             }
+            template = loaded;
+            return loaded;
         }
     }
 }
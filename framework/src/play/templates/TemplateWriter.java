@@ -0,0 +1,260 @@
+package play.templates;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Template output encoding the characters to a stream. The static texts of the
+ * compiled templates are written as they have already been encoded.
+ */
+public class TemplateWriter extends PrintWriter {
+
+    final OutputStream stream;
+    final String charset;
+    final boolean direct;
+    final boolean trimmed;
+
+    public TemplateWriter(OutputStream stream, String charset) throws UnsupportedEncodingException {
+        this(stream, forName(charset), false);
+    }
+
+    private TemplateWriter(OutputStream stream, Charset charset, boolean trimmed) {
+        this(stream, charset, isDirect(charset), trimmed);
+    }
+
+    private TemplateWriter(OutputStream stream, Charset charset, boolean direct, boolean trimmed) {
+        super(direct ? new Encoder(stream, charset.name()) : new OutputStreamWriter(stream, charset));
+        this.stream = stream;
+        this.charset = charset.name();
+        this.direct = direct;
+        this.trimmed = trimmed;
+    }
+
+    static Charset forName(String charset) throws UnsupportedEncodingException {
+        try {
+            return Charset.forName(charset);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(charset);
+        }
+    }
+
+    /**
+     * Encoded texts can be concatenated, and the whitespaces are single bytes never
+     * found in the encoding of other characters. UTF-16 (byte order marks) or
+     * ISO-2022 (shift sequences) outputs are written as characters.
+     */
+    static boolean isDirect(Charset charset) {
+        String name = charset.name();
+        return name.equals("UTF-8") || name.equals("US-ASCII") || name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+    }
+
+    /**
+     * Write a static text, already encoded
+     */
+    public void print(TextSegment segment) {
+        if (!direct) {
+            print(segment.toString());
+            return;
+        }
+        try {
+            segment.writeTo(stream, charset);
+        } catch (IOException e) {
+            setError();
+        }
+    }
+
+    /**
+     * @return A writer to a buffer, with the same encoding
+     */
+    Buffer buffer() {
+        return new Buffer(Charset.forName(charset));
+    }
+
+    /**
+     * @return The position in the output, to take back what is written after it with {@link #takeFrom(int)},
+     *         or -1 if it can't be done
+     */
+    int mark() {
+        if (!direct || trimmed || !(stream instanceof ByteArrayOutputStream)) {
+            return -1;
+        }
+        flush();
+        return ((ByteArrayOutputStream) stream).size();
+    }
+
+    /**
+     * Remove what has been written since the mark from the output
+     * @return The removed content
+     */
+    TextSegment takeFrom(int mark) {
+        flush();
+        ByteArrayOutputStream out = (ByteArrayOutputStream) stream;
+        byte[] written = out.toByteArray();
+        out.reset();
+        out.write(written, 0, mark);
+        return new TextSegment(Arrays.copyOfRange(written, mark, written.length), written.length - mark, charset);
+    }
+
+    /**
+     * @return A writer to the same stream, dropping the leading and trailing whitespaces
+     *         as {@link String#trim()} would do on the complete output, or null if it
+     *         can't be done on the encoded output
+     */
+    TemplateWriter trimmed() {
+        if (trimmed) {
+            return this;
+        }
+        if (!direct) {
+            return null;
+        }
+        return new TemplateWriter(new TrimOutputStream(stream), Charset.forName(charset), true);
+    }
+
+    /**
+     * Unbuffered encoder for the ASCII compatible charsets, so that the pre-encoded
+     * texts can be written to the stream at any time. ASCII is copied as is.
+     */
+    static class Encoder extends Writer {
+
+        final OutputStream out;
+        final String charset;
+        byte[] bytes = new byte[256];
+        char[] chars = new char[256];
+        char highSurrogate;
+
+        Encoder(OutputStream out, String charset) {
+            this.out = out;
+            this.charset = charset;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            if (highSurrogate != 0 || Character.isHighSurrogate(cbuf[off + len - 1])) {
+                // A character split between two writes
+                StringBuilder chars = new StringBuilder(len + 1);
+                if (highSurrogate != 0) {
+                    chars.append(highSurrogate);
+                    highSurrogate = 0;
+                }
+                chars.append(cbuf, off, len);
+                if (Character.isHighSurrogate(chars.charAt(chars.length() - 1))) {
+                    highSurrogate = chars.charAt(chars.length() - 1);
+                    chars.setLength(chars.length() - 1);
+                }
+                out.write(chars.toString().getBytes(charset));
+                return;
+            }
+            if (bytes.length < len) {
+                bytes = new byte[Math.max(len, bytes.length * 2)];
+            }
+            for (int i = 0; i < len; i++) {
+                char c = cbuf[off + i];
+                if (c >= 0x80) {
+                    out.write(bytes, 0, i);
+                    out.write(new String(cbuf, off + i, len - i).getBytes(charset));
+                    return;
+                }
+                bytes[i] = (byte) c;
+            }
+            out.write(bytes, 0, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (chars.length < len) {
+                chars = new char[Math.max(len, chars.length * 2)];
+            }
+            str.getChars(off, off + len, chars, 0);
+            write(chars, 0, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * A template output kept in memory, to be written later as a whole
+     */
+    static class Buffer extends TemplateWriter {
+
+        Buffer(Charset charset) {
+            super(new Bytes(), charset, false);
+        }
+
+        /**
+         * @return the written content
+         */
+        TextSegment content() {
+            flush();
+            Bytes bytes = (Bytes) stream;
+            return new TextSegment(bytes.buffer(), bytes.size(), charset);
+        }
+
+        static class Bytes extends ByteArrayOutputStream {
+
+            byte[] buffer() {
+                return buf;
+            }
+        }
+    }
+
+    static class TrimOutputStream extends FilterOutputStream {
+
+        boolean started = false;
+        final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+        TrimOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int start = off;
+            int end = off + len;
+            if (!started) {
+                while (start < end && (b[start] & 0xff) <= ' ') {
+                    start++;
+                }
+                if (start == end) {
+                    return;
+                }
+            }
+            int last = end;
+            while (last > start && (b[last - 1] & 0xff) <= ' ') {
+                last--;
+            }
+            if (last > start) {
+                started = true;
+                if (pending.size() > 0) {
+                    pending.writeTo(out);
+                    pending.reset();
+                }
+                out.write(b, start, last - start);
+            }
+            pending.write(b, last, end - last);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package play.templates;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import play.exceptions.UnexpectedException;
+
+/**
+ * A static text of a compiled template. Its encoded bytes are kept, so that the
+ * text is not encoded again each time the template is rendered into a
+ * {@link TemplateWriter}. Printed to any other writer, it is written as a String.
+ */
+public final class TextSegment implements CharSequence {
+
+    private String text;
+    private volatile Encoded encoded;
+
+    public TextSegment(String text) {
+        this.text = text;
+    }
+
+    TextSegment(byte[] bytes, int length, String charset) {
+        this.encoded = new Encoded(charset, bytes, length);
+    }
+
+    /**
+     * Write the text encoded with the given charset
+     */
+    void writeTo(OutputStream out, String charset) throws IOException {
+        Encoded e = encoded;
+        if (e == null || !e.charset.equalsIgnoreCase(charset)) {
+            byte[] bytes = toString().getBytes(charset);
+            e = new Encoded(charset, bytes, bytes.length);
+            encoded = e;
+        }
+        out.write(e.bytes, 0, e.length);
+    }
+
+    public int length() {
+        return toString().length();
+    }
+
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (text == null) {
+            Encoded e = encoded;
+            try {
+                text = new String(e.bytes, 0, e.length, e.charset);
+            } catch (UnsupportedEncodingException ex) {
+                throw new UnexpectedException(ex);
+            }
+        }
+        return text;
+    }
+
+    static class Encoded {
+
+        final String charset;
+        final byte[] bytes;
+        final int length;
+
+        Encoded(String charset, byte[] bytes, int length) {
+            this.charset = charset;
+            this.bytes = bytes;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package play.templates;
+
+import groovy.lang.Closure;
+import groovy.lang.Script;
+import groovy.transform.CompileStatic;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.AnnotationNode;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.MethodCall;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilationUnit.PrimaryClassNodeOperation;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.runtime.GroovyCategorySupport;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.runtime.ScriptBytecodeAdapter;
+import org.codehaus.groovy.transform.sc.StaticCompileTransformation;
+import org.codehaus.groovy.transform.stc.AbstractTypeCheckingExtension;
+import org.codehaus.groovy.transform.stc.ExtensionMethodNode;
+import org.codehaus.groovy.transform.stc.StaticTypeCheckingSupport;
+import org.codehaus.groovy.transform.stc.StaticTypeCheckingVisitor;
+
+import play.Play;
+import play.exceptions.TemplateCompilationException;
+
+/**
+ * Templates starting with a <code>*{typed Type name, ...}*</code> header are compiled with
+ * the Groovy static compilation. The declared arguments are typed local variables, so that
+ * the expressions using them are compiled to direct method calls. The {@link JavaExtensions}
+ * are resolved at compile time when the receiver type is known. What can't be resolved
+ * statically (undeclared variables, tags, actions...) is still dispatched at runtime.
+ */
+public class TypedTemplates {
+
+    static final Pattern HEADER = Pattern.compile("^\\s*\\*\\{\\s*typed(\\s[^}]*)?\\}\\*", Pattern.DOTALL);
+    static final Pattern IDENTIFIER = Pattern.compile("[a-zA-Z_$][a-zA-Z0-9_$]*");
+
+    // The extensions categories, for the calls dispatched at runtime
+    static volatile List<Class> categories;
+    static volatile List<String> categoriesNames;
+
+    /**
+     * @return true if the template is compiled statically
+     */
+    public static boolean isTyped(BaseTemplate template) {
+        return template.source != null && HEADER.matcher(template.source).find();
+    }
+
+    /**
+     * @return The declared arguments (type, name) of a typed template, or null if the template is dynamic
+     */
+    public static List<String[]> declarations(BaseTemplate template) {
+        if (template.source == null) {
+            return null;
+        }
+        Matcher matcher = HEADER.matcher(template.source);
+        if (!matcher.find()) {
+            return null;
+        }
+        List<String[]> declarations = new ArrayList<String[]>();
+        String header = matcher.group(1);
+        if (header == null || header.trim().length() == 0) {
+            return declarations;
+        }
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i <= header.length(); i++) {
+            char c = i < header.length() ? header.charAt(i) : ',';
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                declarations.add(declaration(template, header.substring(start, i).trim()));
+                start = i + 1;
+            }
+        }
+        return declarations;
+    }
+
+    static String[] declaration(BaseTemplate template, String declaration) {
+        declaration = declaration.replaceAll("\\s+", " ");
+        int space = declaration.lastIndexOf(' ');
+        if (space <= 0 || !IDENTIFIER.matcher(declaration.substring(space + 1)).matches()) {
+            throw new TemplateCompilationException(template, 1, "Invalid typed argument '" + declaration + "', expected 'Type name'");
+        }
+        return new String[] {declaration.substring(0, space), declaration.substring(space + 1)};
+    }
+
+    /**
+     * Statically compile the template class of this compilation unit
+     */
+    static void compileStatic(CompilationUnit compilationUnit) {
+        final Transformation transformation = new Transformation();
+        transformation.setCompilationUnit(compilationUnit);
+        final AnnotationNode annotation = new AnnotationNode(ClassHelper.make(CompileStatic.class));
+        compilationUnit.addPhaseOperation(new PrimaryClassNodeOperation() {
+            @Override
+            public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) throws CompilationFailedException {
+                transformation.visit(new ASTNode[] {annotation, classNode}, source);
+            }
+        }, Phases.INSTRUCTION_SELECTION);
+    }
+
+    /**
+     * Run a typed template with the extensions categories, as a dynamic template
+     * does with its <code>use(...)</code> blocks
+     */
+    static Object run(final Script script) throws ClassNotFoundException {
+        List<String> names = GroovyTemplateCompiler.extensionsClassnames;
+        List<Class> classes = categories;
+        if (classes == null || categoriesNames != names) {
+            classes = new ArrayList<Class>();
+            classes.add(JavaExtensions.class);
+            for (String name : names) {
+                classes.add(Play.classloader.loadClass(name));
+            }
+            categories = classes;
+            categoriesNames = names;
+        }
+        return GroovyCategorySupport.use(classes, new Closure<Object>(script) {
+            public Object doCall() {
+                return script.run();
+            }
+        });
+    }
+
+    static class Transformation extends StaticCompileTransformation {
+
+        @Override
+        protected StaticTypeCheckingVisitor newVisitor(SourceUnit unit, ClassNode node) {
+            StaticTypeCheckingVisitor visitor = super.newVisitor(unit, node);
+            visitor.addTypeCheckingExtension(new Extension(visitor));
+            return visitor;
+        }
+    }
+
+    /**
+     * Falls back to the dynamic dispatch for what is not known at compile time, and
+     * resolves the template extensions as static calls
+     */
+    static class Extension extends AbstractTypeCheckingExtension {
+
+        Extension(StaticTypeCheckingVisitor visitor) {
+            super(visitor);
+        }
+
+        @Override
+        public boolean handleUnresolvedVariableExpression(VariableExpression vexp) {
+            makeDynamic(vexp);
+            return true;
+        }
+
+        @Override
+        public boolean handleUnresolvedProperty(PropertyExpression pexp) {
+            if (!isDynamic(getType(pexp.getObjectExpression()))) {
+                return false;
+            }
+            makeDynamic(pexp);
+            return true;
+        }
+
+        @Override
+        public List<MethodNode> handleMissingMethod(ClassNode receiver, String name, ArgumentListExpression argumentList, ClassNode[] argumentTypes, MethodCall call) {
+            if (Arrays.asList(argumentTypes).contains(null)) {
+                return Collections.emptyList();
+            }
+            // An Object receiver may be anything at runtime, where a more specific extension could apply
+            if (!receiver.equals(ClassHelper.OBJECT_TYPE)) {
+                // The extensions of primitive values take their wrapper type
+                ClassNode type = ClassHelper.getWrapper(receiver);
+                List<MethodNode> extensions = new ArrayList<MethodNode>();
+                for (String extensionsClass : GroovyTemplateCompiler.extensionsClassnames) {
+                    addExtensions(lookupClassNodeFor(extensionsClass), type, name, extensions);
+                }
+                addExtensions(ClassHelper.make(JavaExtensions.class), type, name, extensions);
+                if (!extensions.isEmpty()) {
+                    List<MethodNode> methods = StaticTypeCheckingSupport.chooseBestMethod(type, extensions, argumentTypes);
+                    if (methods.size() == 1) {
+                        return methods;
+                    }
+                }
+            }
+            // Operators on values of unknown types are compiled as method calls, which can't be made dynamic
+            if (argumentTypes.length == 1 && (receiver.equals(ClassHelper.OBJECT_TYPE) || argumentTypes[0].equals(ClassHelper.OBJECT_TYPE))) {
+                List<MethodNode> operators = new ArrayList<MethodNode>();
+                addExtensions(ClassHelper.make(Operators.class), receiver, name, operators);
+                if (!operators.isEmpty()) {
+                    return operators;
+                }
+            }
+            // A missing method of a declared type is a compilation error
+            if (!isDynamic(receiver) && !Arrays.asList(argumentTypes).contains(ClassHelper.OBJECT_TYPE)) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(makeDynamic(call));
+        }
+
+        /**
+         * @return true for the types of the untyped values, and of the template itself
+         *         whose methods are called with untyped arguments (tags...)
+         */
+        boolean isDynamic(ClassNode type) {
+            return type.equals(ClassHelper.OBJECT_TYPE) || type.equals(ClassHelper.CLASS_Type) || type.isDerivedFrom(ClassHelper.make(GroovyTemplate.ExecutableTemplate.class));
+        }
+
+        void addExtensions(ClassNode extensionsClass, ClassNode receiver, String name, List<MethodNode> extensions) {
+            if (extensionsClass == null) {
+                return;
+            }
+            for (MethodNode method : extensionsClass.getMethods(name)) {
+                Parameter[] parameters = method.getParameters();
+                if (!method.isStatic() || !method.isPublic() || parameters.length == 0
+                        || !StaticTypeCheckingSupport.implementsInterfaceOrIsSubclassOf(receiver, parameters[0].getType())) {
+                    continue;
+                }
+                Parameter[] extensionParameters = new Parameter[parameters.length - 1];
+                System.arraycopy(parameters, 1, extensionParameters, 0, extensionParameters.length);
+                ExtensionMethodNode extension = new ExtensionMethodNode(method, name, Modifier.PUBLIC, method.getReturnType(), extensionParameters, method.getExceptions(), null);
+                extension.setDeclaringClass(parameters[0].getType());
+                extensions.add(extension);
+            }
+        }
+    }
+
+    /**
+     * Operators dispatched at runtime
+     */
+    public static class Operators {
+
+        public static Object plus(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "plus", other);
+        }
+
+        public static Object minus(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "minus", other);
+        }
+
+        public static Object multiply(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "multiply", other);
+        }
+
+        public static Object div(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "div", other);
+        }
+
+        public static Object mod(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "mod", other);
+        }
+
+        public static Object power(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "power", other);
+        }
+
+        public static Object intdiv(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "intdiv", other);
+        }
+
+        public static Object leftShift(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "leftShift", other);
+        }
+
+        public static Object rightShift(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "rightShift", other);
+        }
+
+        public static Object and(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "and", other);
+        }
+
+        public static Object or(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "or", other);
+        }
+
+        public static Object xor(Object self, Object other) {
+            return InvokerHelper.invokeMethod(self, "xor", other);
+        }
+
+        public static int compareTo(Object self, Object other) {
+            return ScriptBytecodeAdapter.compareTo(self, other);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package play.templates.types;
 
-import play.templates.SafeFormatter;
+import java.io.IOException;
+import java.io.Writer;
+
+import play.templates.StreamingSafeFormatter;
 import play.templates.TagContext;
 import play.templates.Template;
 import play.utils.HTML;
 
-public class SafeHTMLFormatter implements SafeFormatter {
+public class SafeHTMLFormatter implements StreamingSafeFormatter {
 
     public String format(Template template, Object value) {
         if (value != null) {
@@ -16,4 +19,15 @@ public class SafeHTMLFormatter implements SafeFormatter {
         }
         return "";
     }
+
+    public void format(Template template, Object value, Writer out) throws IOException {
+        if (value != null) {
+            CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+            if (TagContext.hasParentTag("verbatim")) {
+                out.append(text);
+            } else {
+                HTML.htmlEscape(text, out);
+            }
+        }
+    }
 }
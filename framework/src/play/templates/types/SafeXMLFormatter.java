@@ -1,11 +1,14 @@
 package play.templates.types;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import org.apache.commons.lang.StringEscapeUtils;
-import play.templates.SafeFormatter;
+import play.templates.StreamingSafeFormatter;
 import play.templates.TagContext;
 import play.templates.Template;
 
-public class SafeXMLFormatter implements SafeFormatter {
+public class SafeXMLFormatter implements StreamingSafeFormatter {
 
     public String format(Template template, Object value) {
         if (value != null) {
@@ -16,4 +19,14 @@ public class SafeXMLFormatter implements SafeFormatter {
         }
         return "";
     }
+
+    public void format(Template template, Object value, Writer out) throws IOException {
+        if (value != null) {
+            if (TagContext.hasParentTag("verbatim")) {
+                out.write(value.toString());
+            } else {
+                StringEscapeUtils.escapeXml(out, value.toString());
+            }
+        }
+    }
 }
@@ -9,6 +9,7 @@ import org.yaml.snakeyaml.scanner.ScannerException;
 import play.Logger;
 import play.Play;
 import play.classloading.ApplicationClasses;
+import play.classloading.enhancers.PropertiesEnhancer.DirectAccessor;
 import play.data.binding.As;
 import play.data.binding.Binder;
 import play.data.binding.ParamNode;
@@ -272,10 +273,10 @@ public class Fixtures {
                             Model model = (Model) Binder.bind(rootParamNode, "object", cType, cType, annotations);
                             for(Field f : model.getClass().getFields()) {
                                 if (f.getType().isAssignableFrom(Map.class)) {
-                                    f.set(model, objects.get(key).get(f.getName()));
+                                    DirectAccessor.of(f).set(model, objects.get(key).get(f.getName()));
                                 }
                                 if (f.getType().equals(byte[].class)) {
-                                    f.set(model, objects.get(key).get(f.getName()));
+                                    DirectAccessor.of(f).set(model, objects.get(key).get(f.getName()));
                                 }
                             }
                             model._save();
@@ -539,7 +540,7 @@ public class Fixtures {
                             for (Object a : (Object[])o) {
                                 for (Field f : field.relationType.getDeclaredFields()) {
                                     try {
-                                        resolvedYml.put("object." + field.name + "." + f.getName(), new String[] {f.get(a).toString()});
+                                        resolvedYml.put("object." + field.name + "." + f.getName(), new String[] {DirectAccessor.of(f).get(a).toString()});
                                     } catch(Exception e) {
                                         // Ignores
                                     }
@@ -548,7 +549,7 @@ public class Fixtures {
                         } else {
                             for (Field f : field.relationType.getDeclaredFields()) {
                                 try {
-                                    resolvedYml.put("object." + field.name + "." + f.getName(), new String[] {f.get(o).toString()});
+                                    resolvedYml.put("object." + field.name + "." + f.getName(), new String[] {DirectAccessor.of(f).get(o).toString()});
                                 } catch(Exception e) {
                                     // Ignores
                                 }
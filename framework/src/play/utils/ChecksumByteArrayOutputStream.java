@@ -0,0 +1,53 @@
+package play.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * A ByteArrayOutputStream computing the CRC32 checksum of its content as it is written,
+ * so that the checksum of a response body is available without another pass over it.
+ */
+public class ChecksumByteArrayOutputStream extends ByteArrayOutputStream {
+
+    private final CRC32 checksum = new CRC32();
+
+    public ChecksumByteArrayOutputStream() {
+        super();
+    }
+
+    public ChecksumByteArrayOutputStream(int size) {
+        super(size);
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        super.write(b);
+        checksum.update(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        super.write(b, off, len);
+        checksum.update(b, off, len);
+    }
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        checksum.reset();
+    }
+
+    /**
+     * @return The CRC32 checksum of the current content
+     */
+    public synchronized long getChecksum() {
+        return checksum.getValue();
+    }
+
+    /**
+     * @return A weak entity tag for the current content
+     */
+    public synchronized String weakETag() {
+        return "W/\"" + Integer.toHexString(count) + "-" + Long.toHexString(checksum.getValue()) + "\"";
+    }
+}
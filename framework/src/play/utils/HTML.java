@@ -1,7 +1,9 @@
 package play.utils;
 
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
@@ -39,6 +41,17 @@ public class HTML {
      */
     private static final HtmlCharacterEntityReferences characterEntityReferences = new HtmlCharacterEntityReferences();
 
+    /*
+     * The ASCII characters having a reference, to quickly skip the others.
+     */
+    private static final boolean[] asciiEscaped = new boolean[128];
+
+    static {
+        for (char c = 0; c < asciiEscaped.length; c++) {
+            asciiEscaped[c] = characterEntityReferences.convertToReference(c) != null;
+        }
+    }
+
     /**
      * Turn special characters into HTML character references.
      * Handles complete character set defined in HTML 4.01 recommendation.
@@ -55,10 +68,15 @@ public class HTML {
         if (input == null) {
             return null;
         }
-        StringBuffer escaped = new StringBuffer(input.length() * 2);
-        for (int i = 0; i < input.length(); i++) {
+        int first = firstEscaped(input);
+        if (first == input.length()) {
+            return input;
+        }
+        StringBuilder escaped = new StringBuilder(input.length() * 2);
+        escaped.append(input, 0, first);
+        for (int i = first; i < input.length(); i++) {
             char character = input.charAt(i);
-            String reference = characterEntityReferences.convertToReference(character);
+            String reference = reference(character);
             if (reference != null) {
                 escaped.append(reference);
             } else {
@@ -68,6 +86,114 @@ public class HTML {
         return escaped.toString();
     }
 
+    /**
+     * Write the special characters of the input as HTML character references, the other
+     * characters being written by runs, without building an escaped copy of the input.
+     * @param input the (unescaped) input
+     * @param out where to write the escaped input
+     */
+    public static void htmlEscape(CharSequence input, Writer out) throws IOException {
+        htmlEscape(input, 0, input.length(), out);
+    }
+
+    static void htmlEscape(CharSequence input, int from, int to, Writer out) throws IOException {
+        int start = from;
+        for (int i = from; i < to; i++) {
+            char character = input.charAt(i);
+            if (character < 128 && !asciiEscaped[character]) {
+                continue;
+            }
+            String reference = characterEntityReferences.convertToReference(character);
+            if (reference != null) {
+                write(input, start, i, out);
+                out.write(reference);
+                start = i + 1;
+            }
+        }
+        write(input, start, to, out);
+    }
+
+    static int firstEscaped(CharSequence input) {
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char character = input.charAt(i);
+            if (character < 128 ? asciiEscaped[character] : characterEntityReferences.convertToReference(character) != null) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    static String reference(char character) {
+        if (character < 128 && !asciiEscaped[character]) {
+            return null;
+        }
+        return characterEntityReferences.convertToReference(character);
+    }
+
+    static void write(CharSequence input, int start, int end, Writer out) throws IOException {
+        if (start == end) {
+            return;
+        }
+        if (input instanceof String) {
+            out.write((String) input, start, end - start);
+        } else {
+            out.append(input, start, end);
+        }
+    }
+
+    /**
+     * A writer escaping the special characters written to it
+     */
+    public static class EscapingWriter extends FilterWriter {
+
+        public EscapingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            String reference = reference((char) c);
+            if (reference != null) {
+                out.write(reference);
+            } else {
+                out.write(c);
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                String reference = reference(cbuf[i]);
+                if (reference != null) {
+                    out.write(cbuf, start, i - start);
+                    out.write(reference);
+                    start = i + 1;
+                }
+            }
+            out.write(cbuf, start, off + len - start);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            htmlEscape(str, off, off + len, out);
+        }
+
+        @Override
+        public Writer append(CharSequence csq) throws IOException {
+            CharSequence input = csq == null ? "null" : csq;
+            htmlEscape(input, 0, input.length(), out);
+            return this;
+        }
+
+        @Override
+        public Writer append(CharSequence csq, int start, int end) throws IOException {
+            htmlEscape(csq == null ? "null" : csq, start, end, out);
+            return this;
+        }
+    }
+
     public static class HtmlCharacterEntityReferences {
 
         static final char REFERENCE_START = '&';
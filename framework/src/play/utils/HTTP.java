@@ -47,6 +47,33 @@ public class HTTP {
 
     }
 
+    /**
+     * Check an entity tag against the value of an If-None-Match header, using the weak comparison
+     * function (as required for If-None-Match): <code>W/"1"</code> matches <code>"1"</code>.
+     * @param ifNoneMatch The If-None-Match header value, possibly a list of entity tags or *
+     * @param etag The current entity tag
+     * @return true if the entity tag matches
+     */
+    public static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static final Map<String, String> lower2UppercaseHttpHeaders = initLower2UppercaseHttpHeaders();
 
     private static Map<String, String> initLower2UppercaseHttpHeaders() {
@@ -7,6 +7,8 @@ import javassist.bytecode.SourceFileAttribute;
 import play.Play;
 import play.classloading.ApplicationClassloaderState;
 import play.classloading.enhancers.LVEnhancer;
+import play.classloading.enhancers.PropertiesEnhancer.DirectAccessor;
+import play.classloading.enhancers.PropertiesEnhancer.PlayPropertyAccessor;
 import play.data.binding.Binder;
 import play.data.binding.ParamNode;
 import play.data.binding.RootParamNode;
@@ -361,6 +363,7 @@ public class Java {
     /**
      * Field accessor
      * set and get value for a property, using the getter/setter when it exists or direct access otherwise.
+     * The getters and setters generated by the PropertiesEnhancer are not used, as they only access the field.
      * final, native or static properties are safely ignored
      */
     public static class FieldWrapper {
@@ -369,8 +372,8 @@ public class Java {
         private Method setter;
         private Method getter;
         private Field field;
+        private DirectAccessor accessor;
         private boolean writable;
-        private boolean accessible;
 
         private FieldWrapper(Method setter, Method getter) {
             this.setter = setter;
@@ -379,17 +382,23 @@ public class Java {
 
         private FieldWrapper(Field field) {
             this.field = field;
-            accessible = field.isAccessible();
+            accessor = DirectAccessor.of(field);
             writable = ((field.getModifiers() & unwritableModifiers) == 0);
             String property = field.getName();
             try {
                 String setterMethod = "set" + property.substring(0, 1).toUpperCase() + property.substring(1);
                 setter = field.getDeclaringClass().getMethod(setterMethod, field.getType());
+                if (setter.isAnnotationPresent(PlayPropertyAccessor.class)) {
+                    setter = null;
+                }
             } catch (Exception ex) {
             }
             try {
                 String getterMethod = "get" + property.substring(0, 1).toUpperCase() + property.substring(1);
                 getter = field.getDeclaringClass().getMethod(getterMethod);
+                if (getter.isAnnotationPresent(PlayPropertyAccessor.class)) {
+                    getter = null;
+                }
             } catch (Exception ex) {
             }
         }
@@ -409,16 +418,10 @@ public class Java {
                     }
                     setter.invoke(instance, value);
                 } else {
-                    if (!accessible) {
-                        field.setAccessible(true);
-                    }
                     if (play.Logger.isTraceEnabled()) {
                         play.Logger.trace("field.set(%s, %s)", instance, value);
                     }
-                    field.set(instance, value);
-                    if (!accessible) {
-                        field.setAccessible(accessible);
-                    }
+                    accessor.set(instance, value);
                 }
             } catch (Exception ex) {
                 play.Logger.info("ERROR: when setting value for field %s - %s", field, ex);
@@ -430,7 +433,7 @@ public class Java {
                 if (getter != null) {
                     return getter.invoke(instance);
                 } else {
-                    return field.get(instance);
+                    return accessor.get(instance);
                 }
             } catch (Exception ex) {
                 play.Logger.info("ERROR: when getting value for field %s - %s", field, ex);
@@ -0,0 +1,259 @@
+package play.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import play.Logger;
+import play.Play;
+import play.exceptions.UnexpectedException;
+
+/**
+ * Nested timeline of the phases of the application startup: configuration, plugins,
+ * classes, routes, plugins callbacks... A timeline is recorded from {@link #start(String)}
+ * until the end of this phase, and only the phases begun by the same thread are recorded.
+ * <p>
+ * A timeline is started and ended with a <code>try/finally</code> block:
+ * <pre>
+ * Timeline.Phase timeline = Timeline.start("start");
+ * try {
+ *     ...
+ *     Timeline.Phase phase = Timeline.begin("routes");
+ *     Router.detectChanges(ctxPath);
+ *     phase.end();
+ *     ...
+ * } finally {
+ *     timeline.end();
+ * }
+ * </pre>
+ * The phases left running by an exception are ended with the timeline.
+ * Once completed, the timeline is logged and checked against the budgets configured with
+ * <code>play.startup.budget.{phase}={ms}</code>, where the phase is the end of the path of
+ * a phase, such as <code>classes/compile</code>.
+ */
+public class Timeline {
+
+    static final String BUDGET = "play.startup.budget.";
+
+    // The timeline being recorded
+    static Timeline recording;
+    // The last completed timelines, by name
+    static final Map<String, Timeline> completed = new LinkedHashMap<String, Timeline>();
+
+    final Thread thread = Thread.currentThread();
+    final Phase root;
+    Phase current;
+
+    Timeline(String name) {
+        root = new Phase(this, null, name);
+        current = root;
+    }
+
+    /**
+     * Start recording a timeline, or begin a phase of the timeline being recorded
+     * @param name The name of the timeline
+     * @return The root phase of the timeline, to end when the startup is done
+     */
+    public static synchronized Phase start(String name) {
+        if (recording != null) {
+            return begin(name);
+        }
+        recording = new Timeline(name);
+        return recording.root;
+    }
+
+    /**
+     * Begin a phase of the timeline being recorded, if any
+     * @param name The name of the phase
+     * @return The phase, to end when it is done
+     */
+    public static synchronized Phase begin(String name) {
+        Timeline timeline = recording;
+        if (timeline == null || timeline.thread != Thread.currentThread()) {
+            return Phase.NONE;
+        }
+        Phase phase = new Phase(timeline, timeline.current, name);
+        timeline.current.children.add(phase);
+        timeline.current = phase;
+        return phase;
+    }
+
+    /**
+     * @return The last completed timeline of this name, or null
+     */
+    public static synchronized Timeline last(String name) {
+        return completed.get(name);
+    }
+
+    /**
+     * @return The last completed timelines
+     */
+    public static synchronized Collection<Timeline> completed() {
+        return new ArrayList<Timeline>(completed.values());
+    }
+
+    public Phase getRoot() {
+        return root;
+    }
+
+    /**
+     * @return The phases over their budget, as <code>path: time &gt; budget</code>
+     */
+    public List<String> overBudget() {
+        if (Play.configuration == null) {
+            return Collections.emptyList();
+        }
+        List<String> overBudget = new ArrayList<String>();
+        for (Object key : Play.configuration.keySet()) {
+            String property = key.toString();
+            if (property.startsWith(BUDGET)) {
+                long budget = Long.parseLong(Play.configuration.getProperty(property).trim());
+                root.overBudget(root.name, property.substring(BUDGET.length()), budget, overBudget);
+            }
+        }
+        Collections.sort(overBudget);
+        return overBudget;
+    }
+
+    void complete() {
+        boolean first;
+        synchronized (Timeline.class) {
+            recording = null;
+            first = !completed.containsKey(root.name);
+            completed.remove(root.name);
+            completed.put(root.name, this);
+        }
+        // The first startup is logged, the next ones (reloads in DEV) are only traced
+        if (first || Logger.isDebugEnabled()) {
+            StringBuilder summary = new StringBuilder();
+            root.print(summary, "", root.getTime() / 100);
+            if (first) {
+                Logger.info("Startup timeline:%s", summary);
+            } else {
+                Logger.debug("Startup timeline:%s", summary);
+            }
+        }
+        List<String> overBudget = overBudget();
+        for (String phase : overBudget) {
+            Logger.warn("Startup phase over budget, %s", phase);
+        }
+        if (!overBudget.isEmpty() && Boolean.parseBoolean(Play.configuration.getProperty("play.startup.failOverBudget", "false"))) {
+            throw new UnexpectedException("Startup phases over budget: " + overBudget);
+        }
+    }
+
+    /**
+     * A phase of the startup
+     */
+    public static class Phase {
+
+        // Returned when nothing is recorded
+        static final Phase NONE = new Phase(null, null, null);
+
+        final Timeline timeline;
+        final Phase parent;
+        final String name;
+        final long start = System.nanoTime();
+        long end;
+        final List<Phase> children = new ArrayList<Phase>();
+
+        Phase(Timeline timeline, Phase parent, String name) {
+            this.timeline = timeline;
+            this.parent = parent;
+            this.name = name;
+        }
+
+        /**
+         * End this phase, and the phases begun in this phase that are still running
+         */
+        public void end() {
+            if (timeline == null) {
+                return;
+            }
+            synchronized (Timeline.class) {
+                if (end != 0) {
+                    return;
+                }
+                end = System.nanoTime();
+                for (Phase phase = timeline.current; phase != this && phase != null; phase = phase.parent) {
+                    phase.end = end;
+                }
+                timeline.current = parent;
+            }
+            if (parent == null) {
+                timeline.complete();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The time from the start of the timeline, in milliseconds
+         */
+        public long getOffset() {
+            return (start - timeline.root.start) / 1000000;
+        }
+
+        /**
+         * @return The time spent in this phase, in milliseconds
+         */
+        public long getTime() {
+            return ((end == 0 ? System.nanoTime() : end) - start) / 1000000;
+        }
+
+        public List<Phase> getPhases() {
+            return Collections.unmodifiableList(children);
+        }
+
+        public JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("name", name);
+            json.addProperty("offset", getOffset());
+            json.addProperty("time", getTime());
+            if (!children.isEmpty()) {
+                JsonArray phases = new JsonArray();
+                for (Phase phase : children) {
+                    phases.add(phase.toJson());
+                }
+                json.add("phases", phases);
+            }
+            return json;
+        }
+
+        /**
+         * Print the phases taking at least this time
+         */
+        void print(StringBuilder out, String indent, long minimum) {
+            out.append('\n').append(indent).append(name).append(": ").append(getTime()).append("ms");
+            for (Phase phase : children) {
+                if (phase.getTime() >= minimum && phase.getTime() > 0) {
+                    phase.print(out, indent + "  ", minimum);
+                }
+            }
+        }
+
+        void overBudget(String path, String phase, long budget, List<String> overBudget) {
+            if ((path.equals(phase) || path.endsWith("/" + phase)) && getTime() > budget) {
+                overBudget.add(path + ": " + getTime() + "ms > " + budget + "ms");
+            }
+            for (Phase child : children) {
+                child.overBudget(path + "/" + child.name, phase, budget, overBudget);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            print(out, "", 0);
+            return out.substring(1);
+        }
+    }
+}
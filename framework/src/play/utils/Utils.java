@@ -66,6 +66,27 @@ public class Utils {
         return join(values, " ");
     }
 
+    /**
+     * Parse a size in bytes, with an optional unit. Ex: 1024, 16KB, 32MB, 1GB
+     * @param size The size
+     * @return The size in bytes
+     */
+    public static long parseSize(String size) {
+        String value = size.trim().toUpperCase();
+        long unit = 1;
+        if (value.endsWith("KB")) {
+            unit = 1024;
+        } else if (value.endsWith("MB")) {
+            unit = 1024 * 1024;
+        } else if (value.endsWith("GB")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        if (unit > 1) {
+            value = value.substring(0, value.length() - 2).trim();
+        }
+        return Long.parseLong(value) * unit;
+    }
+
     public static String open(String file, Integer line) {
         if (Play.configuration.containsKey("play.editor")) {
             return String.format(Play.configuration.getProperty("play.editor"), Play.getFile(file).getAbsolutePath(), line);
@@ -0,0 +1,361 @@
+package play.vfs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import play.Logger;
+
+/**
+ * Watch files and directories for changes, from a background thread. The changes (modified,
+ * added or deleted files) are collected until they are taken by {@link #takeChanges()}. So
+ * checking that nothing has changed is only a read of a volatile flag.
+ * <p>
+ * The files are watched with the <code>java.nio.file.WatchService</code> of the JVM when it
+ * is available (Java 7) and native. Otherwise the files found in the watched directories
+ * are checked at a fixed interval.
+ */
+public class FileWatcher {
+
+    final List<File> roots;
+    // The last modified time and length of the files, only used by the polling thread
+    Map<File, long[]> states;
+    // The watch service, and the directories of its keys, only used by the watching thread
+    Object service;
+    final Map<Object, File> keys = new HashMap<Object, File>();
+    final Set<File> changes = new LinkedHashSet<File>();
+    volatile boolean changed;
+    volatile Thread thread;
+
+    /**
+     * @param roots The files and directories to watch. They do not need to exist
+     */
+    public FileWatcher(Collection<File> roots) {
+        this(roots, true);
+    }
+
+    FileWatcher(Collection<File> roots, boolean watchService) {
+        this.roots = new ArrayList<File>(roots);
+        if (watchService && WatchServiceApi.INSTANCE != null) {
+            try {
+                service = WatchServiceApi.INSTANCE.newWatchService();
+                for (File root : this.roots) {
+                    // The parent tells when the root itself is added or deleted
+                    register(root.getParentFile(), false);
+                    register(root, true);
+                }
+            } catch (Exception e) {
+                Logger.warn(e, "Cannot watch the files, they are checked at a fixed interval");
+                close();
+                service = null;
+                keys.clear();
+            }
+        }
+        if (service == null) {
+            states = scan();
+        }
+    }
+
+    /**
+     * Start checking the files
+     * @param interval The time between two checks, in milliseconds, when the files are polled
+     */
+    public FileWatcher start(final long interval) {
+        thread = new Thread("play-watcher") {
+            @Override
+            public void run() {
+                while (thread == this) {
+                    try {
+                        if (service != null) {
+                            watch();
+                        } else {
+                            Thread.sleep(interval);
+                            poll();
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Exception e) {
+                        if (thread != this) {
+                            return;
+                        }
+                        Logger.warn(e, "Cannot check the files for changes");
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    public void stop() {
+        Thread running = thread;
+        thread = null;
+        if (running != null) {
+            running.interrupt();
+        }
+        close();
+    }
+
+    void close() {
+        if (service != null) {
+            try {
+                ((Closeable) service).close();
+            } catch (Exception e) {
+                // Nothing more to watch
+            }
+        }
+    }
+
+    /**
+     * @return true if some files have changed since the last {@link #takeChanges()}
+     */
+    public boolean hasChanged() {
+        return changed;
+    }
+
+    /**
+     * @return The changed files since the last call, and forget them
+     */
+    public synchronized Set<File> takeChanges() {
+        changed = false;
+        Set<File> taken = new LinkedHashSet<File>(changes);
+        changes.clear();
+        return taken;
+    }
+
+    /**
+     * Mark these files as changed, until the next {@link #takeChanges()}
+     */
+    public synchronized void changed(Collection<File> modified) {
+        if (!modified.isEmpty()) {
+            changes.addAll(modified);
+            changed = true;
+        }
+    }
+
+    /**
+     * Wait for the next changes reported by the watch service
+     */
+    void watch() throws Exception {
+        WatchServiceApi api = WatchServiceApi.INSTANCE;
+        Object key = api.take(service);
+        File directory = keys.get(key);
+        List<File> modified = new ArrayList<File>();
+        for (Object event : api.pollEvents(key)) {
+            Object kind = api.kind(event);
+            if (kind == api.overflow) {
+                // Some events were lost
+                modified.add(directory);
+                continue;
+            }
+            File file = new File(directory, String.valueOf(api.context(event)));
+            if (!isWatched(file)) {
+                continue;
+            }
+            modified.add(file);
+            if (kind == api.created && file.isDirectory()) {
+                // The files may have been created before the directory is registered
+                register(file, true);
+                modified.addAll(scan(file, new HashMap<File, long[]>()).keySet());
+            }
+        }
+        if (!api.reset(key)) {
+            keys.remove(key);
+        }
+        changed(modified);
+    }
+
+    /**
+     * Register this directory, and its sub-directories for a tree, to the watch service
+     */
+    void register(File directory, boolean tree) throws Exception {
+        if (directory == null || !directory.isDirectory()) {
+            return;
+        }
+        keys.put(WatchServiceApi.INSTANCE.register(service, directory), directory);
+        if (tree) {
+            File[] children = directory.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory() && !child.getName().startsWith(".")) {
+                        register(child, true);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if this file is a root or in a root directory, and not hidden
+     */
+    boolean isWatched(File file) {
+        String path = file.getPath();
+        for (File root : roots) {
+            if (file.equals(root)) {
+                return true;
+            }
+            String prefix = root.getPath() + File.separator;
+            if (path.startsWith(prefix)) {
+                for (String name : path.substring(prefix.length()).split(Pattern.quote(File.separator))) {
+                    if (name.startsWith(".")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check all the files once
+     */
+    void poll() {
+        Map<File, long[]> current = scan();
+        List<File> modified = new ArrayList<File>();
+        for (Map.Entry<File, long[]> state : current.entrySet()) {
+            long[] previous = states.get(state.getKey());
+            if (previous == null || previous[0] != state.getValue()[0] || previous[1] != state.getValue()[1]) {
+                modified.add(state.getKey());
+            }
+        }
+        for (File file : states.keySet()) {
+            if (!current.containsKey(file)) {
+                modified.add(file);
+            }
+        }
+        states = current;
+        changed(modified);
+    }
+
+    Map<File, long[]> scan() {
+        Map<File, long[]> files = new HashMap<File, long[]>();
+        for (File root : roots) {
+            scan(root, files);
+        }
+        return files;
+    }
+
+    Map<File, long[]> scan(File file, Map<File, long[]> files) {
+        if (!file.exists()) {
+            return files;
+        }
+        files.put(file, new long[]{file.lastModified(), file.isDirectory() ? 0 : file.length()});
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (!child.getName().startsWith(".")) {
+                        scan(child, files);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * The <code>java.nio.file</code> watch service, through reflection as the framework still
+     * runs on Java 6. It is not used when the JVM implements it by polling the files.
+     */
+    static class WatchServiceApi {
+
+        static final WatchServiceApi INSTANCE = load();
+
+        Object fileSystem;
+        Object kinds;
+        Object created;
+        Object overflow;
+        Method newWatchService;
+        Method toPath;
+        Method register;
+        Method take;
+        Method pollEvents;
+        Method reset;
+        Method kind;
+        Method context;
+
+        static WatchServiceApi load() {
+            try {
+                WatchServiceApi api = new WatchServiceApi();
+                api.fileSystem = Class.forName("java.nio.file.FileSystems").getMethod("getDefault").invoke(null);
+                api.newWatchService = Class.forName("java.nio.file.FileSystem").getMethod("newWatchService");
+                Class<?> kindClass = Class.forName("java.nio.file.WatchEvent$Kind");
+                Class<?> standardKinds = Class.forName("java.nio.file.StandardWatchEventKinds");
+                api.created = standardKinds.getField("ENTRY_CREATE").get(null);
+                api.overflow = standardKinds.getField("OVERFLOW").get(null);
+                api.kinds = Array.newInstance(kindClass, 3);
+                Array.set(api.kinds, 0, api.created);
+                Array.set(api.kinds, 1, standardKinds.getField("ENTRY_DELETE").get(null));
+                Array.set(api.kinds, 2, standardKinds.getField("ENTRY_MODIFY").get(null));
+                Class<?> watchService = Class.forName("java.nio.file.WatchService");
+                Class<?> watchKey = Class.forName("java.nio.file.WatchKey");
+                Class<?> watchEvent = Class.forName("java.nio.file.WatchEvent");
+                api.toPath = File.class.getMethod("toPath");
+                api.register = Class.forName("java.nio.file.Path").getMethod("register", watchService, api.kinds.getClass());
+                api.take = watchService.getMethod("take");
+                api.pollEvents = watchKey.getMethod("pollEvents");
+                api.reset = watchKey.getMethod("reset");
+                api.kind = watchEvent.getMethod("kind");
+                api.context = watchEvent.getMethod("context");
+                Object service = api.newWatchService();
+                boolean polling = service.getClass().getName().endsWith("PollingWatchService");
+                ((Closeable) service).close();
+                return polling ? null : api;
+            } catch (Exception e) {
+                // Java 6
+                return null;
+            }
+        }
+
+        Object newWatchService() throws Exception {
+            return invoke(newWatchService, fileSystem);
+        }
+
+        Object register(Object service, File directory) throws Exception {
+            return invoke(register, invoke(toPath, directory), service, kinds);
+        }
+
+        Object take(Object service) throws Exception {
+            return invoke(take, service);
+        }
+
+        List<?> pollEvents(Object key) throws Exception {
+            return (List<?>) invoke(pollEvents, key);
+        }
+
+        boolean reset(Object key) throws Exception {
+            return (Boolean) invoke(reset, key);
+        }
+
+        Object kind(Object event) throws Exception {
+            return invoke(kind, event);
+        }
+
+        Object context(Object event) throws Exception {
+            return invoke(context, event);
+        }
+
+        static Object invoke(Method method, Object target, Object... args) throws Exception {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getTargetException() instanceof Exception) {
+                    throw (Exception) e.getTargetException();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package play;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.classloading.ApplicationClasses;
+import play.classloading.ApplicationClassloader;
+import play.exceptions.CompilationException;
+import play.plugins.PluginCollection;
+import play.vfs.FileWatcher;
+import play.vfs.VirtualFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class PlayTest {
+
+    File app;
+
+    @Before
+    public void setUp() throws Exception {
+        app = File.createTempFile("app", "");
+        app.delete();
+        FileUtils.writeStringToFile(new File(app, "app/models/User.java"), "package models; public class User { public String name; }");
+        new PlayBuilder().withConfiguration(new Properties()).build();
+        Play.mode = Play.Mode.DEV;
+        Play.applicationPath = app;
+        Play.javaPath = new ArrayList<VirtualFile>();
+        Play.javaPath.add(VirtualFile.open(new File(app, "app")));
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        Play.pluginCollection = new PluginCollection() {
+            {
+                addPlugin(new CorePlugin());
+            }
+        };
+        Thread.currentThread().setContextClassLoader(Play.classloader);
+        Play.classloader.getAllClasses();
+        Play.watcher = new FileWatcher(Arrays.asList(new File(app, "app")));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Play.watcher.stop();
+        Play.watcher = null;
+        Play.pluginCollection = new PluginCollection();
+        Play.classes = null;
+        Play.classloader = null;
+        Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+        FileUtils.deleteDirectory(app);
+    }
+
+    @Test
+    public void errorsAreDetectedAgainByTheNextRequests() throws Exception {
+        File user = new File(app, "app/models/User.java");
+        FileUtils.writeStringToFile(user, "package models; public class User { public String name }");
+        user.setLastModified(user.lastModified() + 2000);
+        Play.watcher.changed(Arrays.asList(user));
+        for (int request = 0; request < 2; request++) {
+            try {
+                Play.detectChanges();
+                fail("The compilation error should be reported by request " + request);
+            } catch (CompilationException e) {
+                assertThat(Play.watcher.hasChanged()).isTrue();
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package play.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.HashMap;
+
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.PlayBuilder;
+import play.mvc.Http;
+import play.mvc.Scope;
+import play.server.PlayHandler;
+import play.utils.Utils;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ResponseCacheTest {
+
+    @CacheResponse(value = "1h", varyBy = "Accept-Language", tags = "products")
+    public static void cachedAction() {
+    }
+
+    public static void notCachedAction() {
+    }
+
+    @Before
+    public void setUp() {
+        new PlayBuilder().build();
+        // For the HTTP server
+        Play.mode = Play.Mode.PROD;
+        Play.started = true;
+        ResponseCache.clear();
+        ResponseCache.enabled = true;
+        ResponseCache.maxSize = 1024 * 1024;
+    }
+
+    @After
+    public void tearDown() {
+        Play.mode = null;
+        ResponseCache.clear();
+        ResponseCache.enabled = false;
+        Play.started = false;
+    }
+
+    @Test
+    public void storeAndLookup() throws Exception {
+        Http.Request request = request("/products", "fr");
+        request.invokedMethod = getClass().getMethod("cachedAction");
+        ResponseCache.store(request, response("Catalog"));
+
+        ResponseCache.Entry entry = ResponseCache.lookup(request("/products", "fr"));
+        assertThat(entry).isNotNull();
+        assertThat(new String(entry.body, "utf-8")).isEqualTo("Catalog");
+        assertThat(entry.etag).isNotNull();
+        assertThat(entry.headers.get("Cache-Control")).containsOnly("no-cache");
+
+        // Other variation or other URL
+        assertThat(ResponseCache.lookup(request("/products", "en"))).isNull();
+        assertThat(ResponseCache.lookup(request("/other", "fr"))).isNull();
+    }
+
+    @Test
+    public void onlyAnonymousResponsesAreCached() throws Exception {
+        Http.Request request = request("/products", "fr");
+        request.invokedMethod = getClass().getMethod("cachedAction");
+        Http.Response response = response("Hello Bob");
+        response.setCookie(Scope.COOKIE_PREFIX + "_SESSION", "user=bob");
+        ResponseCache.store(request, response);
+        assertThat(ResponseCache.lookup(request("/products", "fr"))).isNull();
+
+        request.invokedMethod = getClass().getMethod("notCachedAction");
+        ResponseCache.store(request, response("Catalog"));
+        assertThat(ResponseCache.lookup(request("/products", "fr"))).isNull();
+
+        request.invokedMethod = getClass().getMethod("cachedAction");
+        ResponseCache.store(request, response("Catalog"));
+        Http.Request withSession = request("/products", "fr");
+        Http.Cookie cookie = new Http.Cookie();
+        cookie.name = Scope.COOKIE_PREFIX + "_SESSION";
+        cookie.value = "signed-user=bob";
+        withSession.cookies.put(cookie.name, cookie);
+        assertThat(ResponseCache.lookup(withSession)).isNull();
+
+        Http.Request withAuthorization = request("/products", "fr");
+        withAuthorization.headers.put("authorization", new Http.Header("authorization", "Basic Ym9iOnNlY3JldA=="));
+        assertThat(ResponseCache.lookup(withAuthorization)).isNull();
+        withAuthorization.invokedMethod = getClass().getMethod("cachedAction");
+        ResponseCache.clear();
+        ResponseCache.store(withAuthorization, response("Hello Bob"));
+        assertThat(ResponseCache.lookup(request("/products", "fr"))).isNull();
+    }
+
+    @Test
+    public void cachedResponsesAreRevalidatedByDate() throws Exception {
+        Http.Request request = request("/products", "fr");
+        request.invokedMethod = getClass().getMethod("cachedAction");
+        ResponseCache.store(request, response("Catalog"));
+        ResponseCache.Entry entry = ResponseCache.lookup(request("/products", "fr"));
+        assertThat(entry.lastModified % 1000).isEqualTo(0L);
+
+        HttpRequest revalidation = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/products");
+        revalidation.setHeader(HttpHeaders.Names.IF_MODIFIED_SINCE, Utils.getHttpDateFormatter().format(new Date(entry.lastModified)));
+        assertThat(PlayHandler.isModified(entry.etag, entry.lastModified, revalidation)).isFalse();
+        revalidation.setHeader(HttpHeaders.Names.IF_MODIFIED_SINCE, Utils.getHttpDateFormatter().format(new Date(entry.lastModified - 1000)));
+        assertThat(PlayHandler.isModified(entry.etag, entry.lastModified, revalidation)).isTrue();
+    }
+
+    @Test
+    public void invalidateByTag() throws Exception {
+        Http.Request request = request("/products/1", "fr");
+        request.invokedMethod = getClass().getMethod("cachedAction");
+        Http.Request.current.set(request);
+        ResponseCache.tag("product:1");
+        ResponseCache.store(request, response("Product 1"));
+
+        request = request("/products/2", "fr");
+        request.invokedMethod = getClass().getMethod("cachedAction");
+        ResponseCache.store(request, response("Product 2"));
+
+        ResponseCache.invalidate("product:1");
+        assertThat(ResponseCache.lookup(request("/products/1", "fr"))).isNull();
+        assertThat(ResponseCache.lookup(request("/products/2", "fr"))).isNotNull();
+
+        ResponseCache.invalidate("products");
+        assertThat(ResponseCache.lookup(request("/products/2", "fr"))).isNull();
+        assertThat(ResponseCache.size()).isEqualTo(0L);
+    }
+
+    @Test
+    public void leastRecentlyUsedResponsesAreEvicted() throws Exception {
+        ResponseCache.maxSize = 2500;
+        for (int i = 0; i < 3; i++) {
+            Http.Request request = request("/page/" + i, "fr");
+            request.invokedMethod = getClass().getMethod("cachedAction");
+            ResponseCache.store(request, response(new String(new char[1000]).replace('\0', 'x')));
+            // Touch the first page
+            ResponseCache.lookup(request("/page/0", "fr"));
+        }
+        assertThat(ResponseCache.lookup(request("/page/0", "fr"))).isNotNull();
+        assertThat(ResponseCache.lookup(request("/page/1", "fr"))).isNull();
+        assertThat(ResponseCache.lookup(request("/page/2", "fr"))).isNotNull();
+        assertThat(ResponseCache.size()).isLessThanOrEqualTo(2500L);
+    }
+
+    @Test
+    public void urlsAreForgottenWithTheirLastResponse() throws Exception {
+        ResponseCache.maxSize = 2500;
+        for (int i = 0; i < 100; i++) {
+            Http.Request request = request("/search?q=" + i, i % 2 == 0 ? "fr" : "en");
+            request.invokedMethod = getClass().getMethod("cachedAction");
+            ResponseCache.store(request, response(new String(new char[1000]).replace('\0', 'x')));
+        }
+        assertThat(ResponseCache.urls()).isEqualTo(2);
+
+        Http.Request request = request("/search?q=99", "fr");
+        request.invokedMethod = getClass().getMethod("cachedAction");
+        ResponseCache.store(request, response("Other language"));
+        assertThat(ResponseCache.urls()).isEqualTo(2);
+        ResponseCache.invalidate("products");
+        assertThat(ResponseCache.urls()).isEqualTo(0);
+        assertThat(ResponseCache.size()).isEqualTo(0L);
+    }
+
+    @Test
+    public void parseSize() {
+        assertThat(ResponseCache.parseSize("1024")).isEqualTo(1024L);
+        assertThat(ResponseCache.parseSize("16KB")).isEqualTo(16L * 1024);
+        assertThat(ResponseCache.parseSize("32 mb")).isEqualTo(32L * 1024 * 1024);
+    }
+
+    private static Http.Request request(String url, String language) {
+        HashMap<String, Http.Header> headers = new HashMap<String, Http.Header>();
+        headers.put("accept-language", new Http.Header("accept-language", language));
+        return Http.Request.createRequest(null, "GET", url, "", null, null, url, null, false, 80, "localhost", false, headers, null);
+    }
+
+    private static Http.Response response(String body) throws Exception {
+        Http.Response response = new Http.Response();
+        response.out = new ByteArrayOutputStream();
+        response.out.write(body.getBytes("utf-8"));
+        response.contentType = "text/html";
+        return response;
+    }
+}
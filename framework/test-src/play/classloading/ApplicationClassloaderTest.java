@@ -0,0 +1,228 @@
+package play.classloading;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.CorePlugin;
+import play.Play;
+import play.PlayBuilder;
+import play.PlayPlugin;
+import play.classloading.ApplicationClasses.ApplicationClass;
+import play.mvc.Controller;
+import play.plugins.PluginCollection;
+import play.vfs.VirtualFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ApplicationClassloaderTest {
+
+    File app;
+    List<PlayPlugin> plugins = new ArrayList<PlayPlugin>();
+
+    @Before
+    public void setUp() throws Exception {
+        app = File.createTempFile("app", "");
+        app.delete();
+        FileUtils.writeStringToFile(new File(app, "app/utils/Marker.java"), "package utils; @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Marker {}");
+        FileUtils.writeStringToFile(new File(app, "app/models/Base.java"), "package models; public class Base { public String name; }");
+        for (int i = 0; i < 10; i++) {
+            FileUtils.writeStringToFile(new File(app, "app/models/M" + i + ".java"), "package models; @utils.Marker public class M" + i + " extends Base { public String label; }");
+            FileUtils.writeStringToFile(new File(app, "app/controllers/C" + i + ".java"), "package controllers; public class C" + i + " extends play.mvc.Controller { public static void index(String q) { models.M" + i + " m = new models.M" + i + "(); m.label = q; render(m); } }");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty("precompile");
+        Play.usePrecompiled = false;
+        Play.pluginCollection = new PluginCollection();
+        Play.classes = null;
+        Play.classloader = null;
+        Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+        FileUtils.deleteDirectory(app);
+    }
+
+    @Test
+    public void classesAreEnhancedInParallel() throws Exception {
+        load("1");
+        byte[][] sequential = enhancedByteCode();
+        Class<?> model = Play.classloader.loadClass("models.M0");
+        assertThat(model.getMethod("getLabel")).isNotNull();
+        assertThat(model.getAnnotations()).hasSize(1);
+
+        load("4");
+        byte[][] parallel = enhancedByteCode();
+        for (int i = 0; i < sequential.length; i++) {
+            assertThat(parallel[i]).isEqualTo(sequential[i]);
+        }
+        assertThat(Play.classloader.loadClass("models.M0").getMethod("getLabel")).isNotNull();
+    }
+
+    @Test
+    public void pluginsEnhanceOneClassAtATimeByDefault() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger enhanced = new AtomicInteger();
+        plugins.add(new PlayPlugin() {
+            @Override
+            public void enhance(ApplicationClass applicationClass) throws Exception {
+                concurrent.set(Math.max(concurrent.get(), running.incrementAndGet()));
+                Thread.sleep(5);
+                enhanced.incrementAndGet();
+                running.decrementAndGet();
+            }
+        });
+        load(null);
+        assertThat(enhanced.get()).isEqualTo(22);
+        assertThat(concurrent.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void precompiledClassesAreLoadedFromTheirIndexWhenNeeded() throws Exception {
+        FileUtils.writeStringToFile(new File(app, "app/models/package-info.java"), "@utils.Marker package models;");
+        System.setProperty("precompile", "yes");
+        load("1", 23);
+        System.clearProperty("precompile");
+        assertThat(new File(app, "precompiled/classes.index")).exists();
+
+        Play.usePrecompiled = true;
+        Play.roots = new ArrayList<VirtualFile>();
+        Play.roots.add(VirtualFile.open(app));
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        Thread.currentThread().setContextClassLoader(Play.classloader);
+        Play.classloader.initClasses();
+        assertThat(Play.classes.all()).hasSize(23);
+        // Only the package-info, for its package annotations
+        assertThat(loaded()).isEqualTo(1);
+
+        Class marker = Play.classloader.loadClass("utils.Marker");
+        Package modelsPackage = Play.classes.getApplicationClass("models.package-info").javaPackage;
+        assertThat(modelsPackage.getName()).isEqualTo("models");
+        assertThat(modelsPackage.getAnnotation(marker)).isNotNull();
+
+        List<Class> models = Play.classloader.getAnnotatedClasses(marker);
+        assertThat(models).hasSize(10);
+        assertThat(models.get(0).getName()).isEqualTo("models.M0");
+        // With Marker and their superclass
+        assertThat(loaded()).isEqualTo(13);
+        assertThat(Play.classloader.getAssignableClasses(Play.classloader.loadClass("models.Base"))).hasSize(10);
+        assertThat(Play.classloader.getAssignableClasses(Controller.class)).hasSize(10);
+        assertThat(loaded()).isEqualTo(23);
+        assertThat(Play.classloader.getClassIgnoreCase("controllers.c1").getName()).isEqualTo("controllers.C1");
+
+        // The same classes as without the index
+        assertThat(Play.classloader.getAllClasses()).hasSize(23);
+        new File(app, "precompiled/classes.index").delete();
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        marker = Play.classloader.loadClass("utils.Marker");
+        assertThat(Play.classloader.getAnnotatedClasses(marker)).hasSize(10);
+        assertThat(Play.classloader.getAssignableClasses(Controller.class)).hasSize(10);
+        assertThat(loaded()).isEqualTo(23);
+    }
+
+    @Test
+    public void classesAreLoadedConcurrently() throws Exception {
+        System.setProperty("precompile", "yes");
+        load("1");
+        System.clearProperty("precompile");
+        Play.usePrecompiled = true;
+        Play.roots = new ArrayList<VirtualFile>();
+        Play.roots.add(VirtualFile.open(app));
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        Play.classloader.initClasses();
+
+        final List<String> names = new ArrayList<String>();
+        for (ApplicationClass applicationClass : Play.classes.all()) {
+            names.add(applicationClass.name);
+        }
+        final Class[][] loaded = new Class[8][];
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[loaded.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        loaded[thread] = new Class[names.size()];
+                        for (int i = 0; i < names.size(); i++) {
+                            // Not all in the same order
+                            int n = (i + thread * 3) % names.size();
+                            loaded[thread][n] = Play.classloader.loadClass(names.get(n));
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(failure[0]).isNull();
+        for (Class[] classes : loaded) {
+            assertThat(classes).isEqualTo(loaded[0]);
+        }
+    }
+
+    int loaded() {
+        int loaded = 0;
+        for (ApplicationClass applicationClass : Play.classes.all()) {
+            if (applicationClass.javaClass != null) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    void load(String threads) {
+        load(threads, 22);
+    }
+
+    void load(String threads, int classes) {
+        Properties configuration = new Properties();
+        if (threads != null) {
+            configuration.setProperty("play.enhancer.threads", threads);
+        }
+        new PlayBuilder().withConfiguration(configuration).build();
+        Play.mode = Play.Mode.DEV;
+        Play.applicationPath = app;
+        Play.javaPath = new ArrayList<VirtualFile>();
+        Play.javaPath.add(VirtualFile.open(new File(app, "app")));
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        Play.pluginCollection = new PluginCollection() {
+            {
+                addPlugin(new CorePlugin());
+                for (PlayPlugin plugin : plugins) {
+                    addPlugin(plugin);
+                }
+            }
+        };
+        Thread.currentThread().setContextClassLoader(Play.classloader);
+        assertThat(Play.classloader.getAllClasses()).hasSize(classes);
+    }
+
+    byte[][] enhancedByteCode() {
+        byte[][] byteCode = new byte[21][];
+        byteCode[0] = Play.classes.getApplicationClass("models.Base").enhancedByteCode;
+        for (int i = 0; i < 10; i++) {
+            ApplicationClass model = Play.classes.getApplicationClass("models.M" + i);
+            assertThat(model.enhanced).isTrue();
+            byteCode[1 + i] = model.enhancedByteCode;
+            byteCode[11 + i] = Play.classes.getApplicationClass("controllers.C" + i).enhancedByteCode;
+        }
+        return byteCode;
+    }
+}
@@ -0,0 +1,108 @@
+package play.classloading;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.PlayBuilder;
+import play.classloading.ApplicationClasses.ApplicationClass;
+import play.exceptions.CompilationException;
+import play.vfs.VirtualFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ApplicationCompilerTest {
+
+    File app;
+
+    @Before
+    public void setUp() throws Exception {
+        app = File.createTempFile("app", "");
+        app.delete();
+        Properties configuration = new Properties();
+        configuration.setProperty("play.compiler.parallel", "true");
+        new PlayBuilder().withConfiguration(configuration).build();
+        Play.applicationPath = app;
+        Play.javaPath = new ArrayList<VirtualFile>();
+        Play.javaPath.add(VirtualFile.open(new File(app, "app")));
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        write("models/Constants", "package models; public class Constants { public static final int MAX = 1; public static int max() { return MAX; } }");
+        write("models/User", "package models; public class User { public int max = Constants.MAX; public static class Address { public int zip = Constants.max(); } }");
+        write("models/Post", "package models; public class Post { public String title; }");
+        for (int i = 0; i < 20; i++) {
+            write("controllers/C" + i, "package controllers; public class C" + i + " { public models.Post post; }");
+        }
+        write("controllers/Posts", "package controllers; public class Posts { public static String title(models.Post post) { return post.title; } }");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Play.classes = null;
+        Play.classloader = null;
+        FileUtils.deleteDirectory(app);
+    }
+
+    @Test
+    public void onlyTheClassesReferencingAChangedStructureAreCompiledAgain() throws Exception {
+        Play.classloader.getAllClasses();
+        assertThat(Play.classes.getApplicationClass("models.User").references).contains("Constants");
+
+        // The body of a method
+        write("models/Constants", "package models; public class Constants { public static final int MAX = 1; public static int max() { return MAX + 0; } }");
+        assertThat(compile("models.Constants")).containsExactly("models.Constants");
+
+        // An inlined constant
+        byte[] user = Play.classes.getApplicationClass("models.User").javaByteCode;
+        write("models/Constants", "package models; public class Constants { public static final int MAX = 2; public static int max() { return MAX; } }");
+        List<String> compiled = compile("models.Constants");
+        assertThat(compiled).hasSize(3).contains("models.Constants", "models.User", "models.User$Address");
+        assertThat(Play.classes.getApplicationClass("models.User").javaByteCode).isNotEqualTo(user);
+
+        // A field used by all the controllers
+        write("models/Post", "package models; public class Post { public String title; public String content; }");
+        assertThat(compile("models.Post")).hasSize(22);
+    }
+
+    @Test
+    public void theClassesReferencingAChangedStructureAreChecked() throws Exception {
+        Play.classloader.getAllClasses();
+        write("models/Post", "package models; public class Post { public String name; }");
+        try {
+            compile("models.Post");
+            fail("Posts uses the removed field");
+        } catch (CompilationException e) {
+            assertThat(e.getSourceFile()).endsWith("Posts.java");
+        }
+    }
+
+    void write(String name, String source) throws Exception {
+        File file = new File(app, "app/" + name + ".java");
+        FileUtils.writeStringToFile(file, source);
+        file.setLastModified(System.currentTimeMillis() + 1000);
+    }
+
+    List<String> compile(String name) {
+        ApplicationClass applicationClass = Play.classes.getApplicationClass(name);
+        Map<String, byte[]> previousByteCodes = new HashMap<String, byte[]>();
+        previousByteCodes.put(name, applicationClass.javaByteCode);
+        applicationClass.refresh();
+        List<String> names = new ArrayList<String>();
+        for (ApplicationClass compiled : Play.classes.compiler.compile(Arrays.asList(applicationClass), previousByteCodes)) {
+            assertThat(compiled.javaByteCode).isNotNull();
+            names.add(compiled.name);
+        }
+        return names;
+    }
+}
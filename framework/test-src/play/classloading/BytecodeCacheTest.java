@@ -0,0 +1,240 @@
+package play.classloading;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.CorePlugin;
+import play.Play;
+import play.PlayBuilder;
+import play.classloading.ApplicationClasses.ApplicationClass;
+import play.plugins.PluginCollection;
+import play.vfs.VirtualFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class BytecodeCacheTest {
+
+    File archive;
+
+    @Before
+    public void setUp() throws Exception {
+        new PlayBuilder().build();
+        Play.mode = Play.Mode.DEV;
+        Play.tmpDir = File.createTempFile("tmp", "");
+        Play.tmpDir.delete();
+        Play.initialized = true;
+        archive = new File(Play.tmpDir, "bytecode/DEV.cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reopen();
+        Play.pluginCollection = new PluginCollection();
+        Play.initialized = false;
+        FileUtils.deleteDirectory(Play.tmpDir);
+        Play.tmpDir = null;
+    }
+
+    @Test
+    public void bytecodeIsValidatedAgainstTheSource() {
+        BytecodeCache.cacheBytecode(new byte[] {1, 2, 3}, "models.User", "class User {}");
+        BytecodeCache.cacheBytecode(new byte[] {4}, "/app/views/main.html", "<html/>");
+        assertThat(BytecodeCache.getBytecode("models.User", "class User {}")).isEqualTo(new byte[] {1, 2, 3});
+        assertThat(BytecodeCache.getBytecode("models.User", "class User { int age; }")).isNull();
+        assertThat(BytecodeCache.getBytecode("models.Missing", "")).isNull();
+        assertThat(new File(Play.tmpDir, "classes/models/User.class")).exists();
+
+        // Read back from the mapped archive
+        reopen();
+        assertThat(BytecodeCache.getBytecode("models.User", "class User {}")).isEqualTo(new byte[] {1, 2, 3});
+        assertThat(BytecodeCache.getBytecode("/app/views/main.html", "<html/>")).isEqualTo(new byte[] {4});
+
+        BytecodeCache.deleteBytecode("models.User");
+        assertThat(BytecodeCache.getBytecode("models.User", "class User {}")).isNull();
+        reopen();
+        assertThat(BytecodeCache.getBytecode("models.User", "class User {}")).isNull();
+        assertThat(BytecodeCache.getBytecode("/app/views/main.html", "<html/>")).isEqualTo(new byte[] {4});
+    }
+
+    @Test
+    public void interruptedRecordsAreIgnored() throws Exception {
+        BytecodeCache.cacheBytecode(new byte[] {1}, "A", "a");
+        reopen();
+        // A record of 100 bytes, interrupted after its length
+        RandomAccessFile file = new RandomAccessFile(archive, "rw");
+        file.seek(file.length());
+        file.writeInt(100);
+        file.write(new byte[] {0, 1, 'B'});
+        file.close();
+
+        assertThat(BytecodeCache.getBytecode("A", "a")).isEqualTo(new byte[] {1});
+        BytecodeCache.cacheBytecode(new byte[] {2}, "B", "b");
+        reopen();
+        assertThat(BytecodeCache.getBytecode("A", "a")).isEqualTo(new byte[] {1});
+        assertThat(BytecodeCache.getBytecode("B", "b")).isEqualTo(new byte[] {2});
+    }
+
+    @Test
+    public void recordsAppendedByAnotherProcessAreKept() throws Exception {
+        BytecodeCache.cacheBytecode(new byte[] {1}, "A", "a");
+        // Another process sharing the archive
+        BytecodeCache.Archive other = new BytecodeCache.Archive(archive);
+        other.append("B", BytecodeCache.digest("b"), new byte[] {2});
+        other.close();
+
+        BytecodeCache.cacheBytecode(new byte[] {3}, "C", "c");
+        reopen();
+        assertThat(BytecodeCache.getBytecode("A", "a")).isEqualTo(new byte[] {1});
+        assertThat(BytecodeCache.getBytecode("B", "b")).isEqualTo(new byte[] {2});
+        assertThat(BytecodeCache.getBytecode("C", "c")).isEqualTo(new byte[] {3});
+    }
+
+    @Test
+    public void archiveIsCompactedAtStartup() {
+        for (int i = 0; i < 10; i++) {
+            BytecodeCache.cacheBytecode(new byte[100], "A", "a" + i);
+        }
+        long length = archive.length();
+        reopen();
+        BytecodeCache.getBytecode("A", "a9");
+        assertThat(archive.length()).isLessThan(length / 5);
+        assertThat(BytecodeCache.getBytecode("A", "a9")).isEqualTo(new byte[100]);
+        assertThat(BytecodeCache.getBytecode("A", "a8")).isNull();
+    }
+
+    @Test
+    public void archiveCompactedByAnotherProcessIsReopened() throws Exception {
+        BytecodeCache.cacheBytecode(new byte[] {1}, "A", "a");
+        // Another process sharing the archive, and compacting it
+        BytecodeCache.Archive other = new BytecodeCache.Archive(archive);
+        for (int i = 0; i < 10; i++) {
+            other.append("B", BytecodeCache.digest("b" + i), new byte[100]);
+        }
+        long length = archive.length();
+        other.compact();
+        other.close();
+        long compacted = archive.length();
+        assertThat(compacted).isLessThan(length / 5);
+
+        BytecodeCache.cacheBytecode(new byte[] {3}, "C", "c");
+        assertThat(archive.length()).isGreaterThan(compacted);
+        reopen();
+        assertThat(BytecodeCache.getBytecode("A", "a")).isEqualTo(new byte[] {1});
+        assertThat(BytecodeCache.getBytecode("B", "b9")).isEqualTo(new byte[100]);
+        assertThat(BytecodeCache.getBytecode("C", "c")).isEqualTo(new byte[] {3});
+    }
+
+    @Test
+    public void previousCacheIsDeleted() throws Exception {
+        File previous = new File(Play.tmpDir, "bytecode/DEV/models.User");
+        FileUtils.writeStringToFile(previous, "bytecode");
+        assertThat(BytecodeCache.getBytecode("models.User", "class User {}")).isNull();
+        assertThat(previous.getParentFile()).doesNotExist();
+        assertThat(archive.getParentFile()).exists();
+    }
+
+    @Test
+    public void unknownArchivesAreReplaced() throws Exception {
+        archive.getParentFile().mkdirs();
+        FileUtils.writeStringToFile(archive, "garbage");
+        assertThat(BytecodeCache.getBytecode("A", "a")).isNull();
+        BytecodeCache.cacheBytecode(new byte[] {1}, "A", "a");
+        reopen();
+        assertThat(BytecodeCache.getBytecode("A", "a")).isEqualTo(new byte[] {1});
+    }
+
+    @Test
+    public void enhancedBytecodeIsKeyedByTheCompiledBytecodeAndThePlugins() throws Exception {
+        byte[] compiled = BytecodeCache.code(getClass());
+        BytecodeCache.cacheEnhancedBytecode(new byte[] {1}, "models.User", compiled);
+        reopen();
+        assertThat(BytecodeCache.getEnhancedBytecode("models.User", compiled)).isEqualTo(new byte[] {1});
+        assertThat(BytecodeCache.getEnhancedBytecode("models.User", BytecodeCache.code(BytecodeCache.class))).isNull();
+        assertThat(BytecodeCache.getEnhancedBytecode("models.Other", compiled)).isNull();
+        // The enhanced bytecode doesn't replace the bytecode of the source
+        assertThat(BytecodeCache.getBytecode("models.User", "class User {}")).isNull();
+
+        Play.pluginCollection = new PluginCollection() {
+            {
+                addPlugin(new CorePlugin());
+            }
+        };
+        assertThat(BytecodeCache.getEnhancedBytecode("models.User", compiled)).isNull();
+    }
+
+    @Test
+    public void pluginsAreFingerprintedByTheirJarOrClassDirectory() throws Exception {
+        File classes = new File(Play.tmpDir, "module/classes");
+        FileUtils.writeStringToFile(new File(classes, "plugin/Enhancer.class"), "v1");
+        byte[] directory = BytecodeCache.codeSource(classes);
+        BytecodeCache.codeSources.clear();
+        assertThat(BytecodeCache.codeSource(classes)).isEqualTo(directory);
+        BytecodeCache.codeSources.clear();
+        FileUtils.writeStringToFile(new File(classes, "plugin/Enhancer.class"), "v2.0");
+        assertThat(BytecodeCache.codeSource(classes)).isNotEqualTo(directory);
+
+        File jar = new File(Play.tmpDir, "module/lib/plugin.jar");
+        FileUtils.writeStringToFile(jar, "v1");
+        byte[] content = BytecodeCache.codeSource(jar);
+        BytecodeCache.codeSources.clear();
+        FileUtils.writeStringToFile(jar, "v2");
+        assertThat(BytecodeCache.codeSource(jar)).isNotEqualTo(content);
+
+        // The framework classes are loaded from a directory or a jar
+        assertThat(BytecodeCache.codeSource(CorePlugin.class)).isNotEqualTo(BytecodeCache.code(CorePlugin.class));
+    }
+
+    @Test
+    public void enhancedBytecodeIsKeyedByTheReferencedApplicationClasses() throws Exception {
+        File javaPath = new File(Play.tmpDir, "app");
+        FileUtils.writeStringToFile(new File(javaPath, "play/classloading/BytecodeCacheTest.java"), "");
+        Play.javaPath = new ArrayList<VirtualFile>(Arrays.asList(VirtualFile.open(javaPath)));
+        Play.classes = new ApplicationClasses();
+        ApplicationClass referenced = new ApplicationClass(Referenced.class.getName());
+        referenced.javaByteCode = BytecodeCache.code(Referenced.class);
+        Play.classes.add(referenced);
+        ApplicationClass unrelated = new ApplicationClass(Unrelated.class.getName());
+        unrelated.javaByteCode = BytecodeCache.code(Unrelated.class);
+        Play.classes.add(unrelated);
+        try {
+            byte[] compiled = BytecodeCache.code(Referencing.class);
+            byte[] digest = BytecodeCache.enhancedDigest(compiled);
+            unrelated.javaByteCode = new byte[0];
+            assertThat(BytecodeCache.enhancedDigest(compiled)).isEqualTo(digest);
+            // Such as a public field becoming private
+            referenced.javaByteCode = BytecodeCache.code(Unrelated.class);
+            assertThat(BytecodeCache.enhancedDigest(compiled)).isNotEqualTo(digest);
+        } finally {
+            Play.classes = null;
+            Play.javaPath = null;
+        }
+    }
+
+    static class Referenced {
+        public String name;
+    }
+
+    static class Referencing {
+        String name(Referenced referenced) {
+            return referenced.name;
+        }
+    }
+
+    static class Unrelated {
+        private String name;
+    }
+
+    static void reopen() {
+        if (BytecodeCache.archive != null) {
+            BytecodeCache.archive.close();
+            BytecodeCache.archive = null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package play.classloading;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.FileUtils;
+
+import play.CorePlugin;
+import play.Play;
+import play.PlayBuilder;
+import play.plugins.PluginCollection;
+import play.vfs.VirtualFile;
+
+/**
+ * Benchmark of the burst of class loading of the first requests, when a precompiled
+ * application loads its classes when they are first needed: many threads load the
+ * same application classes at once, in different orders.
+ * <p>
+ * The parallel capable classloader is compared with a classloader locking all the loads,
+ * as the classloader used to.
+ *
+ * <p>Not a unit test: run it with <code>java -cp ... play.classloading.ClassloaderContentionBenchmark [threads] [classes]</code>.
+ */
+public class ClassloaderContentionBenchmark {
+
+    static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int classes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        File app = File.createTempFile("app", "");
+        app.delete();
+        try {
+            List<String> names = precompile(app, classes);
+            for (int round = 0; round < ROUNDS; round++) {
+                run("synchronized loader", new ApplicationClassloader() {
+                    @Override
+                    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                        return super.loadClass(name, resolve);
+                    }
+                }, names, threads);
+                run("parallel capable loader", new ApplicationClassloader(), names, threads);
+            }
+        } finally {
+            System.clearProperty("precompile");
+            FileUtils.deleteDirectory(app);
+        }
+    }
+
+    /**
+     * Precompile an application of models and controllers using them
+     */
+    static List<String> precompile(File app, int classes) throws Exception {
+        List<String> names = new ArrayList<String>();
+        FileUtils.writeStringToFile(new File(app, "app/models/Base.java"), "package models; public class Base { public String name; }");
+        names.add("models.Base");
+        for (int i = 0; i < classes / 2; i++) {
+            FileUtils.writeStringToFile(new File(app, "app/models/M" + i + ".java"), "package models; public class M" + i + " extends Base { public String label; public int count; }");
+            FileUtils.writeStringToFile(new File(app, "app/controllers/C" + i + ".java"), "package controllers; public class C" + i + " extends play.mvc.Controller { public static void index(String q) { models.M" + i + " m = new models.M" + i + "(); m.label = q; render(m); } public static void show(Long id) { render(id); } }");
+            names.add("models.M" + i);
+            names.add("controllers.C" + i);
+        }
+        new PlayBuilder().withConfiguration(new Properties()).build();
+        Play.applicationPath = app;
+        Play.javaPath = new ArrayList<VirtualFile>();
+        Play.javaPath.add(VirtualFile.open(new File(app, "app")));
+        Play.roots = new ArrayList<VirtualFile>();
+        Play.roots.add(VirtualFile.open(app));
+        Play.pluginCollection = new PluginCollection() {
+            {
+                addPlugin(new CorePlugin());
+            }
+        };
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        System.setProperty("precompile", "yes");
+        Play.classloader.getAllClasses();
+        System.clearProperty("precompile");
+        Play.usePrecompiled = true;
+        return names;
+    }
+
+    static void run(String name, final ApplicationClassloader classloader, final List<String> names, int threads) throws Exception {
+        Play.classes = new ApplicationClasses();
+        Play.classloader = classloader;
+        classloader.initClasses();
+
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads; t++) {
+            final List<String> order = new ArrayList<String>(names);
+            Collections.shuffle(order, new Random(t));
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        ready.countDown();
+                        go.await();
+                        // Each "request" loads all the classes, and then finds them again
+                        for (int i = 0; i < 2; i++) {
+                            for (String name : order) {
+                                classloader.loadClass(name);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        if (failure[0] != null) {
+            throw new RuntimeException(failure[0]);
+        }
+        System.out.println(String.format("%-25s %d threads, %d classes: %dms", name, threads, names.size(), elapsed / 1000000));
+    }
+}
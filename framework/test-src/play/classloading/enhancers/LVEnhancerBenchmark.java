@@ -0,0 +1,80 @@
+package play.classloading.enhancers;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+
+import play.CorePlugin;
+import play.Play;
+import play.PlayBuilder;
+import play.classloading.ApplicationClasses;
+import play.classloading.ApplicationClassloader;
+import play.plugins.PluginCollection;
+import play.vfs.VirtualFile;
+
+/**
+ * Micro benchmark of the application code enhanced by LVEnhancer, with the names of the
+ * arguments traced at runtime (<code>play.lvEnhancer.mode=tracing</code>) or found when the
+ * classes are enhanced (<code>play.lvEnhancer.mode=static</code>).
+ *
+ * <p>Not a unit test: run it with <code>java -cp ... play.classloading.enhancers.LVEnhancerBenchmark</code>.
+ */
+public class LVEnhancerBenchmark {
+
+    static final int WARMUP = 200000;
+    static final int ITERATIONS = 2000000;
+
+    public static void main(String[] args) throws Exception {
+        File app = File.createTempFile("app", "");
+        app.delete();
+        try {
+            // A service called by the actions: 4 method calls per call
+            FileUtils.writeStringToFile(new File(app, "app/services/Prices.java"),
+                    "package services; public class Prices {"
+                    + " public static long total(int quantity, long price) { long total = price(quantity, price); return total + tax(total); }"
+                    + " static long price(int quantity, long price) { return quantity * price - discount(quantity); }"
+                    + " static long discount(int quantity) { return quantity > 10 ? 5 : 0; }"
+                    + " static long tax(long amount) { return amount / 5; }"
+                    + "}");
+            for (int round = 0; round < 3; round++) {
+                run(app, "tracing");
+                run(app, "static");
+            }
+        } finally {
+            FileUtils.deleteDirectory(app);
+        }
+    }
+
+    static void run(File app, String mode) throws Exception {
+        Properties configuration = new Properties();
+        configuration.setProperty("play.lvEnhancer.mode", mode);
+        configuration.setProperty("play.bytecodeCache", "false");
+        new PlayBuilder().withConfiguration(configuration).build();
+        Play.applicationPath = app;
+        Play.javaPath = new ArrayList<VirtualFile>();
+        Play.javaPath.add(VirtualFile.open(new File(app, "app")));
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        Play.pluginCollection = new PluginCollection() {
+            {
+                addPlugin(new CorePlugin());
+            }
+        };
+        Play.classloader.getAllClasses();
+        Method total = Play.classloader.loadClass("services.Prices").getMethod("total", int.class, long.class);
+
+        long sum = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sum += (Long) total.invoke(null, i & 15, 100L);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sum += (Long) total.invoke(null, i & 15, 100L);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-8s %6.1f ns/call (%d)", mode, (double) elapsed / ITERATIONS, sum));
+    }
+}
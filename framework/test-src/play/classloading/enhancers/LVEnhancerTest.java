@@ -0,0 +1,114 @@
+package play.classloading.enhancers;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.CorePlugin;
+import play.Play;
+import play.PlayBuilder;
+import play.classloading.ApplicationClasses;
+import play.classloading.ApplicationClassloader;
+import play.classloading.enhancers.LVEnhancer.LVEnhancerRuntime;
+import play.data.validation.Validation;
+import play.data.validation.ValidationPlugin;
+import play.exceptions.UnexpectedException;
+import play.plugins.PluginCollection;
+import play.utils.Java;
+import play.vfs.VirtualFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class LVEnhancerTest {
+
+    File app;
+
+    @Before
+    public void setUp() throws Exception {
+        app = File.createTempFile("app", "");
+        app.delete();
+        FileUtils.writeStringToFile(new File(app, "app/controllers/Users.java"), "package controllers; public class Users extends play.mvc.Controller { public static void show(Long id) { String name = \"Guillaume\"; Integer count = utils.Counter.count(id); utils.Names.render(name, count); } }");
+        FileUtils.writeStringToFile(new File(app, "app/controllers/Accounts.java"), "package controllers; public class Accounts extends play.mvc.Controller { public static void signup(String password, String confirmation) { validation.equals(password, confirmation); validation.required(\"email\", null); } }");
+        FileUtils.writeStringToFile(new File(app, "app/controllers/Sockets.java"), "package controllers; public class Sockets extends play.mvc.WebSocketController { public static void chat(String room) { } }");
+        FileUtils.writeStringToFile(new File(app, "app/utils/Names.java"), "package utils; public class Names { public static String[] read; public static void render(Object... args) { read = play.classloading.enhancers.LVEnhancer.LVEnhancerRuntime.getParamNames().varargs; } }");
+        FileUtils.writeStringToFile(new File(app, "app/utils/Counter.java"), "package utils; public class Counter { public static Integer count(Long id) { return twice(id.intValue()); } static int twice(int i) { return 2 * i; } }");
+        Properties configuration = new Properties();
+        configuration.setProperty("play.lvEnhancer.mode", "static");
+        new PlayBuilder().withConfiguration(configuration).build();
+        Play.applicationPath = app;
+        Play.javaPath = new ArrayList<VirtualFile>();
+        Play.javaPath.add(VirtualFile.open(new File(app, "app")));
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        Play.pluginCollection = new PluginCollection() {
+            {
+                addPlugin(new CorePlugin());
+            }
+        };
+        Thread.currentThread().setContextClassLoader(Play.classloader);
+        Play.classloader.getAllClasses();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Play.pluginCollection = new PluginCollection();
+        Play.classes = null;
+        Play.classloader = null;
+        Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+        FileUtils.deleteDirectory(app);
+    }
+
+    @Test
+    public void argumentsAreNamedWhenTheClassesAreEnhanced() throws Exception {
+        Class<?> users = Play.classloader.loadClass("controllers.Users");
+        assertThat(Java.parameterNames(users.getMethod("show", Long.class))).containsOnly("id");
+
+        ControllersEnhancer.ControllerInstrumentation.initActionCall();
+        users.getMethod("show", Long.class).invoke(null, 2L);
+        assertThat((String[]) Play.classloader.loadClass("utils.Names").getField("read").get(null)).containsOnly("name", "count");
+        assertThat(LVEnhancerRuntime.getCurrentMethodParams()).isEmpty();
+        // The names were only for that call
+        try {
+            LVEnhancerRuntime.getParamNames();
+            fail("The names of the previous call should not be reused");
+        } catch (UnexpectedException e) {
+            assertThat(e.getMessage()).contains("empty methodParams!");
+        }
+
+        // Not instrumented
+        Class<?> counter = Play.classloader.loadClass("utils.Counter");
+        for (Field field : counter.getDeclaredFields()) {
+            assertThat(field.getName().startsWith("$")).isFalse();
+        }
+    }
+
+    @Test
+    public void validationChecksNameTheirArguments() throws Exception {
+        new ValidationPlugin().beforeInvocation();
+        Class<?> accounts = Play.classloader.loadClass("controllers.Accounts");
+        ControllersEnhancer.ControllerInstrumentation.initActionCall();
+        accounts.getMethod("signup", String.class, String.class).invoke(null, "secret", "typo");
+        assertThat(Validation.errors("password")).hasSize(1);
+        assertThat(Validation.errors("email")).hasSize(1);
+        // The checks given a key leave no names behind
+        try {
+            LVEnhancerRuntime.getParamNames();
+            fail("No names should be left for another call");
+        } catch (UnexpectedException e) {
+            assertThat(e.getMessage()).contains("empty methodParams!");
+        }
+    }
+
+    @Test
+    public void parametersOfWebSocketActionsAreNamed() throws Exception {
+        Class<?> sockets = Play.classloader.loadClass("controllers.Sockets");
+        assertThat(Java.parameterNames(sockets.getMethod("chat", String.class))).containsOnly("room");
+    }
+}
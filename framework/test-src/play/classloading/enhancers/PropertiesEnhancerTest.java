@@ -0,0 +1,124 @@
+package play.classloading.enhancers;
+
+import java.awt.Point;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.CorePlugin;
+import play.Play;
+import play.PlayBuilder;
+import play.classloading.ApplicationClasses;
+import play.classloading.ApplicationClassloader;
+import play.classloading.enhancers.PropertiesEnhancer.DirectAccess;
+import play.classloading.enhancers.PropertiesEnhancer.DirectAccessor;
+import play.data.binding.Unbinder;
+import play.plugins.PluginCollection;
+import play.vfs.VirtualFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PropertiesEnhancerTest {
+
+    File app;
+
+    @Before
+    public void setUp() throws Exception {
+        app = File.createTempFile("app", "");
+        app.delete();
+        FileUtils.writeStringToFile(new File(app, "app/models/Base.java"), "package models; public class Base { public String name; private int count; public final String kind = \"base\"; public int getCount() { return count; } }");
+        FileUtils.writeStringToFile(new File(app, "app/models/User.java"), "package models; public class User extends Base { public String email; public long age; private String[] tags; public String[] getTags() { return tags; } }");
+        FileUtils.writeStringToFile(new File(app, "app/models/Admin.java"), "package models; public class Admin extends User { }");
+        new PlayBuilder().withConfiguration(new Properties()).build();
+        Play.applicationPath = app;
+        Play.javaPath = new ArrayList<VirtualFile>();
+        Play.javaPath.add(VirtualFile.open(new File(app, "app")));
+        Play.classes = new ApplicationClasses();
+        Play.classloader = new ApplicationClassloader();
+        Play.pluginCollection = new PluginCollection() {
+            {
+                addPlugin(new CorePlugin());
+            }
+        };
+        Thread.currentThread().setContextClassLoader(Play.classloader);
+        Play.classloader.getAllClasses();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Play.pluginCollection = new PluginCollection();
+        Play.classes = null;
+        Play.classloader = null;
+        Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+        FileUtils.deleteDirectory(app);
+    }
+
+    @Test
+    public void fieldsAreAccessedWithoutReflection() throws Exception {
+        Class<?> base = Play.classloader.loadClass("models.Base");
+        Class<?> user = Play.classloader.loadClass("models.User");
+        Class<?> admin = Play.classloader.loadClass("models.Admin");
+        assertThat(DirectAccess.class.isAssignableFrom(base)).isTrue();
+
+        Object instance = admin.newInstance();
+        DirectAccessor name = DirectAccessor.of(base.getField("name"));
+        DirectAccessor count = DirectAccessor.of(base.getDeclaredField("count"));
+        DirectAccessor kind = DirectAccessor.of(base.getField("kind"));
+        DirectAccessor age = DirectAccessor.of(user.getField("age"));
+        DirectAccessor tags = DirectAccessor.of(user.getDeclaredField("tags"));
+        for (DirectAccessor accessor : Arrays.asList(name, count, kind, age, tags)) {
+            assertThat(accessor.isDirect(instance)).isTrue();
+        }
+
+        name.set(instance, "Guillaume");
+        count.set(instance, 3);
+        age.set(instance, 42L);
+        tags.set(instance, new String[] {"a", "b"});
+        assertThat(name.get(instance)).isEqualTo("Guillaume");
+        assertThat(base.getMethod("getCount").invoke(instance)).isEqualTo(3);
+        assertThat(age.get(instance)).isEqualTo(42L);
+        assertThat((String[]) user.getMethod("getTags").invoke(instance)).containsOnly("a", "b");
+        assertThat(kind.get(instance)).isEqualTo("base");
+
+        Map<String, Object> result = new HashMap<String, Object>();
+        Unbinder.unBind(result, user.newInstance(), "user", null);
+        assertThat(result.get("user.email")).isNull();
+        assertThat(result.get("user.age")).isEqualTo("0");
+    }
+
+    @Test
+    public void enhancedSubclassesAreCachedByClass() throws Exception {
+        Class<?> base = Play.classloader.loadClass("models.Base");
+        Class<?> user = Play.classloader.loadClass("models.User");
+        Class<?> admin = Play.classloader.loadClass("models.Admin");
+        DirectAccessor name = DirectAccessor.of(base.getField("name"));
+        for (int i = 0; i < 3; i++) {
+            for (Class<?> clazz : Arrays.asList(user, admin)) {
+                Object instance = clazz.newInstance();
+                assertThat(name.isDirect(instance)).isTrue();
+                name.set(instance, clazz.getSimpleName());
+                assertThat(name.get(instance)).isEqualTo(clazz.getSimpleName());
+            }
+        }
+        assertThat(DirectAccessor.enhanced).hasSize(2);
+        assertThat(DirectAccessor.enhanced.get(admin)).isTrue();
+    }
+
+    @Test
+    public void otherClassesAreAccessedByReflection() throws Exception {
+        DirectAccessor x = DirectAccessor.of(Point.class.getField("x"));
+        Point point = new Point(1, 2);
+        assertThat(x.isDirect(point)).isFalse();
+        x.set(point, 3);
+        assertThat(x.get(point)).isEqualTo(3);
+        assertThat(point.x).isEqualTo(3);
+    }
+}
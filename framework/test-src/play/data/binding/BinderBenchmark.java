@@ -0,0 +1,93 @@
+package play.data.binding;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import play.PlayBuilder;
+
+/**
+ * Micro benchmark of the binding of a large form post: a bean made of 10 nested
+ * beans of 20 properties each.
+ *
+ * <p>Not a unit test: run it with <code>java -cp ... play.data.binding.BinderBenchmark</code>.
+ */
+public class BinderBenchmark {
+
+    static final int WARMUP = 5000;
+    static final int ITERATIONS = 20000;
+
+    public enum Level {
+        LOW, MEDIUM, HIGH
+    }
+
+    public static class Section {
+        public String s1, s2, s3, s4;
+        public int i1, i2, i3;
+        public Integer n1, n2;
+        public long l1, l2;
+        public double d1, d2;
+        public boolean b1, b2;
+        public BigDecimal amount;
+        public Level level;
+        public List<String> tags;
+        private String label;
+        private int count;
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+
+    public static class Form {
+        public Section a, b, c, d, e, f, g, h, i, j;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new PlayBuilder().build();
+
+        Map<String, String[]> params = new HashMap<String, String[]>();
+        for (String section : new String[] {"a", "b", "c", "d", "e", "f", "g", "h", "i", "j"}) {
+            String prefix = "form." + section + ".";
+            for (int i = 1; i <= 4; i++) {
+                params.put(prefix + "s" + i, new String[] {"value " + i});
+            }
+            for (int i = 1; i <= 3; i++) {
+                params.put(prefix + "i" + i, new String[] {"" + i});
+            }
+            params.put(prefix + "n1", new String[] {"42"});
+            params.put(prefix + "n2", new String[] {""});
+            params.put(prefix + "l1", new String[] {"1234567890123"});
+            params.put(prefix + "l2", new String[] {"7"});
+            params.put(prefix + "d1", new String[] {"3.14"});
+            params.put(prefix + "d2", new String[] {"2.5"});
+            params.put(prefix + "b1", new String[] {"true"});
+            params.put(prefix + "b2", new String[] {"on"});
+            params.put(prefix + "amount", new String[] {"19.99"});
+            params.put(prefix + "level", new String[] {"HIGH"});
+            params.put(prefix + "tags", new String[] {"x", "y", "z"});
+            params.put(prefix + "label", new String[] {"Section " + section});
+            params.put(prefix + "count", new String[] {"20"});
+        }
+
+        for (int i = 0; i < WARMUP; i++) {
+            bind(params);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bind(params);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-40s %8d ns/op", "bind 200 fields form", elapsed / ITERATIONS));
+    }
+
+    static Object bind(Map<String, String[]> params) {
+        RootParamNode root = ParamNode.convert(params);
+        return Binder.bind(root, "form", Form.class, Form.class, null);
+    }
+}
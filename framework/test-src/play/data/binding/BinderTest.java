@@ -7,6 +7,7 @@ import play.data.validation.Validation;
 import play.data.validation.ValidationPlugin;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
 import java.util.*;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -262,6 +263,35 @@ public class BinderTest {
         assertThat(binded).isEqualTo(original);
     }
 
+    @Test
+    public void splitKeyBehavesLikeTheRegularExpression() {
+        for (String key : new String[] {"a", "a.b.c", "a[b].c", "a[b][c]", "a.b[c]", "a[0]", "[a]", "a.", "a[]", "...", "", "a..b"}) {
+            assertThat(ParamNode.splitKey(key)).isEqualTo(key.split("[\\.\\[\\]]+"));
+        }
+    }
+
+    @Test
+    public void typeBindingsAreResolvedOnceAndDroppedOnRegister() throws Exception {
+        Binder.directBind("2014-01-01", Date.class);
+        Binder.TypeBinding typeBinding = Binder.typeBindings.get(Date.class);
+        assertThat(typeBinding).isNotNull();
+        Binder.directBind("2014-01-02", Date.class);
+        assertThat(Binder.typeBindings.get(Date.class)).isSameAs(typeBinding);
+
+        Binder.register(Data1.class, new TypeBinder<Data1>() {
+            public Object bind(String name, Annotation[] annotations, String value, Class actualClass, Type genericType) {
+                return new Data1();
+            }
+        });
+        try {
+            assertThat(Binder.typeBindings).isEmpty();
+            assertThat(Binder.directBind("x", Data1.class)).isInstanceOf(Data1.class);
+        } finally {
+            Binder.supportedTypes.remove(Data1.class);
+            Binder.typeBindings.clear();
+        }
+    }
+
     /**
      * Transforms map from Unbinder to Binder
      * @param r map filled by Unbinder
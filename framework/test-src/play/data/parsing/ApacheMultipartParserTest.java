@@ -0,0 +1,175 @@
+package play.data.parsing;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.PlayBuilder;
+import play.data.FileUpload;
+import play.data.Upload;
+import play.libs.Codec;
+import play.mvc.Http.Header;
+import play.mvc.Http.Request;
+import play.mvc.results.Status;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ApacheMultipartParserTest {
+
+    static final String BOUNDARY = "----PlayBoundary";
+
+    File tmpDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpDir = File.createTempFile("play-upload", "");
+        tmpDir.delete();
+        tmpDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TempFilePlugin.tempFolder.remove();
+        Play.tmpDir = null;
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    @Test
+    public void filesAreStoredInTheRequestTempFolder() throws Exception {
+        init(new Properties());
+        Map<String, String[]> params = parse("Hello world!".getBytes("utf-8"));
+        assertThat(params.get("name")).isEqualTo(new String[] {"Bob"});
+        assertThat(params.get("file")).isEqualTo(new String[] {"file"});
+
+        FileUpload upload = upload();
+        assertThat(upload.asFile()).isEqualTo(new File(TempFilePlugin.tempFolder.get(), "file" + File.separator + "hello.txt"));
+        assertThat(upload.getSize()).isEqualTo(12L);
+        assertThat(upload.isInMemory()).isFalse();
+        assertThat(new String(upload.asBytes(), "utf-8")).isEqualTo("Hello world!");
+        assertThat(upload.getFileName()).isEqualTo("hello.txt");
+        assertThat(upload.getContentType()).isEqualTo("text/plain");
+        assertThat(upload.getDigest("SHA-256")).isNull();
+    }
+
+    @Test
+    public void digestsAreComputedWhileReading() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("upload.digests", "SHA-256, MD5");
+        init(config);
+        parse("Hello world!".getBytes("utf-8"));
+
+        FileUpload upload = upload();
+        assertThat(upload.getDigest("SHA-256")).isEqualTo("c0535e4be2b79ffd93291305436bf889314e4a3faec05ecffcbb7df31ad9e51a");
+        assertThat(upload.getDigest("md5")).isEqualTo(Codec.hexMD5("Hello world!"));
+        assertThat(upload.getDigest("SHA-1")).isNull();
+    }
+
+    @Test
+    public void asFileCopiesTheUpload() throws Exception {
+        init(new Properties());
+        parse("Hello world!".getBytes("utf-8"));
+
+        FileUpload upload = upload();
+        File stored = upload.asFile();
+        File target = new File(tmpDir, "target.txt");
+        assertThat(upload.asFile(target)).isEqualTo(target);
+        assertThat(stored.exists()).isTrue();
+        assertThat(upload.asFile()).isEqualTo(stored);
+        assertThat(FileUtils.readFileToString(target, "utf-8")).isEqualTo("Hello world!");
+    }
+
+    @Test
+    public void moveToMovesTheUpload() throws Exception {
+        init(new Properties());
+        parse("Hello world!".getBytes("utf-8"));
+
+        FileUpload upload = upload();
+        File stored = upload.asFile();
+        File target = new File(tmpDir, "target.txt");
+        assertThat(upload.moveTo(target)).isEqualTo(target);
+        assertThat(stored.exists()).isFalse();
+        assertThat(upload.asFile()).isEqualTo(target);
+        assertThat(FileUtils.readFileToString(target, "utf-8")).isEqualTo("Hello world!");
+
+        // Further copies leave the moved file in place
+        File copy = new File(tmpDir, "copy.txt");
+        upload.asFile(copy);
+        assertThat(target.exists()).isTrue();
+        assertThat(FileUtils.readFileToString(copy, "utf-8")).isEqualTo("Hello world!");
+    }
+
+    @Test
+    public void oversizedFilesAreRejected() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("upload.maxFileSize", "1KB");
+        init(config);
+        parse(new byte[1024]);
+        assertThat(upload().getSize()).isEqualTo(1024L);
+
+        try {
+            parse(new byte[1025]);
+            fail("Expected a 413");
+        } catch (Status s) {
+            assertThat(s.getMessage()).isEqualTo("413");
+        }
+    }
+
+    @Test
+    public void oversizedRequestsAreRejectedBeforeReading() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("upload.maxSize", "100");
+        init(config);
+        Request.current().headers.put("content-length", new Header("content-length", "100000"));
+        try {
+            new ApacheMultipartParser().parse(new ByteArrayInputStream(new byte[0]));
+            fail("Expected a 413");
+        } catch (Status s) {
+            assertThat(s.getMessage()).isEqualTo("413");
+        }
+    }
+
+    void init(Properties config) {
+        new PlayBuilder().withConfiguration(config).build();
+        Play.tmpDir = tmpDir;
+        Play.readOnlyTmp = false;
+        TempFilePlugin.tempFolder.remove();
+        Request request = new Request();
+        request.encoding = "utf-8";
+        request.headers.put("content-type", new Header("content-type", "multipart/form-data; boundary=" + BOUNDARY));
+        Request.current.set(request);
+    }
+
+    static Map<String, String[]> parse(byte[] content) throws Exception {
+        Request.current().args.remove("__UPLOADS");
+        StringBuilder head = new StringBuilder();
+        head.append("--").append(BOUNDARY).append("\r\n");
+        head.append("Content-Disposition: form-data; name=\"name\"\r\n\r\n");
+        head.append("Bob\r\n");
+        head.append("--").append(BOUNDARY).append("\r\n");
+        head.append("Content-Disposition: form-data; name=\"file\"; filename=\"hello.txt\"\r\n");
+        head.append("Content-Type: text/plain\r\n\r\n");
+        byte[] start = head.toString().getBytes("utf-8");
+        byte[] end = ("\r\n--" + BOUNDARY + "--\r\n").getBytes("utf-8");
+        byte[] body = new byte[start.length + content.length + end.length];
+        System.arraycopy(start, 0, body, 0, start.length);
+        System.arraycopy(content, 0, body, start.length, content.length);
+        System.arraycopy(end, 0, body, start.length + content.length, end.length);
+        return new ApacheMultipartParser().parse(new ByteArrayInputStream(body));
+    }
+
+    @SuppressWarnings("unchecked")
+    static FileUpload upload() {
+        List<Upload> uploads = (List<Upload>) Request.current().args.get("__UPLOADS");
+        assertThat(uploads).hasSize(1);
+        return (FileUpload) uploads.get(0);
+    }
+}
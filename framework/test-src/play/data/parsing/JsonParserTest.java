@@ -0,0 +1,114 @@
+package play.data.parsing;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.stream.JsonReader;
+
+import play.PlayBuilder;
+import play.data.binding.Binder;
+import play.data.binding.ParamNode;
+import play.data.binding.RootParamNode;
+import play.mvc.Http.Request;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class JsonParserTest {
+
+    public static class Address {
+        public String city;
+        public int zip;
+    }
+
+    public static class User {
+        public String name;
+        public Integer age;
+        public boolean admin;
+        public List<String> tags;
+        public List<Address> addresses;
+    }
+
+    @Before
+    public void setUp() {
+        new PlayBuilder().build();
+        Request.current.set(new Request());
+        Request.current().encoding = "utf-8";
+    }
+
+    @Test
+    public void flatObjectsGoToParams() throws Exception {
+        Map<String, String[]> params = parse("{\"name\": \"Bob\", \"age\": 42, \"admin\": true, \"nickname\": null}");
+        assertThat(params.get("name")).isEqualTo(new String[] {"Bob"});
+        assertThat(params.get("age")).isEqualTo(new String[] {"42"});
+        assertThat(params.get("admin")).isEqualTo(new String[] {"true"});
+        assertThat(params.get("nickname")).isEqualTo(new String[] {null});
+        assertThat(params.get("body")[0]).startsWith("{\"name\"");
+    }
+
+    @Test
+    public void nestedObjectsAndArraysAreBoundToBeans() throws Exception {
+        Map<String, String[]> params = parse("{\"user\": {\"name\": \"Bob\", \"age\": 42, \"admin\": true, \"tags\": [\"a\", \"b\"],"
+                + " \"addresses\": [{\"city\": \"Paris\", \"zip\": 75001}, {\"city\": \"Lyon\", \"zip\": 69001}]}}");
+        assertThat(params.get("user.tags[1]")).isEqualTo(new String[] {"b"});
+        assertThat(params.get("user.addresses[1].city")).isEqualTo(new String[] {"Lyon"});
+
+        RootParamNode root = ParamNode.convert(params);
+        User user = (User) Binder.bind(root, "user", User.class, User.class, null);
+        assertThat(user.name).isEqualTo("Bob");
+        assertThat(user.age).isEqualTo(42);
+        assertThat(user.admin).isTrue();
+        assertThat(user.tags).containsExactly("a", "b");
+        assertThat(user.addresses).hasSize(2);
+        assertThat(user.addresses.get(1).city).isEqualTo("Lyon");
+        assertThat(user.addresses.get(1).zip).isEqualTo(69001);
+    }
+
+    @Test
+    public void invalidJsonKeepsTheBody() throws Exception {
+        Map<String, String[]> params = parse("{\"name\": \"Bob\", oops");
+        assertThat(params.keySet()).containsOnly("body");
+        assertThat(params.get("body")).isEqualTo(new String[] {"{\"name\": \"Bob\", oops"});
+
+        params = parse("[1, 2]");
+        assertThat(params.keySet()).containsOnly("body");
+    }
+
+    @Test
+    public void streamingWithoutTheBody() throws Exception {
+        Map<String, String[]> params = new java.util.HashMap<String, String[]>();
+        JsonParser.flatten(new JsonReader(new InputStreamReader(new ByteArrayInputStream("{\"a\": {\"b\": [1, {\"c\": 2}]}}".getBytes("utf-8")), "utf-8")), params);
+        assertThat(params.keySet()).containsOnly("a.b[0]", "a.b[1].c");
+    }
+
+    @Test
+    public void limits() throws Exception {
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            deep.append("{\"a\":");
+        }
+        try {
+            parse(deep.toString() + "1" + deep.toString().replaceAll("\\{\"a\":", "}"));
+            fail("Too deep documents must be rejected");
+        } catch (play.mvc.results.BadRequest e) {
+            // 400
+        }
+
+        JsonParser.LimitedInputStream limited = new JsonParser.LimitedInputStream(new ByteArrayInputStream(new byte[100]), 50);
+        try {
+            JsonParser.read(new InputStreamReader(limited, "utf-8"));
+            fail("Too large bodies must be rejected");
+        } catch (JsonParser.LimitExceededException e) {
+            // 413
+        }
+    }
+
+    private static Map<String, String[]> parse(String body) throws Exception {
+        return new JsonParser().parse(new ByteArrayInputStream(body.getBytes("utf-8")));
+    }
+}
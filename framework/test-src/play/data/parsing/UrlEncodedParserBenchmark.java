@@ -0,0 +1,51 @@
+package play.data.parsing;
+
+import java.io.ByteArrayInputStream;
+import java.net.URLEncoder;
+
+import play.PlayBuilder;
+import play.mvc.Http.Request;
+
+/**
+ * Micro benchmark of the parsing of url-encoded form posts.
+ *
+ * <p>Not a unit test: run it with <code>java -cp ... play.data.parsing.UrlEncodedParserBenchmark</code>.
+ */
+public class UrlEncodedParserBenchmark {
+
+    static final int WARMUP = 20000;
+    static final int ITERATIONS = 50000;
+
+    public static void main(String[] args) throws Exception {
+        new PlayBuilder().build();
+        Request.current.set(new Request());
+
+        StringBuilder ascii = new StringBuilder();
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) {
+                ascii.append('&');
+                encoded.append('&');
+            }
+            ascii.append("form.section").append(i % 10).append(".field").append(i).append("=value").append(i);
+            encoded.append(URLEncoder.encode("form.section" + (i % 10) + "[field" + i + "]", "utf-8")).append('=')
+                    .append(URLEncoder.encode("Prénom & nom n°" + i, "utf-8"));
+        }
+
+        run("200 params, ascii", ascii.toString().getBytes("utf-8"));
+        run("200 params, percent-encoded", encoded.toString().getBytes("utf-8"));
+    }
+
+    static void run(String name, byte[] body) {
+        UrlEncodedParser parser = new UrlEncodedParser();
+        for (int i = 0; i < WARMUP; i++) {
+            parser.parse(new ByteArrayInputStream(body));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parser.parse(new ByteArrayInputStream(body));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-40s %8d ns/op", name, elapsed / ITERATIONS));
+    }
+}
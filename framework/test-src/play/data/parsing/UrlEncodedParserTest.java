@@ -0,0 +1,83 @@
+package play.data.parsing;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import play.PlayBuilder;
+import play.mvc.Http.Request;
+import play.mvc.results.Status;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class UrlEncodedParserTest {
+
+    @Before
+    public void setUp() {
+        new PlayBuilder().build();
+        Request.current.set(new Request());
+        Request.current().encoding = "utf-8";
+    }
+
+    @Test
+    public void parseKeysAndValues() throws Exception {
+        Map<String, String[]> params = parse("a=1&b=hello+world&a=2&c&=d&e=&user%5Bname%5D=Jos%C3%A9");
+        assertThat(new ArrayList<String>(params.keySet())).isEqualTo(Arrays.asList("a", "b", "c", "=d", "e", "user[name]", "body"));
+        assertThat(params.get("a")).isEqualTo(new String[] {"1", "2"});
+        assertThat(params.get("b")).isEqualTo(new String[] {"hello world"});
+        assertThat(params.get("c")).isEqualTo(new String[] {null});
+        assertThat(params.get("e")).isEqualTo(new String[] {""});
+        assertThat(params.get("user[name]")).isEqualTo(new String[] {"José"});
+        assertThat(params.get("body")).isEqualTo(new String[] {"a=1&b=hello+world&a=2&c&=d&e=&user%5Bname%5D=Jos%C3%A9"});
+    }
+
+    @Test
+    public void invalidEscapesAreKeptAsIs() throws Exception {
+        Map<String, String[]> params = parse("a=100%&b=%zz+x&c=%4");
+        assertThat(params.get("a")).isEqualTo(new String[] {"100%"});
+        assertThat(params.get("b")).isEqualTo(new String[] {"%zz+x"});
+        assertThat(params.get("c")).isEqualTo(new String[] {"%4"});
+    }
+
+    @Test
+    public void charsetParam() throws Exception {
+        Map<String, String[]> params = parse("name=Jos%E9&_charset_=ISO-8859-1");
+        assertThat(params.get("name")).isEqualTo(new String[] {"José"});
+
+        params = parse("name=Jos%C3%A9&_charset_=no-such-charset");
+        assertThat(params.get("name")).isEqualTo(new String[] {"José"});
+    }
+
+    @Test
+    public void emptyBodyAndQueryString() throws Exception {
+        assertThat(parse("")).isEmpty();
+        Map<String, String[]> params = UrlEncodedParser.parseQueryString(new ByteArrayInputStream("q=play+framework".getBytes("utf-8")));
+        assertThat(params.keySet()).containsOnly("q");
+        assertThat(params.get("q")).isEqualTo(new String[] {"play framework"});
+    }
+
+    @Test
+    public void tooManyParams() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("p").append(i).append("=").append(i).append("&");
+        }
+        // A trailing separator is not a param
+        assertThat(parse(body.toString())).hasSize(1001);
+        try {
+            parse(body.append("last=1").toString());
+            fail("Too many params must be rejected");
+        } catch (Status status) {
+            // 413
+        }
+    }
+
+    private static Map<String, String[]> parse(String body) throws Exception {
+        return new UrlEncodedParser().parse(new ByteArrayInputStream(body.getBytes("utf-8")));
+    }
+}
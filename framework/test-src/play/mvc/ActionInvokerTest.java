@@ -0,0 +1,122 @@
+package play.mvc;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.utils.ChecksumByteArrayOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ActionInvokerTest {
+
+    @Before
+    public void setUp() {
+        Play.configuration = new Properties();
+    }
+
+    @After
+    public void tearDown() {
+        Play.configuration = new Properties();
+    }
+
+    @Test
+    public void autoETagIsEnabledByAnnotationOrConfiguration() throws Exception {
+        assertThat(ActionInvoker.isAutoETag(request("GET", null), Pages.class.getMethod("show"))).isTrue();
+        assertThat(ActionInvoker.isAutoETag(request("HEAD", null), Pages.class.getMethod("show"))).isTrue();
+        assertThat(ActionInvoker.isAutoETag(request("POST", null), Pages.class.getMethod("show"))).isFalse();
+        assertThat(ActionInvoker.isAutoETag(request("GET", null), Pages.class.getMethod("random"))).isFalse();
+        assertThat(ActionInvoker.isAutoETag(request("GET", null), Users.class.getMethod("list"))).isFalse();
+
+        Play.configuration.setProperty("http.autoETag", "true");
+        assertThat(ActionInvoker.isAutoETag(request("GET", null), Users.class.getMethod("list"))).isTrue();
+        assertThat(ActionInvoker.isAutoETag(request("GET", null), Pages.class.getMethod("random"))).isFalse();
+    }
+
+    @Test
+    public void responsesAreTaggedByTheirBody() throws Exception {
+        Http.Response response = response("Hello World");
+        ActionInvoker.applyAutoETag(request("GET", null), response);
+        String etag = response.getHeader("ETag");
+        assertThat(etag).isEqualTo(((ChecksumByteArrayOutputStream) response.out).weakETag());
+        assertThat(response.status).isEqualTo(200);
+        assertThat(new String(response.out.toByteArray(), "utf-8")).isEqualTo("Hello World");
+
+        Http.Response other = response("Hello World!");
+        ActionInvoker.applyAutoETag(request("GET", null), other);
+        assertThat(other.getHeader("ETag")).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void unchangedResponsesAreNotModified() throws Exception {
+        String etag = ((ChecksumByteArrayOutputStream) response("Hello World").out).weakETag();
+
+        Http.Response response = response("Hello World");
+        ActionInvoker.applyAutoETag(request("GET", etag), response);
+        assertThat(response.status).isEqualTo(Http.StatusCode.NOT_MODIFIED);
+        assertThat(response.getHeader("ETag")).isEqualTo(etag);
+        assertThat(response.out.size()).isEqualTo(0);
+
+        response = response("Hello World!");
+        ActionInvoker.applyAutoETag(request("GET", etag), response);
+        assertThat(response.status).isEqualTo(200);
+        assertThat(response.out.size()).isEqualTo(12);
+    }
+
+    @Test
+    public void onlyPlainResponsesAreTagged() throws Exception {
+        Http.Response notFound = response("Not found");
+        notFound.status = 404;
+        ActionInvoker.applyAutoETag(request("GET", null), notFound);
+        assertThat(notFound.getHeader("ETag")).isNull();
+
+        Http.Response tagged = response("Hello World");
+        tagged.setHeader("ETag", "\"v1\"");
+        ActionInvoker.applyAutoETag(request("GET", "\"v1\""), tagged);
+        assertThat(tagged.getHeader("ETag")).isEqualTo("\"v1\"");
+        assertThat(tagged.status).isEqualTo(200);
+
+        Http.Response untracked = new Http.Response();
+        untracked.out = new ByteArrayOutputStream();
+        ActionInvoker.applyAutoETag(request("GET", null), untracked);
+        assertThat(untracked.getHeader("ETag")).isNull();
+    }
+
+    static Http.Request request(String method, String ifNoneMatch) {
+        Map<String, Http.Header> headers = new HashMap<String, Http.Header>();
+        if (ifNoneMatch != null) {
+            headers.put("if-none-match", new Http.Header("if-none-match", ifNoneMatch));
+        }
+        return Http.Request.createRequest(null, method, "/", "", null, null, null, null, false, 80, "localhost", false, headers, null);
+    }
+
+    static Http.Response response(String body) throws Exception {
+        Http.Response response = new Http.Response();
+        response.out = new ChecksumByteArrayOutputStream();
+        response.out.write(body.getBytes("utf-8"));
+        return response;
+    }
+
+    @AutoETag
+    public static class Pages extends Controller {
+
+        public static void show() {
+        }
+
+        @AutoETag(false)
+        public static void random() {
+        }
+    }
+
+    public static class Users extends Controller {
+
+        public static void list() {
+        }
+    }
+}
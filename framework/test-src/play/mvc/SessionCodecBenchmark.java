@@ -0,0 +1,83 @@
+package play.mvc;
+
+import java.util.HashMap;
+import java.util.Properties;
+
+import play.Play;
+import play.PlayBuilder;
+import play.mvc.Http.Cookie;
+import play.mvc.Http.Request;
+import play.mvc.Http.Response;
+import play.mvc.Scope.Flash;
+import play.mvc.Scope.Session;
+
+/**
+ * Micro benchmark of the session and flash cookie handling done for every request.
+ *
+ * <p>Not a unit test: run it with <code>java -cp ... play.mvc.SessionCodecBenchmark</code>.
+ */
+public class SessionCodecBenchmark {
+
+    static final int WARMUP = 200000;
+    static final int ITERATIONS = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        new PlayBuilder().withConfiguration(new Properties()).build();
+        Play.started = true;
+        Play.secretKey = "f3c2cfd5a6bf4c3d9ff0c1a12f1e0a1bde0d1c8e3ea4b5a2a27b1de6c9a0f17";
+
+        // A typical session cookie: user id, authenticity token and a few preferences
+        Request.current.set(new Request());
+        Response.current.set(new Response());
+        Session session = Session.restore();
+        session.put("username", "alice@example.com");
+        session.put("userId", "1234567");
+        session.getAuthenticityToken();
+        session.put("lang", "fr");
+        session.put("theme", "dark blue");
+        session.save();
+        final Cookie sessionCookie = Response.current().cookies.get(Scope.COOKIE_PREFIX + "_SESSION");
+
+        run("restore + save, session untouched", sessionCookie, new Runnable() {
+            public void run() {
+                Session.restore().save();
+                Flash.restore().save();
+            }
+        });
+        run("restore + read + save", sessionCookie, new Runnable() {
+            public void run() {
+                Session session = Session.restore();
+                session.get("username");
+                session.save();
+                Flash.restore().save();
+            }
+        });
+        run("restore + write + save", sessionCookie, new Runnable() {
+            public void run() {
+                Session session = Session.restore();
+                session.put("lastSeen", "1400000000000");
+                session.save();
+                Flash.restore().save();
+            }
+        });
+    }
+
+    static void run(String name, Cookie sessionCookie, Runnable body) {
+        HashMap<String, Cookie> cookies = new HashMap<String, Cookie>();
+        cookies.put(sessionCookie.name, sessionCookie);
+        Request request = new Request();
+        request.cookies = cookies;
+        Request.current.set(request);
+        for (int i = 0; i < WARMUP; i++) {
+            Response.current.set(new Response());
+            body.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Response.current.set(new Response());
+            body.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-40s %8d ns/op", name, elapsed / ITERATIONS));
+    }
+}
@@ -0,0 +1,233 @@
+package play.mvc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.PlayBuilder;
+import play.mvc.Http.Cookie;
+import play.mvc.Http.Request;
+import play.mvc.Http.Response;
+import play.mvc.Scope.Session;
+
+import static org.junit.Assert.*;
+
+public class SessionStoreTest {
+
+    static class MemoryStore extends SessionStore {
+
+        Map<String, Map<String, String>> sessions = new HashMap<String, Map<String, String>>();
+        List<String> touched = new ArrayList<String>();
+        int saves = 0;
+        boolean down = false;
+
+        @Override
+        public Map<String, String> load(String id) {
+            check();
+            return sessions.get(id);
+        }
+
+        @Override
+        public void save(String id, Map<String, String> data, int expiration) {
+            check();
+            saves++;
+            sessions.put(id, new HashMap<String, String>(data));
+        }
+
+        @Override
+        public void touch(Collection<String> ids, int expiration) {
+            check();
+            touched.addAll(ids);
+        }
+
+        @Override
+        public void delete(String id) {
+            check();
+            sessions.remove(id);
+        }
+
+        void check() {
+            if (down) {
+                throw new RuntimeException("Store is down");
+            }
+        }
+    }
+
+    MemoryStore store;
+
+    @Before
+    public void setUp() {
+        new PlayBuilder().build();
+        Play.started = true;
+        Play.secretKey = "0112358";
+        SessionTest.setSendOnlyIfChangedConstant(false);
+        store = new MemoryStore();
+        SessionStore.current = store;
+        SessionStore.flushTouches();
+        store.touched.clear();
+    }
+
+    @After
+    public void tearDown() {
+        SessionStore.current = null;
+        SessionStore.unavailableUntil = 0;
+        Play.started = false;
+    }
+
+    @Test
+    public void onlyTheIdIsSentInTheCookie() {
+        Cookie cookie = request(null, new Runnable() {
+            public void run() {
+                Session.current().put("username", "Alice");
+                Session.current().put("preferences", "a rather long value that stays on the server");
+            }
+        });
+        assertFalse(cookie.value.contains("Alice"));
+        assertEquals(1, store.sessions.size());
+        assertEquals("Alice", store.sessions.values().iterator().next().get("username"));
+
+        request(cookie, new Runnable() {
+            public void run() {
+                assertEquals("Alice", Session.current().get("username"));
+            }
+        });
+    }
+
+    @Test
+    public void onlyModifiedSessionsAreWrittenBack() {
+        Cookie cookie = request(null, new Runnable() {
+            public void run() {
+                Session.current().put("username", "Alice");
+            }
+        });
+        assertEquals(1, store.saves);
+
+        Cookie unchanged = request(cookie, new Runnable() {
+            public void run() {
+                Session.current().get("username");
+            }
+        });
+        request(cookie, null);
+        assertEquals(1, store.saves);
+        assertEquals(cookie.value, unchanged.value);
+
+        // The expiration of read sessions is refreshed in one batch
+        assertEquals(1, SessionStore.pendingTouches());
+        SessionStore.flushTouches();
+        assertEquals(1, store.touched.size());
+        assertEquals(0, SessionStore.pendingTouches());
+
+        request(cookie, new Runnable() {
+            public void run() {
+                Session.current().put("username", "Bob");
+            }
+        });
+        assertEquals(2, store.saves);
+        assertEquals("Bob", store.sessions.values().iterator().next().get("username"));
+    }
+
+    @Test
+    public void clearedSessionsAreDeleted() {
+        Cookie cookie = request(null, new Runnable() {
+            public void run() {
+                Session.current().put("username", "Alice");
+            }
+        });
+        Cookie cleared = request(cookie, new Runnable() {
+            public void run() {
+                Session.current().clear();
+            }
+        });
+        assertEquals("", cleared.value);
+        assertTrue(store.sessions.isEmpty());
+
+        Cookie renewed = request(cookie, new Runnable() {
+            public void run() {
+                assertNull(Session.current().get("username"));
+                Session.current().put("username", "Bob");
+            }
+        });
+        assertFalse(cookie.value.equals(renewed.value));
+    }
+
+    @Test
+    public void fallbackToCookieWhenTheStoreIsDown() {
+        store.down = true;
+        Cookie cookie = request(null, new Runnable() {
+            public void run() {
+                Session.current().put("username", "Alice");
+            }
+        });
+        assertTrue(cookie.value.contains("Alice"));
+        assertTrue(store.sessions.isEmpty());
+
+        // A full cookie is still understood
+        request(cookie, new Runnable() {
+            public void run() {
+                assertEquals("Alice", Session.current().get("username"));
+            }
+        });
+    }
+
+    @Test
+    public void storedSessionsAreKeptWhenTheyCannotBeLoaded() {
+        Cookie cookie = request(null, new Runnable() {
+            public void run() {
+                Session.current().put("username", "Alice");
+            }
+        });
+
+        // The store is down for the whole request
+        store.down = true;
+        Cookie written = request(cookie, new Runnable() {
+            public void run() {
+                assertNull(Session.current().get("username"));
+                Session.current().put("lang", "fr");
+            }
+        });
+        assertEquals(cookie.value, written.value);
+
+        // The store recovers before the session is saved
+        SessionStore.unavailableUntil = 0;
+        written = request(cookie, new Runnable() {
+            public void run() {
+                assertNull(Session.current().get("username"));
+                Session.current().put("lang", "fr");
+                store.down = false;
+                SessionStore.unavailableUntil = 0;
+            }
+        });
+        assertEquals(cookie.value, written.value);
+        assertEquals(1, store.sessions.size());
+        assertEquals("Alice", store.sessions.values().iterator().next().get("username"));
+        assertNull(store.sessions.values().iterator().next().get("lang"));
+
+        request(written, new Runnable() {
+            public void run() {
+                assertEquals("Alice", Session.current().get("username"));
+            }
+        });
+    }
+
+    static Cookie request(Cookie cookie, Runnable action) {
+        Request request = new Request();
+        if (cookie != null) {
+            request.cookies.put(cookie.name, cookie);
+        }
+        Request.current.set(request);
+        Response.current.set(new Response());
+        Session.current.set(Session.restore());
+        if (action != null) {
+            action.run();
+        }
+        Session.current().save();
+        return Response.current().cookies.get(Scope.COOKIE_PREFIX + "_SESSION");
+    }
+}
@@ -105,6 +105,58 @@ public class SessionTest {
         assertNotNull(Response.current().cookies.get(Scope.COOKIE_PREFIX + "_SESSION"));
     }
 
+    @Test
+    public void testUnchangedSessionIsDecodedLazilyAndSentBackAsIs() {
+        Play.secretKey = "0112358";
+        Play.started = true;
+        setSendOnlyIfChangedConstant(false);
+        try {
+            mockRequestAndResponse();
+            Session session = Session.restore();
+            session.put("username", "Bob");
+            session.save();
+            Cookie sessionCookie = Response.current().cookies.get(Scope.COOKIE_PREFIX + "_SESSION");
+
+            mockRequestAndResponse();
+            Request.current().cookies.put(sessionCookie.name, sessionCookie);
+            session = Session.restore();
+            assertFalse(session.decoded);
+            session.save();
+            assertEquals(sessionCookie.value, Response.current().cookies.get(Scope.COOKIE_PREFIX + "_SESSION").value);
+
+            mockRequestAndResponse();
+            Request.current().cookies.put(sessionCookie.name, sessionCookie);
+            session = Session.restore();
+            assertEquals("Bob", session.get("username"));
+            assertTrue(session.decoded);
+            session.save();
+            assertEquals(sessionCookie.value, Response.current().cookies.get(Scope.COOKIE_PREFIX + "_SESSION").value);
+        } finally {
+            Play.started = false;
+        }
+    }
+
+    @Test
+    public void testTamperedSessionIsNotTrusted() {
+        Play.secretKey = "0112358";
+        Play.started = true;
+        setSendOnlyIfChangedConstant(false);
+        try {
+            mockRequestAndResponse();
+            Cookie sessionCookie = new Cookie();
+            sessionCookie.name = Scope.COOKIE_PREFIX + "_SESSION";
+            sessionCookie.value = Crypto.sign("username=Bob", "wrong".getBytes()) + "-username=Bob";
+            Request.current().cookies.put(sessionCookie.name, sessionCookie);
+
+            Session session = Session.restore();
+            assertNull(session.get("username"));
+            session.save();
+            assertEquals("", Response.current().cookies.get(Scope.COOKIE_PREFIX + "_SESSION").value);
+        } finally {
+            Play.started = false;
+        }
+    }
+
     @After
     public void restoreDefault() {
         final boolean SESSION_SEND_ONLY_IF_CHANGED = Play.configuration.getProperty("application.session.sendOnlyIfChanged", "false").toLowerCase().equals("true"); 
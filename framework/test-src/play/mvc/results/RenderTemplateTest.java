@@ -0,0 +1,81 @@
+package play.mvc.results;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.PlayBuilder;
+import play.cache.CacheFor;
+import play.mvc.Http.Request;
+import play.mvc.Http.Response;
+import play.templates.GroovyTemplate;
+import play.templates.GroovyTemplateCompiler;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class RenderTemplateTest {
+
+    GroovyTemplate template;
+    Map<String, Object> args;
+
+    @Before
+    public void setUp() {
+        Properties configuration = new Properties();
+        configuration.setProperty("play.templates.stream", "true");
+        new PlayBuilder().withConfiguration(configuration).build();
+        template = new GroovyTemplate("page.html", "Hello ${name}");
+        new GroovyTemplateCompiler().compile(template);
+        args = new HashMap<String, Object>();
+        args.put("name", "Guillaume");
+    }
+
+    @After
+    public void tearDown() {
+        Request.current.remove();
+        Response.current.remove();
+    }
+
+    @Test
+    public void templatesAreStreamedToTheResponse() throws Exception {
+        Response response = request("action");
+        RenderTemplate result = new RenderTemplate(template, args);
+        assertThat(result.getContent()).isNull();
+        result.apply(Request.current(), response);
+        assertThat(response.out.toString("utf-8")).isEqualTo("Hello Guillaume");
+    }
+
+    @Test
+    public void cachedResultsCanBeReplayed() throws Exception {
+        Response response = request("cachedAction");
+        RenderTemplate result = new RenderTemplate(template, args);
+        result.apply(Request.current(), response);
+        assertThat(response.out.toString("utf-8")).isEqualTo("Hello Guillaume");
+
+        // A @CacheFor hit applies the same result to another response
+        response = request("cachedAction");
+        result.apply(Request.current(), response);
+        assertThat(response.out.toString("utf-8")).isEqualTo("Hello Guillaume");
+    }
+
+    public void action() {
+    }
+
+    @CacheFor("1h")
+    public void cachedAction() {
+    }
+
+    Response request(String action) throws Exception {
+        Request request = new Request();
+        request.invokedMethod = getClass().getMethod(action);
+        Request.current.set(request);
+        Response response = new Response();
+        response.out = new ByteArrayOutputStream();
+        Response.current.set(response);
+        return response;
+    }
+}
@@ -1,7 +1,10 @@
 package play.plugins;
 
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -167,6 +170,56 @@ public class PluginCollectionTest {
         assertThat(TestEngine.allUnitTests()).contains(PluginUnit.class, PluginUnit2.class);
         assertThat(TestEngine.allFunctionalTests()).contains(PluginFunc.class, PluginFunc2.class);
     }
+
+    @Test
+    public void verifyThatOnlyTheOverridingPluginsAreCalledForEachHook() {
+        PluginCollection pc = new PluginCollection();
+        PlayPlugin invocation = new InvocationPlugin();
+        PlayPlugin binder = new LegacyBinderPlugin();
+        PlayPlugin tests = new PluginWithTests();
+        pc.addPlugin(invocation);
+        pc.addPlugin(binder);
+        pc.addPlugin(tests);
+
+        assertThat(pc.hooks().beforeInvocation).containsOnly(invocation);
+        assertThat(pc.hooks().invocationFinally).containsOnly(invocation);
+        assertThat(pc.hooks().bind).containsOnly(binder);
+        assertThat(pc.hooks().afterInvocation).isEmpty();
+        assertThat(pc.hooks().routeRequest).isEmpty();
+
+        pc.beforeInvocation();
+        assertThat(((InvocationPlugin) invocation).invocations).isEqualTo(1);
+
+        pc.disablePlugin(invocation);
+        assertThat(pc.hooks().beforeInvocation).isEmpty();
+        pc.beforeInvocation();
+        assertThat(((InvocationPlugin) invocation).invocations).isEqualTo(1);
+        pc.enablePlugin(invocation);
+        assertThat(pc.hooks().beforeInvocation).containsOnly(invocation);
+    }
+}
+
+class InvocationPlugin extends PlayPlugin {
+
+    int invocations;
+
+    @Override
+    public void beforeInvocation() {
+        invocations++;
+    }
+
+    @Override
+    public void invocationFinally() {
+    }
+}
+
+class LegacyBinderPlugin extends PlayPlugin {
+
+    @SuppressWarnings({"deprecation"})
+    @Override
+    public Object bind(String name, Class clazz, Type type, Annotation[] annotations, Map<String, String[]> params) {
+        return null;
+    }
 }
 
 
@@ -1,15 +1,28 @@
 package play.templates;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import play.Play;
 import play.PlayBuilder;
+import play.exceptions.TemplateCompilationException;
+import play.exceptions.TemplateNotFoundException;
+import play.vfs.VirtualFile;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.MapAssert.entry;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class GroovyTemplateTest {
 
@@ -124,4 +137,296 @@ public class GroovyTemplateTest {
         new GroovyTemplateCompiler().compile(groovyTemplate);
         assertEquals("123", groovyTemplate.render());
     }
+
+    @Test
+    public void verifyLayoutsAreComposedAroundTheBody() throws Exception {
+        File views = createViews();
+        try {
+            BaseTemplate page = TemplateLoader.load("page.html", "#{extends 'main.html' /}\n#{set title:'Home' /}\n  Hello ${name}  \n");
+            Map<String, Object> args = new HashMap<String, Object>();
+            args.put("name", "Morten");
+            String expected = "<title>Home</title><body>  Hello Morten  \n</body>";
+            assertEquals(expected, page.render(args));
+
+            StringWriter out = new StringWriter();
+            page.render(args, out);
+            assertEquals(expected, out.toString());
+        } finally {
+            FileUtils.deleteDirectory(views);
+        }
+    }
+
+    @Test
+    public void verifyNestedLayouts() throws Exception {
+        File views = createViews();
+        try {
+            BaseTemplate page = TemplateLoader.load("nested.html", "#{extends 'section.html' /}Hello");
+            String expected = "<title>Section</title><body><div>Hello</div></body>";
+            assertEquals(expected, page.render(new HashMap<String, Object>()));
+
+            StringWriter out = new StringWriter();
+            page.render(new HashMap<String, Object>(), out);
+            assertEquals(expected, out.toString());
+        } finally {
+            FileUtils.deleteDirectory(views);
+        }
+    }
+
+    @Test
+    public void verifyLayoutsSetByAnIncludedTemplate() throws Exception {
+        File views = createViews();
+        try {
+            BaseTemplate page = TemplateLoader.load("included.html", "#{include 'titled.html' /}Hello");
+            String expected = "<title>Included</title><body>Hello</body>";
+            assertEquals(expected, page.render(new HashMap<String, Object>()));
+
+            StringWriter out = new StringWriter();
+            page.render(new HashMap<String, Object>(), out);
+            assertEquals(expected, out.toString());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            TemplateWriter writer = new TemplateWriter(bytes, "utf-8");
+            writer.print("<!-- before -->");
+            page.render(new HashMap<String, Object>(), writer);
+            writer.flush();
+            assertEquals("<!-- before -->" + expected, bytes.toString("utf-8"));
+        } finally {
+            FileUtils.deleteDirectory(views);
+        }
+    }
+
+    @Test
+    public void verifyTrimWriter() throws Exception {
+        StringWriter out = new StringWriter();
+        GroovyTemplate.TrimWriter writer = new GroovyTemplate.TrimWriter(out);
+        writer.write("  \n ");
+        writer.write(" a ");
+        writer.write("\n");
+        writer.write("b");
+        writer.write("  ");
+        writer.write(" \n");
+        writer.close();
+        assertEquals("a \nb", out.toString());
+    }
+
+    @Test
+    public void verifyStaticTextIsPreEncoded() throws Exception {
+        File views = createViews();
+        try {
+            BaseTemplate page = TemplateLoader.load("encoded.html", "#{extends 'main.html' /}#{set title:'Menu' /}Caf\u00e9 : ${price} \u20ac\n");
+            assertThat(page.compiledSource).contains("__T0");
+            Map<String, Object> args = new HashMap<String, Object>();
+            args.put("price", "5 \u00a5");
+            String expected = "<title>Menu</title><body>Caf\u00e9 : 5 &yen; \u20ac\n</body>";
+            assertEquals(expected, page.render(args));
+            for (String charset : new String[] {"utf-8", "ISO-8859-15", "UTF-16"}) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                TemplateWriter out = new TemplateWriter(bytes, charset);
+                page.render(args, out);
+                out.flush();
+                assertEquals(charset, expected, bytes.toString(charset));
+            }
+        } finally {
+            FileUtils.deleteDirectory(views);
+        }
+    }
+
+    @Test
+    public void verifyTextSegment() throws Exception {
+        TextSegment segment = new TextSegment("D\u00e9j\u00e0 vu");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        segment.writeTo(out, "UTF-8");
+        segment.writeTo(out, "ISO-8859-1");
+        byte[] utf8 = "D\u00e9j\u00e0 vu".getBytes("UTF-8");
+        byte[] latin1 = "D\u00e9j\u00e0 vu".getBytes("ISO-8859-1");
+        assertThat(out.size()).isEqualTo(utf8.length + latin1.length);
+        assertEquals("D\u00e9j\u00e0 vu", new TextSegment(utf8, utf8.length, "UTF-8").toString());
+        assertEquals(7, segment.length());
+    }
+
+    @Test
+    public void verifyTemplateWriterEncoding() throws Exception {
+        String text = "ascii \u00e9\u20ac \ud83d\ude00 end";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TemplateWriter out = new TemplateWriter(bytes, "utf-8");
+        out.print("ascii ");
+        out.print(new TextSegment("\u00e9\u20ac "));
+        // A surrogate pair split between two writes
+        out.write('\ud83d');
+        out.write('\ude00');
+        out.print(" end");
+        out.flush();
+        assertEquals(text, bytes.toString("UTF-8"));
+    }
+
+    @Test
+    public void verifyExpressionsAreEscaped() {
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put("text", "<b>caf\u00e9</b>");
+        args.put("builder", new StringBuilder("a & b"));
+        String source = "${text} ${builder} ${text.raw()} ${text.escape()} ${null} #{verbatim}${text}#{/verbatim}";
+
+        GroovyTemplate html = new GroovyTemplate("Template_escaped.html", source);
+        new GroovyTemplateCompiler().compile(html);
+        assertEquals("&lt;b&gt;caf&eacute;&lt;/b&gt; a &amp; b <b>caf\u00e9</b> &lt;b&gt;caf&eacute;&lt;/b&gt;  <b>caf\u00e9</b>\n", html.render(args));
+
+        GroovyTemplate xml = new GroovyTemplate("Template_escaped.xml", "${text} ${builder}");
+        new GroovyTemplateCompiler().compile(xml);
+        assertEquals("&lt;b&gt;caf&#233;&lt;/b&gt; a &amp; b", xml.render(args));
+
+        GroovyTemplate txt = new GroovyTemplate("Template_escaped.txt", "${text} ${builder}");
+        new GroovyTemplateCompiler().compile(txt);
+        assertEquals("<b>caf\u00e9</b> a & b", txt.render(args));
+
+        // The registered formatters are still used
+        GroovyTemplate.registerFormatter("upper", new SafeFormatter() {
+            public String format(Template template, Object value) {
+                return value.toString().toUpperCase();
+            }
+        });
+        GroovyTemplate upper = new GroovyTemplate("Template_escaped.upper", "${text} ${text.raw()}");
+        new GroovyTemplateCompiler().compile(upper);
+        assertEquals("<B>CAF\u00c9</B> <b>caf\u00e9</b>", upper.render(args));
+    }
+
+    @Test
+    public void verifyTypedTemplates() {
+        String body = "<h1>${user.name.capitalizeWords()}</h1>\n"
+                + "#{list user.tags, as:'tag'}[${tag_index}:${tag.toUpperCase()}]#{/list}\n"
+                + "#{if user.age > 3}${user.age} year${user.age.pluralize()}#{/if}#{else}young#{/else}\n"
+                + "%{ for (String tag : user.tags) { }%${tag.length()}%{ } }% ${other?.name} ${'<b>'} ${'<b>'.raw()}";
+        GroovyTemplate typed = new GroovyTemplate("Template_typed.html", "*{typed play.templates.GroovyTemplateTest.User user}*" + body);
+        new GroovyTemplateCompiler().compile(typed);
+        GroovyTemplate dynamic = new GroovyTemplate("Template_dynamic.html", "*{ not typed }*" + body);
+        new GroovyTemplateCompiler().compile(dynamic);
+
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put("user", new User("bob smith", 5, "a", "bc"));
+        assertEquals("<h1>Bob Smith</h1>\n[1:A][2:BC]5 years12  &lt;b&gt; <b>", typed.render(args));
+        assertEquals(dynamic.render(args), typed.render(args));
+        args.put("user", new User("alice", 1));
+        assertEquals(dynamic.render(args), typed.render(args));
+    }
+
+    @Test
+    public void verifyTypedTemplatesAreChecked() {
+        try {
+            GroovyTemplate template = new GroovyTemplate("Template_typo", "*{typed play.templates.GroovyTemplateTest.User user}*\nHello\n${user.nmae}");
+            new GroovyTemplateCompiler().compile(template);
+            template.compile();
+            fail("Expected TemplateCompilationException");
+        } catch (TemplateCompilationException e) {
+            assertThat(e.getLineNumber()).isEqualTo(3);
+        }
+        try {
+            GroovyTemplate template = new GroovyTemplate("Template_missing", "*{typed String name}*${name.noSuchMethod()}");
+            new GroovyTemplateCompiler().compile(template);
+            template.compile();
+            fail("Expected TemplateCompilationException");
+        } catch (TemplateCompilationException e) {
+            assertThat(e.getMessage()).contains("noSuchMethod");
+        }
+        try {
+            GroovyTemplate template = new GroovyTemplate("Template_header", "*{typed user}*${user}");
+            new GroovyTemplateCompiler().compile(template);
+            template.compile();
+            fail("Expected TemplateCompilationException");
+        } catch (TemplateCompilationException e) {
+            assertThat(e.getMessage()).contains("Type name");
+        }
+    }
+
+    @Test
+    public void verifyTagInvocation() throws Exception {
+        File views = createViews();
+        try {
+            BaseTemplate page = TemplateLoader.load("tags.html", "#{hello 'World', name:'Bob'}[${title}]#{/hello} #{shout 'hi' /}");
+            Map<String, Object> args = new HashMap<String, Object>();
+            args.put("title", "caller");
+            assertEquals("Hello World Bob 2 [caller] true HI", page.render(args));
+
+            try {
+                TemplateLoader.load("missing.html", "#{missing /}").render();
+                fail("Expected TemplateNotFoundException");
+            } catch (TemplateNotFoundException e) {
+                assertEquals("tags/missing.html or tags/missing.tag", e.getPath());
+            }
+        } finally {
+            FileUtils.deleteDirectory(views);
+        }
+    }
+
+    @Test
+    public void verifyResolvedTagsAreCachedInProd() throws Exception {
+        File views = createViews();
+        Play.Mode mode = Play.mode;
+        try {
+            Play.mode = Play.Mode.PROD;
+            BaseTemplate shout = TemplateLoader.loadTag("shout", "html");
+            assertThat(shout.name).endsWith("tags/shout.tag");
+            assertThat(TemplateLoader.loadTag("shout", "html")).isSameAs(shout);
+            assertThat(TemplateLoader.loadTag("hello", "html").name).endsWith("tags/hello.html");
+            assertThat(TemplateLoader.loadTag("missing", "html")).isNull();
+        } finally {
+            Play.mode = mode;
+            TemplateLoader.cleanCompiledCache();
+            FileUtils.deleteDirectory(views);
+        }
+    }
+
+    @Test
+    public void verifyTagScope() {
+        Map<String, Object> caller = new HashMap<String, Object>();
+        caller.put("session", "s");
+        caller.put("user", "u");
+        Map<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put("arg", "a");
+        GroovyTemplate.TagScope scope = new GroovyTemplate.TagScope(caller, attrs, null);
+        assertEquals("s", scope.get("session"));
+        assertEquals("a", scope.get("_arg"));
+        assertEquals(attrs, scope.get("_attrs"));
+        assertEquals(caller, scope.get("_caller"));
+        assertThat(scope.containsKey("_body")).isTrue();
+        assertThat(scope.containsKey("flash")).isTrue();
+        assertThat(scope.containsKey("user")).isFalse();
+        assertThat(scope.containsKey("_other")).isFalse();
+
+        scope.put("session", "local");
+        assertEquals("local", scope.get("session"));
+        assertEquals("s", caller.get("session"));
+        scope.remove("_arg");
+        assertThat(scope.containsKey("_arg")).isFalse();
+        assertThat(new HashMap<String, Object>(scope)).includes(entry("session", "local"));
+        assertThat(new HashMap<String, Object>(scope).containsKey("_arg")).isFalse();
+    }
+
+    public static class User {
+        public String name;
+        public int age;
+        public List<String> tags;
+
+        public User(String name, int age, String... tags) {
+            this.name = name;
+            this.age = age;
+            this.tags = Arrays.asList(tags);
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+    }
+
+    private File createViews() throws Exception {
+        File views = File.createTempFile("views", "");
+        views.delete();
+        views.mkdirs();
+        FileUtils.writeStringToFile(new File(views, "main.html"), "  \n<title>#{get 'title' /}</title><body>#{doLayout /}</body>\n");
+        FileUtils.writeStringToFile(new File(views, "section.html"), "#{extends 'main.html' /}#{set title:'Section' /}<div>#{doLayout /}</div>");
+        FileUtils.writeStringToFile(new File(views, "titled.html"), "#{extends 'main.html' /}#{set title:'Included' /}");
+        FileUtils.writeStringToFile(new File(views, "tags/hello.html"), "Hello ${_arg} ${_name} ${_attrs.size()} #{doBody /} ${session == null}");
+        FileUtils.writeStringToFile(new File(views, "tags/shout.tag"), "${_arg.toUpperCase()}");
+        Play.templatesPath = new ArrayList<VirtualFile>();
+        Play.templatesPath.add(VirtualFile.open(views));
+        return views;
+    }
 }
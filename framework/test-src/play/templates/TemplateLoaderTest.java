@@ -0,0 +1,77 @@
+package play.templates;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.PlayBuilder;
+import play.exceptions.TemplateCompilationException;
+import play.vfs.VirtualFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class TemplateLoaderTest {
+
+    File views;
+
+    @Before
+    public void setUp() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("play.templates.compile.threads", "4");
+        new PlayBuilder().withConfiguration(config).build();
+        Play.applicationPath = File.createTempFile("app", "");
+        Play.applicationPath.delete();
+        views = new File(Play.applicationPath, "app/views");
+        for (int i = 0; i < 20; i++) {
+            FileUtils.writeStringToFile(new File(views, "Application/page" + i + ".html"), "#{extends 'main.html' /}Page " + i + ": ${name}");
+        }
+        FileUtils.writeStringToFile(new File(views, "tags/hello.html"), "Hello ${_arg}");
+        FileUtils.writeStringToFile(new File(views, "main.html"), "<body>#{doLayout /}</body>");
+        FileUtils.writeStringToFile(new File(views, ".hidden/ignored.html"), "#{list}");
+        Play.templatesPath = new ArrayList<VirtualFile>();
+        Play.templatesPath.add(VirtualFile.open(views));
+        Play.roots = new ArrayList<VirtualFile>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(Play.applicationPath);
+    }
+
+    @Test
+    public void allTemplatesAreCompiledInParallel() {
+        List<Template> templates = TemplateLoader.getAllTemplate();
+        assertThat(templates).hasSize(22);
+        Set<String> names = new HashSet<String>();
+        Set<String> classes = new HashSet<String>();
+        for (Template template : templates) {
+            names.add(template.name);
+            assertThat(((BaseTemplate) template).compiledTemplate).isNotNull();
+            classes.add(((BaseTemplate) template).compiledTemplateName);
+        }
+        assertThat(names).contains("/app/views/tags/hello.html", "/app/views/main.html", "/app/views/Application/page19.html");
+        // Each template got its own unique class name
+        assertThat(classes).hasSize(22);
+    }
+
+    @Test
+    public void compilationErrorsAreReported() throws Exception {
+        FileUtils.writeStringToFile(new File(views, "Application/broken.html"), "%{ if ( }%");
+        try {
+            TemplateLoader.getAllTemplate();
+            fail("Expected a compilation error");
+        } catch (TemplateCompilationException e) {
+            assertThat(e.getTemplate().name).isEqualTo("/app/views/Application/broken.html");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package play.utils;
+
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ChecksumByteArrayOutputStreamTest {
+
+    @Test
+    public void checksumIsComputedAsTheContentIsWritten() throws Exception {
+        byte[] content = "Hello World".getBytes("utf-8");
+        CRC32 expected = new CRC32();
+        expected.update(content);
+
+        ChecksumByteArrayOutputStream out = new ChecksumByteArrayOutputStream(4);
+        out.write(content[0]);
+        out.write(content, 1, 5);
+        out.write(content, 6, content.length - 6);
+        assertThat(out.toByteArray()).isEqualTo(content);
+        assertThat(out.getChecksum()).isEqualTo(expected.getValue());
+
+        out.reset();
+        assertThat(out.size()).isEqualTo(0);
+        assertThat(out.getChecksum()).isEqualTo(new CRC32().getValue());
+        out.write(content);
+        assertThat(out.getChecksum()).isEqualTo(expected.getValue());
+    }
+
+    @Test
+    public void weakETagDependsOnTheLengthAndTheChecksum() throws Exception {
+        ChecksumByteArrayOutputStream out = new ChecksumByteArrayOutputStream();
+        out.write("Hello World".getBytes("utf-8"));
+        CRC32 checksum = new CRC32();
+        checksum.update("Hello World".getBytes("utf-8"));
+        assertThat(out.weakETag()).isEqualTo("W/\"b-" + Long.toHexString(checksum.getValue()) + "\"");
+
+        ChecksumByteArrayOutputStream same = new ChecksumByteArrayOutputStream();
+        same.write("Hello World".getBytes("utf-8"));
+        assertThat(same.weakETag()).isEqualTo(out.weakETag());
+
+        ChecksumByteArrayOutputStream other = new ChecksumByteArrayOutputStream();
+        other.write("Hello World!".getBytes("utf-8"));
+        assertThat(other.weakETag()).isNotEqualTo(out.weakETag());
+    }
+}
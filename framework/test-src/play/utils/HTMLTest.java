@@ -0,0 +1,48 @@
+package play.utils;
+
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class HTMLTest {
+
+    @Test
+    public void testHtmlEscape() {
+        String plain = "Nothing to escape here 'at all'";
+        assertThat(HTML.htmlEscape(plain)).isSameAs(plain);
+        assertThat(HTML.htmlEscape("<a href=\"x?a=1&b=2\">caf\u00e9 \u20ac</a>"))
+                .isEqualTo("&lt;a href=&quot;x?a=1&amp;b=2&quot;&gt;caf&eacute; &euro;&lt;/a&gt;");
+        assertThat(HTML.htmlEscape(null)).isNull();
+    }
+
+    @Test
+    public void testHtmlEscapeToWriter() throws Exception {
+        StringBuilder all = new StringBuilder();
+        for (char c = 0; c < 10000; c++) {
+            all.append(c);
+        }
+        StringWriter out = new StringWriter();
+        HTML.htmlEscape(all, out);
+        assertThat(out.toString()).isEqualTo(HTML.htmlEscape(all.toString()));
+
+        out = new StringWriter();
+        HTML.htmlEscape("a<b", out);
+        HTML.htmlEscape(new StringBuilder("&c"), out);
+        assertThat(out.toString()).isEqualTo("a&lt;b&amp;c");
+    }
+
+    @Test
+    public void testEscapingWriter() throws Exception {
+        StringWriter out = new StringWriter();
+        Writer escaping = new HTML.EscapingWriter(out);
+        escaping.write("x<y>z", 1, 3);
+        escaping.write(new char[] {'"', 'a', '&'});
+        escaping.write('>');
+        escaping.append(new StringBuilder("<\u00e9>"), 1, 2);
+        escaping.append(null);
+        assertThat(out.toString()).isEqualTo("&lt;y&gt;&quot;a&amp;&gt;&eacute;null");
+    }
+}
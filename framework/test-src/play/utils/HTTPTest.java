@@ -38,4 +38,30 @@ public class HTTPTest {
         assertThat(defaultContentType.encoding).isEqualTo(null);
         assertThat(defaultContentType.contentType).isEqualTo("text/html");
     }
+
+    @Test
+    public void testEtagMatches() {
+        assertThat(HTTP.etagMatches("\"abc\"", "\"abc\"")).isTrue();
+        assertThat(HTTP.etagMatches("W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(HTTP.etagMatches("\"abc\"", "W/\"abc\"")).isTrue();
+        assertThat(HTTP.etagMatches("\"x\", W/\"abc\"", "W/\"abc\"")).isTrue();
+        assertThat(HTTP.etagMatches("*", "W/\"abc\"")).isTrue();
+        assertThat(HTTP.etagMatches("\"abcd\"", "W/\"abc\"")).isFalse();
+        assertThat(HTTP.etagMatches(null, "W/\"abc\"")).isFalse();
+    }
+
+    @Test
+    public void testChecksumIsComputedWhileWriting() throws Exception {
+        ChecksumByteArrayOutputStream out = new ChecksumByteArrayOutputStream();
+        out.write("{\"status\":".getBytes("utf-8"));
+        out.write("\"ok\"}".getBytes("utf-8"));
+        ChecksumByteArrayOutputStream other = new ChecksumByteArrayOutputStream();
+        other.write("{\"status\":\"ok\"}".getBytes("utf-8"));
+        assertThat(out.weakETag()).isEqualTo(other.weakETag());
+        assertThat(out.weakETag()).startsWith("W/\"");
+
+        out.reset();
+        out.write("{\"status\":\"ko\"}".getBytes("utf-8"));
+        assertThat(out.weakETag()).isNotEqualTo(other.weakETag());
+    }
 }
@@ -0,0 +1,94 @@
+package play.utils;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import play.PlayBuilder;
+import play.exceptions.UnexpectedException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class TimelineTest {
+
+    @Test
+    public void phasesAreNested() throws Exception {
+        new PlayBuilder().build();
+        Timeline.Phase timeline = Timeline.start("boot");
+        try {
+            Timeline.Phase classes = Timeline.begin("classes");
+            Timeline.begin("compile").end();
+            Timeline.Phase enhance = Timeline.begin("enhance");
+            Thread.sleep(5);
+            enhance.end();
+            classes.end();
+            // Not ended
+            Timeline.begin("routes");
+            // Nested start
+            Timeline.start("start").end();
+        } finally {
+            timeline.end();
+        }
+        assertThat(Timeline.begin("ignored").getName()).isNull();
+
+        Timeline.Phase root = Timeline.last("boot").getRoot();
+        assertThat(root.getPhases()).hasSize(2);
+        Timeline.Phase classes = root.getPhases().get(0);
+        assertThat(classes.getName()).isEqualTo("classes");
+        assertThat(classes.getPhases().get(1).getTime()).isGreaterThanOrEqualTo(5);
+        assertThat(root.getPhases().get(1).getName()).isEqualTo("routes");
+        assertThat(root.getPhases().get(1).getPhases().get(0).getName()).isEqualTo("start");
+        assertThat(root.getTime()).isGreaterThanOrEqualTo(classes.getTime());
+
+        String json = root.toJson().toString();
+        assertThat(json).startsWith("{\"name\":\"boot\",\"offset\":0,");
+        assertThat(json).contains("{\"name\":\"compile\",\"offset\":");
+    }
+
+    @Test
+    public void phasesAreRecordedByTheStartingThread() throws Exception {
+        new PlayBuilder().build();
+        Timeline.Phase timeline = Timeline.start("boot");
+        final Timeline.Phase[] other = new Timeline.Phase[1];
+        Thread thread = new Thread() {
+            public void run() {
+                other[0] = Timeline.begin("other");
+            }
+        };
+        thread.start();
+        thread.join();
+        timeline.end();
+        assertThat(other[0].getName()).isNull();
+        assertThat(Timeline.last("boot").getRoot().getPhases()).isEmpty();
+    }
+
+    @Test
+    public void phasesAreCheckedAgainstTheirBudget() {
+        Properties configuration = new Properties();
+        configuration.setProperty("play.startup.budget.classes/enhance", "0");
+        configuration.setProperty("play.startup.budget.compile", "1000");
+        configuration.setProperty("play.startup.failOverBudget", "true");
+        new PlayBuilder().withConfiguration(configuration).build();
+        Timeline.Phase timeline = Timeline.start("boot");
+        Timeline.Phase classes = Timeline.begin("classes");
+        Timeline.begin("compile").end();
+        Timeline.Phase enhance = Timeline.begin("enhance");
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < 3) {
+            // Busy
+        }
+        enhance.end();
+        classes.end();
+        try {
+            timeline.end();
+            fail("enhance is over its budget");
+        } catch (UnexpectedException e) {
+            assertThat(e.getMessage()).contains("boot/classes/enhance: ");
+        }
+        List<String> overBudget = Timeline.last("boot").overBudget();
+        assertThat(overBudget).hasSize(1);
+        assertThat(overBudget.get(0)).startsWith("boot/classes/enhance: ").endsWith("ms > 0ms");
+    }
+}
@@ -0,0 +1,108 @@
+package play.vfs;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileWatcherTest {
+
+    File app;
+
+    @Before
+    public void setUp() throws Exception {
+        app = File.createTempFile("app", "");
+        app.delete();
+        FileUtils.writeStringToFile(new File(app, "app/models/User.java"), "package models; public class User {}");
+        FileUtils.writeStringToFile(new File(app, "app/.svn/entries"), "1");
+        FileUtils.writeStringToFile(new File(app, "conf/routes"), "GET / Application.index");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(app);
+    }
+
+    @Test
+    public void changesAreCollectedUntilTaken() throws Exception {
+        File user = new File(app, "app/models/User.java");
+        File routes = new File(app, "conf/routes");
+        File post = new File(app, "app/models/Post.java");
+        FileWatcher watcher = new FileWatcher(Arrays.asList(new File(app, "app"), routes, new File(app, "conf/missing")), false);
+        watcher.poll();
+        assertThat(watcher.hasChanged()).isFalse();
+
+        // Hidden files are not watched
+        FileUtils.writeStringToFile(new File(app, "app/.svn/entries"), "2");
+        watcher.poll();
+        assertThat(watcher.hasChanged()).isFalse();
+
+        FileUtils.writeStringToFile(user, "package models; public class User { String name; }");
+        watcher.poll();
+        assertThat(watcher.hasChanged()).isTrue();
+        FileUtils.writeStringToFile(routes, "GET / Application.home");
+        routes.setLastModified(routes.lastModified() + 2000);
+        watcher.poll();
+        assertThat(watcher.takeChanges()).containsOnly(user, routes);
+        assertThat(watcher.hasChanged()).isFalse();
+        assertThat(watcher.takeChanges()).isEmpty();
+
+        // Added and deleted files
+        FileUtils.writeStringToFile(post, "package models; public class Post {}");
+        user.delete();
+        watcher.poll();
+        assertThat(watcher.takeChanges()).contains(post, user);
+    }
+
+    @Test
+    public void filesAreCheckedInTheBackground() throws Exception {
+        File routes = new File(app, "conf/routes");
+        for (boolean watchService : new boolean[] {false, true}) {
+            FileWatcher watcher = new FileWatcher(Arrays.asList(routes), watchService).start(10);
+            try {
+                routes.setLastModified(routes.lastModified() + 2000);
+                waitForChanges(watcher);
+                assertThat(watcher.takeChanges()).containsOnly(routes);
+            } finally {
+                watcher.stop();
+            }
+        }
+    }
+
+    @Test
+    public void addedDirectoriesAreWatched() throws Exception {
+        FileWatcher watcher = new FileWatcher(Arrays.asList(new File(app, "app"), new File(app, "conf/routes"))).start(10);
+        try {
+            File application = new File(app, "app/controllers/Application.java");
+            FileUtils.writeStringToFile(application, "package controllers; public class Application {}");
+            waitForChanges(watcher);
+            Thread.sleep(200);
+            assertThat(watcher.takeChanges()).contains(application.getParentFile(), application);
+
+            File admin = new File(app, "app/controllers/Admin.java");
+            FileUtils.writeStringToFile(admin, "package controllers; public class Admin {}");
+            waitForChanges(watcher);
+            Thread.sleep(200);
+            assertThat(watcher.takeChanges()).contains(admin);
+
+            // Neither the hidden files nor the other files of the parent directories
+            FileUtils.writeStringToFile(new File(app, "app/.svn/entries"), "2");
+            FileUtils.writeStringToFile(new File(app, "conf/application.conf"), "application.name=app");
+            Thread.sleep(200);
+            assertThat(watcher.takeChanges()).isEmpty();
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    void waitForChanges(FileWatcher watcher) throws Exception {
+        for (int i = 0; i < 500 && !watcher.hasChanged(); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
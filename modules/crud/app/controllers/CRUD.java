@@ -15,6 +15,7 @@ import java.util.List;
 
 import play.Logger;
 import play.Play;
+import play.classloading.enhancers.PropertiesEnhancer.DirectAccessor;
 import play.data.binding.Binder;
 import play.data.validation.MaxSize;
 import play.data.validation.Password;
@@ -77,7 +78,7 @@ public abstract class CRUD extends Controller {
         notFoundIfNull(type);
         Model object = type.findById(id);
         notFoundIfNull(object);
-        Object att = object.getClass().getField(field).get(object);
+        Object att = DirectAccessor.of(object.getClass().getField(field)).get(object);
         if(att instanceof Model.BinaryField) {
             Model.BinaryField attachment = (Model.BinaryField)att;
             if (attachment == null || !attachment.exists()) {